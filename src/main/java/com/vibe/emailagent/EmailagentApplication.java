@@ -3,12 +3,14 @@ package com.vibe.emailagent;
 import com.vibe.emailagent.config.EmailAgentRunnerProperties;
 import com.vibe.emailagent.config.GmailProperties;
 import com.vibe.emailagent.config.IngestionProperties;
+import com.vibe.emailagent.config.RetrievalProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
-@EnableConfigurationProperties({GmailProperties.class, EmailAgentRunnerProperties.class, IngestionProperties.class})
+@EnableConfigurationProperties({GmailProperties.class, EmailAgentRunnerProperties.class, IngestionProperties.class,
+        RetrievalProperties.class})
 public class EmailagentApplication {
 
     public static void main(String[] args) {
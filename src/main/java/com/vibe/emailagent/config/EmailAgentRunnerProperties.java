@@ -10,7 +10,9 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "emailagent.runner")
 public record EmailAgentRunnerProperties(
         int lookbackHours,
-        int maxMessages
+        int maxMessages,
+        // query | history (Gmail History API deltas since the stored checkpoint)
+        String syncMode
 ) {
 }
 
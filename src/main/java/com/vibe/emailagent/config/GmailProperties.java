@@ -8,11 +8,21 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  * Current usage
  * - enabled: feature flag to enable GmailApiClient (real Gmail SDK calls)
  * - oauth.*: OAuth credentials/tokens to be used by GmailAuthProvider implementation
+ * - quota.*: client-side pacing for Gmail per-user quota units (see GmailQuotaLimiter)
+ * - client: "sdk" (GmailApiClient, default) or "async" (GmailHttpAsyncClient)
+ * - async.*: thread pool / timeout settings for GmailHttpAsyncClient
+ * - fetch.*: message body fetch settings
+ * - retry.*: backoff for Gmail rate-limit responses (see GmailRateLimitRetry)
  */
 @ConfigurationProperties(prefix = "gmail")
 public record GmailProperties(
         boolean enabled,
-        OAuth oauth
+        OAuth oauth,
+        Quota quota,
+        String client,
+        Async async,
+        Fetch fetch,
+        Retry retry
 ) {
 
     /**
@@ -29,4 +39,68 @@ public record GmailProperties(
             String refreshToken
     ) {
     }
+
+    /**
+     * Nested quota settings.
+     *
+     * - unitsPerSecond: Gmail per-user quota (default 250)
+     * - burstUnits: bucket capacity (defaults to unitsPerSecond)
+     * - maxWaitMillis: reject a call instead of waiting longer than this
+     */
+    public record Quota(
+            boolean enabled,
+            double unitsPerSecond,
+            double burstUnits,
+            long maxWaitMillis
+    ) {
+    }
+
+    /**
+     * Nested async client settings.
+     *
+     * - threads: fixed pool size of the HttpClient (request setup, response delivery; not one per in-flight request)
+     * - parseThreads: separate pool that reads response bodies; a read blocks while the body is still arriving
+     * - requestTimeoutMillis: per-request timeout
+     */
+    public record Async(
+            int threads,
+            int parseThreads,
+            long requestTimeoutMillis
+    ) {
+    }
+
+    /**
+     * Nested message fetch settings.
+     *
+     * - maxPartBytes: MIME parts larger than this are skipped when extracting the body (<= 0: no limit)
+     * - format: "full" (Gmail-parsed MIME tree, default) or "raw" (RFC822 bytes parsed by MimeTextExtractor).
+     *   raw also downloads attachment bytes, which full never sends, so it costs more for attachment-heavy mail.
+     * - maxBodyChars: raw mode only; stop reading the body after this many characters (<= 0: no limit)
+     * - stripQuotedThreadContext: fetchThreadMessages (reply-draft context) drops text already present in an
+     *   earlier message of the fetched thread. Independent of ingestion's stripStoredThreadQuotes, which compares
+     *   against chunks already stored in email_embeddings.
+     */
+    public record Fetch(
+            long maxPartBytes,
+            String format,
+            int maxBodyChars,
+            boolean stripQuotedThreadContext
+    ) {
+
+        public boolean raw() {
+            return "raw".equalsIgnoreCase(format);
+        }
+    }
+
+    /**
+     * Nested retry settings for Gmail 429 / 403 rateLimitExceeded responses.
+     *
+     * - maxAttempts: attempts per call, including the first (default 5)
+     * - initialBackoffMillis: first backoff; doubled per attempt plus random jitter, capped at 32s
+     */
+    public record Retry(
+            int maxAttempts,
+            long initialBackoffMillis
+    ) {
+    }
 }
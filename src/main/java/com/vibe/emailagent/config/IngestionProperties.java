@@ -14,6 +14,44 @@ public record IngestionProperties(
         int pageSize,
         int chunkSize,
         int chunkOverlap,
-        boolean includeSent
+        boolean includeSent,
+        // query | history (Gmail History API deltas since the stored checkpoint)
+        String syncMode,
+        // drop text already stored for earlier messages of the same thread before chunking (see QuotedContentIndex);
+        // independent of gmail.fetch.strip-quoted-thread-context, which only affects thread fetches for drafts
+        boolean stripStoredThreadQuotes,
+        // drop mailbox-wide frequent blocks (footers, signatures; see BoilerplateIndex)
+        boolean stripBoilerplate,
+        // a block is boilerplate once seen in at least this many other messages
+        int boilerplateMinMessages,
+        // chars (chunkSize/chunkOverlap) | tokens (chunkTokens/chunkOverlapTokens) | cdc (cdc*Chars)
+        String chunkMode,
+        int chunkTokens,
+        int chunkOverlapTokens,
+        // classpath *.tiktoken file for the embedding model's vocabulary
+        String tokenizerVocabulary,
+        // content-defined chunk sizes (see ContentDefinedChunker)
+        int cdcMinChars,
+        int cdcAvgChars,
+        int cdcMaxChars,
+        // re-chunk already ingested messages; chunks whose chunk_hash is already stored are not re-embedded
+        boolean reprocess,
+        // embedding request limits: chunks per request and (estimated) tokens per request
+        int embedBatchSize,
+        int embedBatchTokens,
+        // pipeline threads per stage (see IngestionPipeline) and the queue capacity in front of each stage
+        int fetchConcurrency,
+        int processConcurrency,
+        int embedConcurrency,
+        int writeConcurrency,
+        int pipelineQueueCapacity,
+        // prefilter de-dup lookups with a Bloom filter of stored message ids (see IngestedMessageIndex)
+        boolean dedupeBloomFilter,
+        long dedupeBloomExpectedIds,
+        // reuse stored vectors for identical chunk text (see EmbeddingCache); the model name is part of the key
+        boolean embeddingCache,
+        String embeddingCacheModel,
+        // insert (multi-row INSERT) | copy (binary COPY, see EmailEmbeddingWriter)
+        String writer
 ) {
 }
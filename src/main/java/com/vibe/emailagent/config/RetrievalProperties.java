@@ -0,0 +1,42 @@
+package com.vibe.emailagent.config;
+
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Retrieval (similarity search) configuration.
+ *
+ * Bound from: emailagent.retrieval.*
+ */
+@ConfigurationProperties(prefix = "emailagent.retrieval")
+public record RetrievalProperties(
+        // hnsw.ef_search per query (candidate list size); <= 0 keeps the server default (40)
+        int hnswEfSearch,
+        // COSINE_DISTANCE | EUCLIDEAN_DISTANCE | NEGATIVE_INNER_PRODUCT (same as the pgvector VectorStore)
+        String distanceType,
+        // search the last N received months first (partition pruning); <= 0 searches everything
+        int recentMonths,
+        // true: only the recent months; false: fill up from older months when the recent ones have too few hits
+        boolean recentOnly,
+        // similar-history chunks per draft
+        int topK,
+        // minimum similarity (cosine: 1 - distance); <= 0 disables the threshold
+        double similarityThreshold,
+        // skip chunks of the thread being answered (already in the prompt as the thread conversation)
+        boolean excludeCurrentThread,
+        // only mail received in the last N days; <= 0 means no limit
+        int lookbackDays,
+        // only mail from these sender domains (e.g. example.com); empty means any sender
+        List<String> senderDomains,
+        // vector | hybrid (vector + full-text, merged with reciprocal rank fusion)
+        String mode,
+        // hybrid: candidates fetched per leg before fusion
+        int hybridCandidates,
+        // hybrid: RRF constant k in 1 / (k + rank)
+        int rrfK,
+        // hybrid: per-leg latency budgets; a leg that misses its budget contributes nothing
+        long vectorBudgetMillis,
+        long lexicalBudgetMillis
+) {
+}
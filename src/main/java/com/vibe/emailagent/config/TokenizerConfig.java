@@ -0,0 +1,64 @@
+package com.vibe.emailagent.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+
+import com.vibe.emailagent.service.BpeTokenizer;
+import com.vibe.emailagent.service.EstimatingTokenizer;
+import com.vibe.emailagent.service.Tokenizer;
+
+/**
+ * Provides the {@link Tokenizer} used for token-based chunking.
+ *
+ * - Loads the BPE vocabulary from the classpath (emailagent.ingestion.tokenizer-vocabulary),
+ *   e.g. src/main/resources/tokenizer/cl100k_base.tiktoken for text-embedding-3-*.
+ * - The vocabulary file is not bundled. Without it, {@link EstimatingTokenizer} is used (errs high, but only an estimate),
+ *   which is fine for embedding batch limits but not for chunk-mode=tokens: chunks sized by an estimate can still exceed
+ *   the model's input limit, so that mode refuses to start without the vocabulary.
+ */
+@Configuration
+public class TokenizerConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenizerConfig.class);
+
+    private static final String CHUNK_MODE_TOKENS = "tokens";
+
+    @Bean
+    public Tokenizer embeddingTokenizer(IngestionProperties ingestionProperties) {
+        boolean tokenChunks = CHUNK_MODE_TOKENS.equalsIgnoreCase(ingestionProperties.chunkMode());
+        String vocabulary = ingestionProperties.tokenizerVocabulary();
+        if (vocabulary == null || vocabulary.isBlank()) {
+            if (tokenChunks) {
+                throw new IllegalStateException("emailagent.ingestion.chunk-mode=tokens requires "
+                        + "emailagent.ingestion.tokenizer-vocabulary (e.g. tokenizer/cl100k_base.tiktoken).");
+            }
+            return new EstimatingTokenizer();
+        }
+
+        ClassPathResource resource = new ClassPathResource(vocabulary);
+        if (!resource.exists()) {
+            if (tokenChunks) {
+                throw new IllegalStateException("Tokenizer vocabulary '" + vocabulary + "' not found on the classpath; "
+                        + "emailagent.ingestion.chunk-mode=tokens needs exact token counts. Add the file "
+                        + "(https://openaipublic.blob.core.windows.net/encodings/cl100k_base.tiktoken) or use another chunk-mode.");
+            }
+            log.warn("Tokenizer vocabulary '{}' not found on the classpath; using the estimating tokenizer.", vocabulary);
+            return new EstimatingTokenizer();
+        }
+
+        String name = resource.getFilename() != null ? resource.getFilename().replace(".tiktoken", "") : vocabulary;
+        try (InputStream in = resource.getInputStream()) {
+            BpeTokenizer tokenizer = BpeTokenizer.load(name, in);
+            log.info("Loaded tokenizer vocabulary '{}'.", vocabulary);
+            return tokenizer;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load tokenizer vocabulary: " + vocabulary, e);
+        }
+    }
+}
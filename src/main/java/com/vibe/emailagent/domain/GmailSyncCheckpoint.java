@@ -0,0 +1,95 @@
+package com.vibe.emailagent.domain;
+
+import java.time.OffsetDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+
+/**
+ * Per-mailbox Gmail History API watermark.
+ *
+ * A job (consumer) that has fully processed all mailbox changes up to historyId stores it here,
+ * so the next run only asks Gmail for changes after it (users.history.list).
+ */
+@Entity
+@Table(name = "gmail_sync_checkpoint")
+public class GmailSyncCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Gmail address of the authenticated mailbox.
+     */
+    @Column(name = "mailbox", nullable = false)
+    private String mailbox;
+
+    /**
+     * Job that owns this watermark (e.g., "ingest", "automation").
+     * - Each consumer advances independently.
+     */
+    @Column(name = "consumer", nullable = false)
+    private String consumer;
+
+    /**
+     * Last Gmail historyId fully processed by the consumer.
+     */
+    @Column(name = "history_id", nullable = false)
+    private long historyId;
+
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+
+    /**
+     * JPA default constructor.
+     */
+    protected GmailSyncCheckpoint() {
+    }
+
+    public GmailSyncCheckpoint(String mailbox, String consumer, long historyId) {
+        this.mailbox = mailbox;
+        this.consumer = consumer;
+        this.historyId = historyId;
+    }
+
+    @PrePersist
+    void onCreate() {
+        this.updatedAt = OffsetDateTime.now();
+    }
+
+    @PreUpdate
+    void onUpdate() {
+        this.updatedAt = OffsetDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getMailbox() {
+        return mailbox;
+    }
+
+    public String getConsumer() {
+        return consumer;
+    }
+
+    public long getHistoryId() {
+        return historyId;
+    }
+
+    public OffsetDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setHistoryId(long historyId) {
+        this.historyId = historyId;
+    }
+}
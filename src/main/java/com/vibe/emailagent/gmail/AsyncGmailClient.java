@@ -0,0 +1,26 @@
+package com.vibe.emailagent.gmail;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variants of the hot {@link GmailClient} calls.
+ *
+ * Why
+ * - The Google SDK transport is blocking: N concurrent requests need N threads.
+ * - Implementations of this interface keep many requests in flight on a small, fixed thread pool.
+ *
+ * Contract
+ * - Futures complete exceptionally with the same exception types the blocking methods throw
+ *   (e.g., {@link IllegalStateException}, {@link GmailHistoryExpiredException}).
+ */
+public interface AsyncGmailClient extends GmailClient {
+
+    CompletableFuture<GmailMessagePage> listMessagesAsync(String query, long maxResults, String pageToken);
+
+    CompletableFuture<GmailMessageContent> fetchMessageContentAsync(String messageId);
+
+    CompletableFuture<List<GmailMessageContent>> fetchThreadMessagesAsync(String threadId);
+
+    CompletableFuture<String> createReplyDraftAsync(String messageId, String threadId, String subject, String draftBody);
+}
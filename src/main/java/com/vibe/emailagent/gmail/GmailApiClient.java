@@ -1,26 +1,36 @@
 package com.vibe.emailagent.gmail;
 
-import java.nio.charset.StandardCharsets;
-import java.time.Instant;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.google.api.client.googleapis.batch.BatchRequest;
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
 import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 import com.google.api.services.gmail.Gmail;
 import com.google.api.services.gmail.model.Draft;
+import com.google.api.services.gmail.model.ListHistoryResponse;
 import com.google.api.services.gmail.model.ListMessagesResponse;
 import com.google.api.services.gmail.model.Message;
-import com.google.api.services.gmail.model.MessagePart;
-import com.google.api.services.gmail.model.MessagePartBody;
-import com.google.api.services.gmail.model.MessagePartHeader;
+import com.google.api.services.gmail.model.Profile;
+import com.vibe.emailagent.config.GmailProperties;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Component;
 import com.google.api.services.gmail.model.Thread;
 
@@ -30,9 +40,12 @@ import com.google.api.services.gmail.model.Thread;
  * Design notes
  * - OAuth is abstracted behind {@link GmailAuthProvider}.
  * - This class is the single place where we call the Google Gmail SDK.
+ * - Every call goes through {@link GmailQuotaLimiter} first, weighted by the method's quota cost.
+ * - Rate-limit responses (429 / 403 rateLimitExceeded) are retried with backoff by {@link GmailRateLimitRetry};
+ *   each attempt acquires quota again.
  */
 @Component
-@ConditionalOnProperty(prefix = "gmail", name = "enabled", havingValue = "true")
+@ConditionalOnExpression("${gmail.enabled:false} and '${gmail.client:sdk}' != 'async'")
 public class GmailApiClient implements GmailClient {
 
     private static final Logger log = LoggerFactory.getLogger(GmailApiClient.class);
@@ -43,11 +56,38 @@ public class GmailApiClient implements GmailClient {
      */
     private static final String USER_ID = "me";
 
+    /**
+     * Max sub-requests per Gmail batch call.
+     * - Gmail accepts up to 100, but recommends <= 50 to avoid per-user rate limiting.
+     */
+    private static final int MAX_BATCH_SIZE = 50;
+
+    /**
+     * history.list page size (Gmail max is 500).
+     */
+    private static final long HISTORY_PAGE_SIZE = 500L;
+
     private final GmailAuthProvider authProvider;
+    private final GmailQuotaLimiter quotaLimiter;
+    private final GmailTextCleaner textCleaner;
+    private final GmailRateLimitRetry retry;
+    private final long maxPartBytes;
+    private final boolean rawFormat;
+    private final int maxBodyChars;
+    private final boolean stripQuotedThreadContext;
     private Gmail gmail;
 
-    public GmailApiClient(GmailAuthProvider authProvider) {
+    public GmailApiClient(GmailAuthProvider authProvider, GmailQuotaLimiter quotaLimiter, GmailTextCleaner textCleaner,
+                          GmailProperties gmailProperties) {
         this.authProvider = authProvider;
+        this.quotaLimiter = quotaLimiter;
+        this.textCleaner = textCleaner;
+        this.retry = new GmailRateLimitRetry(gmailProperties.retry());
+        GmailProperties.Fetch fetch = gmailProperties.fetch();
+        this.maxPartBytes = fetch != null ? fetch.maxPartBytes() : 0;
+        this.rawFormat = fetch != null && fetch.raw();
+        this.maxBodyChars = fetch != null ? fetch.maxBodyChars() : 0;
+        this.stripQuotedThreadContext = fetch != null && fetch.stripQuotedThreadContext();
     }
 
     @PostConstruct
@@ -87,40 +127,19 @@ public class GmailApiClient implements GmailClient {
     @Override
     public GmailMessagePage listMessages(String query, long maxResults, String pageToken) {
         try {
-            ListMessagesResponse response = gmail.users().messages().list(USER_ID)
+            ListMessagesResponse response = execute(GmailApiMethod.MESSAGES_LIST, gmail.users().messages().list(USER_ID)
                     .setQ(query)
                     .setMaxResults(maxResults)
                     .setPageToken(pageToken)
-                    .execute();
+                    .setFields(GmailMessageMapper.LIST_FIELDS));
 
             if (response.getMessages() == null || response.getMessages().isEmpty()) {
                 return new GmailMessagePage(List.of(), null);
             }
 
-            List<GmailMessageSummary> summaries = response.getMessages().stream()
-                    .map(m -> {
-                        try {
-                            Message full = gmail.users().messages().get(USER_ID, m.getId())
-                                    .setFormat("metadata")
-                                    .setMetadataHeaders(List.of("Subject", "From"))
-                                    .execute();
-
-                            String subject = headerValue(full.getPayload() != null ? full.getPayload().getHeaders() : null, "Subject");
-                            String from = headerValue(full.getPayload() != null ? full.getPayload().getHeaders() : null, "From");
-                            String snippet = full.getSnippet() != null ? full.getSnippet() : "";
-
-                            OffsetDateTime receivedAt = OffsetDateTime.now();
-                            if (full.getInternalDate() != null) {
-                                receivedAt = OffsetDateTime.ofInstant(Instant.ofEpochMilli(full.getInternalDate()), ZoneOffset.UTC);
-                            }
-
-                            return new GmailMessageSummary(full.getId(), full.getThreadId(), subject, from, snippet, receivedAt);
-                        } catch (Exception e) {
-                            log.warn("Failed to fetch metadata for messageId={}: {}", m.getId(), e.getMessage());
-                            return new GmailMessageSummary(m.getId(), m.getThreadId(), "", "", "", OffsetDateTime.now());
-                        }
-                    })
-                    .toList();
+            List<GmailMessageSummary> summaries = fetchSummariesInBatches(response.getMessages().stream()
+                    .map(m -> new GmailMessageRef(m.getId(), m.getThreadId()))
+                    .toList());
 
             return new GmailMessagePage(summaries, response.getNextPageToken());
         } catch (Exception e) {
@@ -129,111 +148,191 @@ public class GmailApiClient implements GmailClient {
     }
 
     @Override
-    public GmailMessageContent fetchMessageContent(String messageId) {
+    public GmailMessageIdPage listMessageIds(String query, long maxResults, String pageToken) {
         try {
-            Message full = gmail.users().messages().get(USER_ID, messageId)
-                    .setFormat("full")
-                    .execute();
-
-            String subject = headerValue(full.getPayload() != null ? full.getPayload().getHeaders() : null, "Subject");
-            String from = headerValue(full.getPayload() != null ? full.getPayload().getHeaders() : null, "From");
+            ListMessagesResponse response = execute(GmailApiMethod.MESSAGES_LIST, gmail.users().messages().list(USER_ID)
+                    .setQ(query)
+                    .setMaxResults(maxResults)
+                    .setPageToken(pageToken)
+                    .setFields(GmailMessageMapper.LIST_FIELDS));
 
-            OffsetDateTime receivedAt = null;
-            if (full.getInternalDate() != null) {
-                receivedAt = OffsetDateTime.ofInstant(Instant.ofEpochMilli(full.getInternalDate()), ZoneOffset.UTC);
+            if (response.getMessages() == null || response.getMessages().isEmpty()) {
+                return new GmailMessageIdPage(List.of(), null);
             }
 
-            String snippet = full.getSnippet() != null ? full.getSnippet() : "";
-
-            String body = extractBestEffortPlainText(full.getPayload());
-            body = GmailTextCleaner.clean(body);
+            List<GmailMessageRef> refs = response.getMessages().stream()
+                    .map(m -> new GmailMessageRef(m.getId(), m.getThreadId()))
+                    .toList();
 
-            return new GmailMessageContent(full.getId(), full.getThreadId(), subject, from, receivedAt, snippet, body);
+            return new GmailMessageIdPage(refs, response.getNextPageToken());
         } catch (Exception e) {
-            throw new IllegalStateException("Failed to fetch Gmail message content for id=" + messageId, e);
+            throw new IllegalStateException("Failed to list Gmail message ids", e);
         }
     }
 
-    /**
-     * Best-effort extraction of a human-readable body.
-     */
-    private static String extractBestEffortPlainText(MessagePart part) {
-        if (part == null) return "";
-
-        String plain = findFirstPart(part, "text/plain");
-        if (plain != null && !plain.isBlank()) {
-            return plain;
+    @Override
+    public List<GmailMessageSummary> fetchMessageSummaries(List<GmailMessageRef> refs) {
+        if (refs == null || refs.isEmpty()) {
+            return List.of();
         }
+        return fetchSummariesInBatches(refs);
+    }
 
-        String html = findFirstPart(part, "text/html");
-        if (html != null && !html.isBlank()) {
-            return GmailTextCleaner.clean(html);
+    @Override
+    public GmailProfile fetchProfile() {
+        try {
+            Profile profile = execute(GmailApiMethod.GET_PROFILE, gmail.users().getProfile(USER_ID)
+                    .setFields(GmailMessageMapper.PROFILE_FIELDS));
+            long historyId = profile.getHistoryId() != null ? profile.getHistoryId().longValue() : 0L;
+            return new GmailProfile(profile.getEmailAddress(), historyId);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to fetch Gmail profile", e);
         }
-
-        return decodeBody(part.getBody());
     }
 
-    private static String findFirstPart(MessagePart part, String mimeType) {
-        if (part == null) return null;
+    @Override
+    public GmailHistoryPage listHistory(long startHistoryId, String pageToken) {
+        try {
+            ListHistoryResponse response = execute(GmailApiMethod.HISTORY_LIST, gmail.users().history().list(USER_ID)
+                    .setStartHistoryId(BigInteger.valueOf(startHistoryId))
+                    .setHistoryTypes(List.of("messageAdded", "labelAdded"))
+                    .setMaxResults(HISTORY_PAGE_SIZE)
+                    .setPageToken(pageToken)
+                    .setFields(GmailMessageMapper.HISTORY_FIELDS));
 
-        if (mimeType.equalsIgnoreCase(part.getMimeType())) {
-            return decodeBody(part.getBody());
-        }
+            long historyId = response.getHistoryId() != null ? response.getHistoryId().longValue() : startHistoryId;
+
+            List<GmailHistoryMessage> messages = GmailMessageMapper.toHistoryMessages(response);
 
-        if (part.getParts() == null || part.getParts().isEmpty()) {
-            return null;
+            return new GmailHistoryPage(messages, response.getNextPageToken(), historyId);
+        } catch (GoogleJsonResponseException e) {
+            // 404 means startHistoryId is older than what Gmail retains (or otherwise invalid).
+            if (e.getStatusCode() == 404) {
+                throw new GmailHistoryExpiredException(startHistoryId, e);
+            }
+            throw new IllegalStateException("Failed to list Gmail history since historyId=" + startHistoryId, e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to list Gmail history since historyId=" + startHistoryId, e);
         }
+    }
 
-        for (MessagePart p : part.getParts()) {
-            String found = findFirstPart(p, mimeType);
-            if (found != null && !found.isBlank()) {
-                return found;
+    /**
+     * Fetches Subject/From/snippet metadata for the listed ids via Gmail's batch endpoint.
+     *
+     * Why batch
+     * - One messages.get per id turns a 100-message page into 101 HTTP round trips.
+     * - A batch request multiplexes up to {@link #MAX_BATCH_SIZE} calls into one multipart request.
+     *
+     * Partial failures
+     * - Ids whose sub-request fails (or never gets a callback) fall back to an id-only summary,
+     *   same as the previous per-message behavior.
+     * - Rate-limited sub-requests are sent again in a smaller batch after a backoff.
+     * - Result order follows the list response order.
+     */
+    private List<GmailMessageSummary> fetchSummariesInBatches(List<GmailMessageRef> listed) {
+        Map<String, GmailMessageSummary> fetched = new HashMap<>();
+
+        for (int from = 0; from < listed.size(); from += MAX_BATCH_SIZE) {
+            List<GmailMessageRef> slice = listed.subList(from, Math.min(listed.size(), from + MAX_BATCH_SIZE));
+            try {
+                retry.execute(GmailApiMethod.MESSAGES_GET.name() + " batch", () -> executeSummaryBatch(slice, fetched));
+            } catch (Exception e) {
+                // Whole batch failed (transport error, rate limit after all retries, etc.).
+                // Remaining ids use the fallback summary below.
+                log.warn("Failed to execute metadata batch ({} messages): {}", slice.size(), e.getMessage());
             }
         }
 
-        return null;
+        return listed.stream()
+                .map(m -> {
+                    GmailMessageSummary summary = fetched.get(m.messageId());
+                    return summary != null ? summary : GmailMessageMapper.fallbackSummary(m);
+                })
+                .toList();
     }
 
-    private static String decodeBody(MessagePartBody body) {
-        if (body == null || body.getData() == null) return "";
-        try {
-            byte[] decoded = Base64.getUrlDecoder().decode(body.getData());
-            return new String(decoded, StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            return "";
+    /**
+     * One batch call for the ids of {@code slice} that are not in {@code fetched} yet.
+     *
+     * @throws GmailRateLimitRetry.RateLimitedException if some sub-requests were rate limited (they are retried)
+     */
+    private Void executeSummaryBatch(List<GmailMessageRef> slice, Map<String, GmailMessageSummary> fetched) throws IOException {
+        List<GmailMessageRef> pending = slice.stream()
+                .filter(m -> !fetched.containsKey(m.messageId()))
+                .toList();
+        List<String> rateLimited = new ArrayList<>();
+
+        // Gmail charges each sub-request of a batch separately.
+        quotaLimiter.acquire(GmailApiMethod.MESSAGES_GET, pending.size());
+        BatchRequest batch = gmail.batch();
+        for (GmailMessageRef m : pending) {
+            gmail.users().messages().get(USER_ID, m.messageId())
+                    .setFormat("metadata")
+                    .setMetadataHeaders(List.of("Subject", "From"))
+                    .setFields(GmailMessageMapper.SUMMARY_FIELDS)
+                    .queue(batch, new JsonBatchCallback<Message>() {
+                        @Override
+                        public void onSuccess(Message full, HttpHeaders responseHeaders) {
+                            fetched.put(m.messageId(), GmailMessageMapper.toSummary(full));
+                        }
+
+                        @Override
+                        public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) {
+                            if (GmailRateLimitRetry.isRateLimited(e)) {
+                                rateLimited.add(m.messageId());
+                                return;
+                            }
+                            // Not retried: mark it so a retry of the rate-limited ids skips it.
+                            fetched.put(m.messageId(), GmailMessageMapper.fallbackSummary(m));
+                            log.warn("Failed to fetch metadata for messageId={}: {}", m.messageId(), e.getMessage());
+                        }
+                    });
         }
-    }
+        batch.execute();
 
-    private static String headerValue(List<MessagePartHeader> headers, String name) {
-        if (headers == null) return "";
-        return headers.stream()
-                .filter(h -> name.equalsIgnoreCase(h.getName()))
-                .map(MessagePartHeader::getValue)
-                .findFirst()
-                .orElse("");
+        if (!rateLimited.isEmpty()) {
+            throw new GmailRateLimitRetry.RateLimitedException(
+                    rateLimited.size() + " of " + pending.size() + " metadata requests rate limited");
+        }
+        return null;
     }
 
     @Override
-    public String createReplyDraft(String messageId, String threadId, String subject, String draftBody) {
+    public GmailMessageContent fetchMessageContent(String messageId) {
         try {
-            // NOTE: Still a skeleton.
-            // Proper reply drafting requires building a raw RFC822 message with In-Reply-To/References.
-            // For now, we create a plain text draft.
-            Message message = new Message();
-            message.setThreadId(threadId);
+            if (rawFormat) {
+                // Unparsed: the raw value is streamed into the MIME parser instead of becoming one String.
+                Gmail.Users.Messages.Get request = gmail.users().messages().get(USER_ID, messageId)
+                        .setFormat("raw")
+                        .setFields(GmailMessageMapper.RAW_FIELDS);
+                HttpResponse response = retry.execute(GmailApiMethod.MESSAGES_GET.name(), () -> {
+                    quotaLimiter.acquire(GmailApiMethod.MESSAGES_GET);
+                    return request.executeUnparsed();
+                });
+                try (InputStream in = response.getContent()) {
+                    return RawMessageReader.read(in, maxBodyChars, textCleaner);
+                } finally {
+                    response.disconnect();
+                }
+            }
 
-            String raw = "Subject: " + (subject == null ? "" : subject) + "\r\n" +
-                    "Content-Type: text/plain; charset=\"UTF-8\"\r\n" +
-                    "\r\n" +
-                    (draftBody == null ? "" : draftBody);
+            Message full = execute(GmailApiMethod.MESSAGES_GET, gmail.users().messages().get(USER_ID, messageId)
+                    .setFormat("full")
+                    .setFields(GmailMessageMapper.CONTENT_FIELDS));
 
-            String encoded = Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
-            message.setRaw(encoded);
+            return GmailMessageMapper.toContent(full, maxPartBytes, textCleaner);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to fetch Gmail message content for id=" + messageId, e);
+        }
+    }
 
-            Draft draft = new Draft();
-            draft.setMessage(message);
+    @Override
+    public String createReplyDraft(String messageId, String threadId, String subject, String draftBody) {
+        try {
+            Draft draft = GmailMessageMapper.toReplyDraft(threadId, subject, draftBody);
 
-            Draft created = gmail.users().drafts().create(USER_ID, draft).execute();
+            Draft created = execute(GmailApiMethod.DRAFTS_CREATE, gmail.users().drafts().create(USER_ID, draft)
+                    .setFields(GmailMessageMapper.DRAFT_FIELDS));
             return created.getId();
         } catch (Exception e) {
             log.warn("Failed to create Gmail draft: {}", e.getMessage(), e);
@@ -244,41 +343,12 @@ public class GmailApiClient implements GmailClient {
     @Override
     public List<GmailMessageContent> fetchThreadMessages(String threadId) {
         try {
-            Thread thread = gmail.users().threads().get(USER_ID, threadId)
+            Thread thread = execute(GmailApiMethod.THREADS_GET, gmail.users().threads().get(USER_ID, threadId)
                     // 'full' gives payload parts and internalDate
                     .setFormat("full")
-                    .execute();
-
-            if (thread.getMessages() == null || thread.getMessages().isEmpty()) {
-                return List.of();
-            }
-
-            return thread.getMessages().stream()
-                    .map(m -> {
-                        try {
-                            String subject = headerValue(m.getPayload() != null ? m.getPayload().getHeaders() : null, "Subject");
-                            String from = headerValue(m.getPayload() != null ? m.getPayload().getHeaders() : null, "From");
-
-                            OffsetDateTime receivedAt = null;
-                            if (m.getInternalDate() != null) {
-                                receivedAt = OffsetDateTime.ofInstant(Instant.ofEpochMilli(m.getInternalDate()), ZoneOffset.UTC);
-                            }
-
-                            String snippet = m.getSnippet() != null ? m.getSnippet() : "";
-                            String body = extractBestEffortPlainText(m.getPayload());
-                            body = GmailTextCleaner.clean(body);
+                    .setFields(GmailMessageMapper.THREAD_FIELDS));
 
-                            return new GmailMessageContent(m.getId(), m.getThreadId(), subject, from, receivedAt, snippet, body);
-                        } catch (Exception e) {
-                            // Best effort fallback: keep at least IDs/snippet
-                            OffsetDateTime receivedAt = null;
-                            if (m.getInternalDate() != null) {
-                                receivedAt = OffsetDateTime.ofInstant(Instant.ofEpochMilli(m.getInternalDate()), ZoneOffset.UTC);
-                            }
-                            return new GmailMessageContent(m.getId(), m.getThreadId(), "", "", receivedAt, m.getSnippet(), "");
-                        }
-                    })
-                    .toList();
+            return GmailMessageMapper.toThreadContents(thread.getMessages(), maxPartBytes, stripQuotedThreadContext, textCleaner);
         } catch (Exception e) {
             throw new IllegalStateException("Failed to fetch thread messages for threadId=" + threadId, e);
         }
@@ -287,6 +357,16 @@ public class GmailApiClient implements GmailClient {
     // NOTE: write-draft trigger based automation was removed.
     // Any draft-search/update methods were intentionally deleted.
 
+    /**
+     * Executes one request once the quota allows it, retrying rate-limit responses.
+     */
+    private <T> T execute(GmailApiMethod method, AbstractGoogleClientRequest<T> request) throws IOException {
+        return retry.execute(method.name(), () -> {
+            quotaLimiter.acquire(method);
+            return request.execute();
+        });
+    }
+
     private Gmail gmail() throws Exception {
         NetHttpTransport transport = GoogleNetHttpTransport.newTrustedTransport();
         return new Gmail.Builder(transport, GsonFactory.getDefaultInstance(), authProvider.requestInitializer())
@@ -0,0 +1,27 @@
+package com.vibe.emailagent.gmail;
+
+/**
+ * Gmail API methods we call, with their per-user quota cost.
+ *
+ * Source: Gmail API "Usage limits" (quota units per method).
+ * - Batch requests are charged per sub-request, so callers acquire cost * count.
+ */
+public enum GmailApiMethod {
+
+    MESSAGES_LIST(5),
+    MESSAGES_GET(5),
+    THREADS_GET(10),
+    DRAFTS_CREATE(10),
+    HISTORY_LIST(2),
+    GET_PROFILE(1);
+
+    private final int quotaUnits;
+
+    GmailApiMethod(int quotaUnits) {
+        this.quotaUnits = quotaUnits;
+    }
+
+    public int quotaUnits() {
+        return quotaUnits;
+    }
+}
@@ -1,5 +1,7 @@
 package com.vibe.emailagent.gmail;
 
+import java.util.concurrent.CompletableFuture;
+
 import com.google.api.client.http.HttpRequestInitializer;
 
 /**
@@ -25,4 +27,15 @@ public interface GmailAuthProvider {
      * - Refreshes access token automatically when expired
      */
     HttpRequestInitializer requestInitializer();
+
+    /**
+     * Returns a currently valid OAuth access token, completing once a refresh (if needed) is done.
+     *
+     * Used by transports that don't go through the Google SDK (e.g., {@link GmailHttpAsyncClient}),
+     * so the calling thread must not wait for the token endpoint.
+     */
+    default CompletableFuture<String> accessTokenAsync() {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException(getClass().getSimpleName() + " does not expose access tokens."));
+    }
 }
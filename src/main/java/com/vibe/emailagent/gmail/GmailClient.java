@@ -44,4 +44,30 @@ public interface GmailClient {
      * Batch/ingestion API: lists messages using a Gmail search query.
      */
     GmailMessagePage listMessages(String query, long maxResults, String pageToken);
+
+    /**
+     * Batch/ingestion API: lists message/thread ids only (single messages.list call, no metadata fetch).
+     *
+     * Prefer this over {@link #listMessages} when the caller fetches full content anyway.
+     */
+    GmailMessageIdPage listMessageIds(String query, long maxResults, String pageToken);
+
+    /**
+     * Fetches Subject/From/snippet metadata for known message ids (e.g., ids discovered via history.list).
+     *
+     * Result order follows the given ids; failed lookups fall back to id-only summaries.
+     */
+    List<GmailMessageSummary> fetchMessageSummaries(List<GmailMessageRef> refs);
+
+    /**
+     * Returns the authenticated mailbox address and its current history id.
+     */
+    GmailProfile fetchProfile();
+
+    /**
+     * Incremental sync API: lists messageAdded/labelAdded changes since the given history id.
+     *
+     * @throws GmailHistoryExpiredException if Gmail no longer keeps history for startHistoryId
+     */
+    GmailHistoryPage listHistory(long startHistoryId, String pageToken);
 }
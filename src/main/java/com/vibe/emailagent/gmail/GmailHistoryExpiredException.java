@@ -0,0 +1,14 @@
+package com.vibe.emailagent.gmail;
+
+/**
+ * Thrown when Gmail no longer has history records for the requested start history id.
+ *
+ * Gmail keeps history for a limited time (typically about a week) and answers 404 for older ids.
+ * Callers should fall back to a full query scan and store a fresh watermark.
+ */
+public class GmailHistoryExpiredException extends IllegalStateException {
+
+    public GmailHistoryExpiredException(long startHistoryId, Throwable cause) {
+        super("Gmail history id expired or invalid: " + startHistoryId, cause);
+    }
+}
@@ -0,0 +1,24 @@
+package com.vibe.emailagent.gmail;
+
+import java.util.List;
+
+/**
+ * A message touched by a messageAdded/labelAdded history record.
+ *
+ * Notes
+ * - labelIds reflect the message labels as reported by history.list (e.g., INBOX, SENT).
+ * - Callers use them to filter inbound/sent mail without an extra messages.get.
+ * - historyId is the id of the history record the message first appeared in; a watermark just below it
+ *   makes history.list return this message (and everything after it) again.
+ */
+public record GmailHistoryMessage(
+        String messageId,
+        String threadId,
+        List<String> labelIds,
+        long historyId
+) {
+
+    public boolean hasLabel(String labelId) {
+        return labelIds != null && labelIds.contains(labelId);
+    }
+}
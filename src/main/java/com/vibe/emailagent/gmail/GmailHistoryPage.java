@@ -0,0 +1,17 @@
+package com.vibe.emailagent.gmail;
+
+import java.util.List;
+
+/**
+ * DTO that wraps one page from Gmail history.list (messageAdded/labelAdded only).
+ *
+ * @param messages messages touched on this page, in history order (may contain duplicates across records)
+ * @param nextPageToken token for the next page, or null
+ * @param historyId mailbox history id at the time of the call (next watermark)
+ */
+public record GmailHistoryPage(
+        List<GmailHistoryMessage> messages,
+        String nextPageToken,
+        long historyId
+) {
+}
@@ -0,0 +1,449 @@
+package com.vibe.emailagent.gmail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.services.gmail.model.Draft;
+import com.google.api.services.gmail.model.ListHistoryResponse;
+import com.google.api.services.gmail.model.ListMessagesResponse;
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.Profile;
+import com.google.api.services.gmail.model.Thread;
+import com.vibe.emailagent.config.GmailProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+/**
+ * Non-blocking GmailClient built on {@link java.net.http.HttpClient} (HTTP/2) instead of the Google SDK transport.
+ *
+ * Enable with: gmail.client=async
+ *
+ * Design notes
+ * - One shared HttpClient: HTTP/2 multiplexes concurrent requests over a pooled connection.
+ * - A small fixed pool (gmail.async.threads) runs request setup and is the HttpClient's executor, which delivers
+ *   response bytes. No thread is parked while a request waits for its response headers.
+ * - Response bodies are read on a separate pool (gmail.async.parse-threads): reading an InputStream body blocks
+ *   until its bytes arrive, and those bytes are delivered by the HttpClient's executor, so reading on that same
+ *   pool could starve it.
+ * - Access tokens come from {@link GmailAuthProvider#accessTokenAsync()}, so a token refresh never parks a pool thread.
+ * - Responses are parsed from the body InputStream with the Gson streaming parser into the same
+ *   Gmail model classes the SDK uses, so mapping is shared via {@link GmailMessageMapper}.
+ * - Quota pacing uses {@link GmailQuotaLimiter#reserve}: calls that must wait are scheduled with a delay
+ *   instead of sleeping a thread. Rate-limit responses are retried the same way ({@link GmailRateLimitRetry}).
+ * - The blocking {@link GmailClient} methods simply join the async variants.
+ */
+@Component
+@ConditionalOnExpression("${gmail.enabled:false} and '${gmail.client:sdk}' == 'async'")
+public class GmailHttpAsyncClient implements AsyncGmailClient {
+
+    private static final Logger log = LoggerFactory.getLogger(GmailHttpAsyncClient.class);
+
+    private static final String BASE_URL = "https://gmail.googleapis.com/gmail/v1/users/me";
+
+    private static final JsonFactory JSON = GsonFactory.getDefaultInstance();
+
+    private static final int DEFAULT_THREADS = 4;
+    private static final int DEFAULT_PARSE_THREADS = 4;
+    private static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = 60_000;
+
+    /**
+     * history.list page size (Gmail max is 500).
+     */
+    private static final int HISTORY_PAGE_SIZE = 500;
+
+    private final GmailAuthProvider authProvider;
+    private final GmailQuotaLimiter quotaLimiter;
+    private final GmailTextCleaner textCleaner;
+    private final GmailRateLimitRetry retry;
+    private final String baseUrl;
+    private final ExecutorService executor;
+    private final ExecutorService parseExecutor;
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final long maxPartBytes;
+    private final boolean rawFormat;
+    private final int maxBodyChars;
+    private final boolean stripQuotedThreadContext;
+
+    @Autowired
+    public GmailHttpAsyncClient(GmailAuthProvider authProvider,
+                                GmailQuotaLimiter quotaLimiter,
+                                GmailTextCleaner textCleaner,
+                                GmailProperties gmailProperties) {
+        this(authProvider, quotaLimiter, textCleaner, gmailProperties, BASE_URL);
+    }
+
+    /**
+     * @param baseUrl users/me endpoint (tests point it at a local server)
+     */
+    GmailHttpAsyncClient(GmailAuthProvider authProvider,
+                         GmailQuotaLimiter quotaLimiter,
+                         GmailTextCleaner textCleaner,
+                         GmailProperties gmailProperties,
+                         String baseUrl) {
+        this.authProvider = authProvider;
+        this.quotaLimiter = quotaLimiter;
+        this.textCleaner = textCleaner;
+        this.retry = new GmailRateLimitRetry(gmailProperties.retry());
+        this.baseUrl = baseUrl;
+
+        GmailProperties.Async async = gmailProperties.async();
+        int threads = async != null && async.threads() > 0 ? async.threads() : DEFAULT_THREADS;
+        int parseThreads = async != null && async.parseThreads() > 0 ? async.parseThreads() : DEFAULT_PARSE_THREADS;
+        long timeoutMillis = async != null && async.requestTimeoutMillis() > 0 ? async.requestTimeoutMillis() : DEFAULT_REQUEST_TIMEOUT_MILLIS;
+
+        this.executor = Executors.newFixedThreadPool(threads, daemonThreads("gmail-async-"));
+        this.parseExecutor = Executors.newFixedThreadPool(parseThreads, daemonThreads("gmail-parse-"));
+        this.requestTimeout = Duration.ofMillis(timeoutMillis);
+        GmailProperties.Fetch fetch = gmailProperties.fetch();
+        this.maxPartBytes = fetch != null ? fetch.maxPartBytes() : 0;
+        this.rawFormat = fetch != null && fetch.raw();
+        this.maxBodyChars = fetch != null ? fetch.maxBodyChars() : 0;
+        this.stripQuotedThreadContext = fetch != null && fetch.stripQuotedThreadContext();
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(executor)
+                .build();
+
+        log.info("GmailHttpAsyncClient initialized. threads={}, parseThreads={}, requestTimeoutMillis={}",
+                threads, parseThreads, timeoutMillis);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+        parseExecutor.shutdown();
+    }
+
+    // -------------------------
+    // Async API
+    // -------------------------
+
+    @Override
+    public CompletableFuture<GmailMessagePage> listMessagesAsync(String query, long maxResults, String pageToken) {
+        return listAsync(query, maxResults, pageToken)
+                .thenCompose(response -> {
+                    if (response.getMessages() == null || response.getMessages().isEmpty()) {
+                        return CompletableFuture.completedFuture(new GmailMessagePage(List.of(), null));
+                    }
+                    List<GmailMessageRef> refs = response.getMessages().stream()
+                            .map(m -> new GmailMessageRef(m.getId(), m.getThreadId()))
+                            .toList();
+                    return fetchMessageSummariesAsync(refs)
+                            .thenApply(summaries -> new GmailMessagePage(summaries, response.getNextPageToken()));
+                });
+    }
+
+    @Override
+    public CompletableFuture<GmailMessageContent> fetchMessageContentAsync(String messageId) {
+        if (rawFormat) {
+            // Not parsed into a Message: the raw value is streamed from the body into the MIME parser.
+            return send(GmailApiMethod.MESSAGES_GET, "/messages/" + encode(messageId) + "?format=raw" + fields(GmailMessageMapper.RAW_FIELDS),
+                    HttpRequest.Builder::GET, in -> RawMessageReader.read(in, maxBodyChars, textCleaner));
+        }
+        return get(GmailApiMethod.MESSAGES_GET, "/messages/" + encode(messageId) + "?format=full" + fields(GmailMessageMapper.CONTENT_FIELDS),
+                Message.class)
+                .thenApply(m -> GmailMessageMapper.toContent(m, maxPartBytes, textCleaner));
+    }
+
+    @Override
+    public CompletableFuture<List<GmailMessageContent>> fetchThreadMessagesAsync(String threadId) {
+        return get(GmailApiMethod.THREADS_GET, "/threads/" + encode(threadId) + "?format=full" + fields(GmailMessageMapper.THREAD_FIELDS),
+                Thread.class)
+                .thenApply(thread -> GmailMessageMapper.toThreadContents(thread.getMessages(), maxPartBytes, stripQuotedThreadContext, textCleaner));
+    }
+
+    @Override
+    public CompletableFuture<String> createReplyDraftAsync(String messageId, String threadId, String subject, String draftBody) {
+        Draft draft = GmailMessageMapper.toReplyDraft(threadId, subject, draftBody);
+        String json;
+        try {
+            json = JSON.toString(draft);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Failed to serialize Gmail draft", e));
+        }
+
+        return send(GmailApiMethod.DRAFTS_CREATE, "/drafts?fields=" + encode(GmailMessageMapper.DRAFT_FIELDS),
+                b -> b.header("Content-Type", "application/json; charset=UTF-8")
+                        .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8)),
+                Draft.class)
+                .thenApply(Draft::getId);
+    }
+
+    /**
+     * Fetches metadata summaries concurrently (one multiplexed HTTP/2 stream per message).
+     * Failed lookups fall back to id-only summaries, same as {@link GmailApiClient}.
+     */
+    CompletableFuture<List<GmailMessageSummary>> fetchMessageSummariesAsync(List<GmailMessageRef> refs) {
+        List<CompletableFuture<GmailMessageSummary>> futures = refs.stream()
+                .map(ref -> get(GmailApiMethod.MESSAGES_GET,
+                        "/messages/" + encode(ref.messageId()) + "?format=metadata&metadataHeaders=Subject&metadataHeaders=From"
+                                + fields(GmailMessageMapper.SUMMARY_FIELDS),
+                        Message.class)
+                        .thenApply(GmailMessageMapper::toSummary)
+                        .exceptionally(e -> {
+                            log.warn("Failed to fetch metadata for messageId={}: {}", ref.messageId(), unwrap(e).getMessage());
+                            return GmailMessageMapper.fallbackSummary(ref);
+                        }))
+                .toList();
+
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    // -------------------------
+    // Blocking GmailClient API
+    // -------------------------
+
+    @Override
+    public List<GmailMessageSummary> findUnrepliedMessagesSince(OffsetDateTime since, int maxMessages) {
+        // Same query as GmailApiClient: inbox, absolute time window, exclude my own messages.
+        if (since == null) {
+            since = OffsetDateTime.now(ZoneOffset.UTC).minusHours(1);
+        }
+        String query = "in:inbox after:" + since.toEpochSecond() + " -from:me";
+        return listMessages(query, maxMessages, null).messages();
+    }
+
+    @Override
+    public GmailMessageContent fetchMessageContent(String messageId) {
+        return await(fetchMessageContentAsync(messageId), "Failed to fetch Gmail message content for id=" + messageId);
+    }
+
+    @Override
+    public List<GmailMessageContent> fetchThreadMessages(String threadId) {
+        return await(fetchThreadMessagesAsync(threadId), "Failed to fetch thread messages for threadId=" + threadId);
+    }
+
+    @Override
+    public String createReplyDraft(String messageId, String threadId, String subject, String draftBody) {
+        return await(createReplyDraftAsync(messageId, threadId, subject, draftBody), "Failed to create Gmail draft");
+    }
+
+    @Override
+    public GmailMessagePage listMessages(String query, long maxResults, String pageToken) {
+        return await(listMessagesAsync(query, maxResults, pageToken), "Failed to list Gmail messages");
+    }
+
+    @Override
+    public GmailMessageIdPage listMessageIds(String query, long maxResults, String pageToken) {
+        ListMessagesResponse response = await(listAsync(query, maxResults, pageToken), "Failed to list Gmail message ids");
+        if (response.getMessages() == null || response.getMessages().isEmpty()) {
+            return new GmailMessageIdPage(List.of(), null);
+        }
+        List<GmailMessageRef> refs = response.getMessages().stream()
+                .map(m -> new GmailMessageRef(m.getId(), m.getThreadId()))
+                .toList();
+        return new GmailMessageIdPage(refs, response.getNextPageToken());
+    }
+
+    @Override
+    public List<GmailMessageSummary> fetchMessageSummaries(List<GmailMessageRef> refs) {
+        if (refs == null || refs.isEmpty()) {
+            return List.of();
+        }
+        return await(fetchMessageSummariesAsync(refs), "Failed to fetch Gmail message summaries");
+    }
+
+    @Override
+    public GmailProfile fetchProfile() {
+        Profile profile = await(get(GmailApiMethod.GET_PROFILE, "/profile?fields=" + encode(GmailMessageMapper.PROFILE_FIELDS), Profile.class), "Failed to fetch Gmail profile");
+        long historyId = profile.getHistoryId() != null ? profile.getHistoryId().longValue() : 0L;
+        return new GmailProfile(profile.getEmailAddress(), historyId);
+    }
+
+    @Override
+    public GmailHistoryPage listHistory(long startHistoryId, String pageToken) {
+        String path = "/history?startHistoryId=" + startHistoryId
+                + "&historyTypes=messageAdded&historyTypes=labelAdded"
+                + "&maxResults=" + HISTORY_PAGE_SIZE
+                + fields(GmailMessageMapper.HISTORY_FIELDS)
+                + (pageToken != null ? "&pageToken=" + encode(pageToken) : "");
+
+        CompletableFuture<ListHistoryResponse> future = get(GmailApiMethod.HISTORY_LIST, path, ListHistoryResponse.class)
+                .exceptionally(e -> {
+                    Throwable cause = unwrap(e);
+                    // 404 means startHistoryId is older than what Gmail retains (or otherwise invalid).
+                    if (cause instanceof GmailHttpStatusException status && status.statusCode() == 404) {
+                        throw new GmailHistoryExpiredException(startHistoryId, cause);
+                    }
+                    throw new CompletionException(cause);
+                });
+
+        ListHistoryResponse response = await(future, "Failed to list Gmail history since historyId=" + startHistoryId);
+        long historyId = response.getHistoryId() != null ? response.getHistoryId().longValue() : startHistoryId;
+        return new GmailHistoryPage(GmailMessageMapper.toHistoryMessages(response), response.getNextPageToken(), historyId);
+    }
+
+    // -------------------------
+    // Transport
+    // -------------------------
+
+    private CompletableFuture<ListMessagesResponse> listAsync(String query, long maxResults, String pageToken) {
+        String path = "/messages?maxResults=" + maxResults
+                + fields(GmailMessageMapper.LIST_FIELDS)
+                + (query != null ? "&q=" + encode(query) : "")
+                + (pageToken != null ? "&pageToken=" + encode(pageToken) : "");
+        return get(GmailApiMethod.MESSAGES_LIST, path, ListMessagesResponse.class);
+    }
+
+    private <T> CompletableFuture<T> get(GmailApiMethod method, String pathAndQuery, Class<T> type) {
+        return send(method, pathAndQuery, HttpRequest.Builder::GET, type);
+    }
+
+    /**
+     * Sends one request once the quota allows it, then parses the JSON body into {@code type}.
+     */
+    private <T> CompletableFuture<T> send(GmailApiMethod method,
+                                          String pathAndQuery,
+                                          UnaryOperator<HttpRequest.Builder> customizer,
+                                          Class<T> type) {
+        return send(method, pathAndQuery, customizer, in -> JSON.createJsonParser(in, StandardCharsets.UTF_8).parseAndClose(type));
+    }
+
+    /**
+     * Sends one request once the quota allows it, then hands a successful response body to {@code reader}.
+     * Rate-limit responses are sent again after a backoff.
+     */
+    private <T> CompletableFuture<T> send(GmailApiMethod method,
+                                          String pathAndQuery,
+                                          UnaryOperator<HttpRequest.Builder> customizer,
+                                          BodyReader<T> reader) {
+        return retry.executeAsync(method.name(), () -> sendOnce(method, pathAndQuery, customizer, reader), executor);
+    }
+
+    private <T> CompletableFuture<T> sendOnce(GmailApiMethod method,
+                                              String pathAndQuery,
+                                              UnaryOperator<HttpRequest.Builder> customizer,
+                                              BodyReader<T> reader) {
+        long waitNanos;
+        try {
+            waitNanos = quotaLimiter.reserve(method, 1);
+        } catch (IllegalStateException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        Executor start = waitNanos > 0
+                ? CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS, executor)
+                : executor;
+
+        return CompletableFuture
+                .supplyAsync(() -> null, start)
+                // Completes right away with a cached token; otherwise once the provider's shared refresh is done.
+                .thenCompose(ignored -> authProvider.accessTokenAsync())
+                .thenApply(token -> customizer.apply(HttpRequest.newBuilder(URI.create(baseUrl + pathAndQuery)))
+                        .header("Authorization", "Bearer " + token)
+                        .header("Accept", "application/json")
+                        .timeout(requestTimeout)
+                        .build())
+                .thenCompose(request -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream()))
+                // Never on the HttpClient's executor: that pool delivers the body this read waits for.
+                .thenApplyAsync(response -> parse(response, reader), parseExecutor);
+    }
+
+    /**
+     * Reads the response body as a stream (no intermediate String/byte[] copy).
+     */
+    private static <T> T parse(HttpResponse<InputStream> response, BodyReader<T> reader) {
+        try (InputStream in = response.body()) {
+            if (response.statusCode() >= 400) {
+                String error = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                throw new GmailHttpStatusException(response.statusCode(), error);
+            }
+            return reader.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read Gmail API response", e);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future, String errorMessage) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof GmailHistoryExpiredException expired) {
+                throw expired;
+            }
+            throw new IllegalStateException(errorMessage, cause);
+        }
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        Throwable cur = t;
+        while (cur instanceof CompletionException && cur.getCause() != null) {
+            cur = cur.getCause();
+        }
+        return cur;
+    }
+
+    /**
+     * Partial-response mask as an extra query parameter ("&fields=...").
+     */
+    private static String fields(String mask) {
+        return "&fields=" + encode(mask);
+    }
+
+    private static String encode(String v) {
+        return URLEncoder.encode(v, StandardCharsets.UTF_8);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            java.lang.Thread t = new java.lang.Thread(r, prefix + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @FunctionalInterface
+    private interface BodyReader<T> {
+        T read(InputStream in) throws IOException;
+    }
+
+    /**
+     * Non-2xx Gmail API response.
+     * - The message keeps the status code and error body (e.g., 429 rateLimitExceeded) so
+     *   GmailRateLimitRetry can classify it.
+     */
+    static class GmailHttpStatusException extends IllegalStateException {
+
+        private final int statusCode;
+
+        GmailHttpStatusException(int statusCode, String body) {
+            super("Gmail API returned HTTP " + statusCode + ": " + body);
+            this.statusCode = statusCode;
+        }
+
+        int statusCode() {
+            return statusCode;
+        }
+    }
+}
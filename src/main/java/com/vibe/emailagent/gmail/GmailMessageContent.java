@@ -8,6 +8,7 @@ import java.time.OffsetDateTime;
  * Notes
  * - Full raw/MIME handling is deferred to later iterations.
  * - For now, we focus on extracting useful text for drafting/embedding.
+ * - draft is true for unsent drafts (DRAFT label), which threads.get returns along with the sent/received mail.
  */
 public record GmailMessageContent(
         String messageId,
@@ -16,6 +17,12 @@ public record GmailMessageContent(
         String from,
         OffsetDateTime receivedAt,
         String snippet,
-        String plainTextBody
+        String plainTextBody,
+        boolean draft
 ) {
+
+    public GmailMessageContent(String messageId, String threadId, String subject, String from,
+                               OffsetDateTime receivedAt, String snippet, String plainTextBody) {
+        this(messageId, threadId, subject, from, receivedAt, snippet, plainTextBody, false);
+    }
 }
@@ -0,0 +1,12 @@
+package com.vibe.emailagent.gmail;
+
+import java.util.List;
+
+/**
+ * DTO that wraps one page from Gmail messages.list without any per-message metadata.
+ */
+public record GmailMessageIdPage(
+        List<GmailMessageRef> messages,
+        String nextPageToken
+) {
+}
@@ -0,0 +1,328 @@
+package com.vibe.emailagent.gmail;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.api.services.gmail.model.Draft;
+import com.google.api.services.gmail.model.History;
+import com.google.api.services.gmail.model.HistoryLabelAdded;
+import com.google.api.services.gmail.model.HistoryMessageAdded;
+import com.google.api.services.gmail.model.ListHistoryResponse;
+import com.google.api.services.gmail.model.Message;
+import com.google.api.services.gmail.model.MessagePart;
+import com.google.api.services.gmail.model.MessagePartBody;
+import com.google.api.services.gmail.model.MessagePartHeader;
+
+/**
+ * Maps Gmail API model objects to our DTOs.
+ *
+ * Shared by {@link GmailApiClient} (Google SDK transport) and {@link GmailHttpAsyncClient}
+ * (java.net.http transport) so both produce identical summaries/contents.
+ */
+final class GmailMessageMapper {
+
+    // -------------------------
+    // Partial-response field masks (Gmail `fields` parameter)
+    // -------------------------
+    // Only request what the projections below read. Without a mask, every response carries label ids,
+    // size estimates, all part headers and the whole attachment part tree.
+
+    /**
+     * MIME nesting depth covered by the field mask.
+     * - Typical: mixed > related > alternative > text/plain (4). Deeper parts are not returned.
+     */
+    private static final int MAX_PART_DEPTH = 5;
+
+    /**
+     * messages.list: ids only.
+     */
+    static final String LIST_FIELDS = "messages(id,threadId),nextPageToken";
+
+    /**
+     * messages.get (format=metadata) for {@link GmailMessageSummary}.
+     */
+    static final String SUMMARY_FIELDS = "id,threadId,internalDate,snippet,payload/headers(name,value)";
+
+    /**
+     * messages.get (format=full) for {@link GmailMessageContent}.
+     * - Top-level headers for Subject/From; nested part headers carry the Content-Type charset.
+     */
+    static final String CONTENT_FIELDS = "id,threadId,labelIds,internalDate,snippet,payload(mimeType,filename,headers(name,value),body(size,data),"
+            + nestedPartFields(MAX_PART_DEPTH) + ")";
+
+    /**
+     * messages.get (format=raw): the RFC822 message replaces the parsed payload tree.
+     */
+    static final String RAW_FIELDS = "id,threadId,internalDate,snippet,raw";
+
+    /**
+     * threads.get (format=full).
+     */
+    static final String THREAD_FIELDS = "messages(" + CONTENT_FIELDS + ")";
+
+    static final String HISTORY_FIELDS = "history(id,messagesAdded/message(id,threadId,labelIds),labelsAdded/message(id,threadId,labelIds)),"
+            + "historyId,nextPageToken";
+
+    static final String PROFILE_FIELDS = "emailAddress,historyId";
+
+    static final String DRAFT_FIELDS = "id";
+
+    private GmailMessageMapper() {
+    }
+
+    private static String nestedPartFields(int depth) {
+        if (depth <= 0) {
+            return "parts(mimeType,filename,headers(name,value),body(size,data))";
+        }
+        return "parts(mimeType,filename,headers(name,value),body(size,data)," + nestedPartFields(depth - 1) + ")";
+    }
+
+    static GmailMessageSummary toSummary(Message full) {
+        String subject = headerValue(full.getPayload() != null ? full.getPayload().getHeaders() : null, "Subject");
+        String from = headerValue(full.getPayload() != null ? full.getPayload().getHeaders() : null, "From");
+        String snippet = full.getSnippet() != null ? full.getSnippet() : "";
+
+        OffsetDateTime receivedAt = OffsetDateTime.now();
+        if (full.getInternalDate() != null) {
+            receivedAt = OffsetDateTime.ofInstant(Instant.ofEpochMilli(full.getInternalDate()), ZoneOffset.UTC);
+        }
+
+        return new GmailMessageSummary(full.getId(), full.getThreadId(), subject, from, snippet, receivedAt);
+    }
+
+    /**
+     * Id-only summary used when the metadata fetch for a listed message fails.
+     */
+    static GmailMessageSummary fallbackSummary(GmailMessageRef ref) {
+        return new GmailMessageSummary(ref.messageId(), ref.threadId(), "", "", "", OffsetDateTime.now());
+    }
+
+    /**
+     * Maps a format=full message to cleaned content.
+     *
+     * @param maxPartBytes parts larger than this (decoded size reported by Gmail) are skipped
+     */
+    static GmailMessageContent toContent(Message full, long maxPartBytes, GmailTextCleaner cleaner) {
+        String subject = headerValue(full.getPayload() != null ? full.getPayload().getHeaders() : null, "Subject");
+        String from = headerValue(full.getPayload() != null ? full.getPayload().getHeaders() : null, "From");
+
+        String snippet = full.getSnippet() != null ? full.getSnippet() : "";
+
+        String body = extractBestEffortPlainText(full.getPayload(), maxPartBytes, cleaner);
+        body = cleaner.clean(body, full.getId());
+
+        boolean draft = full.getLabelIds() != null && full.getLabelIds().contains("DRAFT");
+        return new GmailMessageContent(full.getId(), full.getThreadId(), subject, from, receivedAt(full), snippet, body, draft);
+    }
+
+    /**
+     * Maps each thread message to content, keeping at least IDs/snippet for messages that fail to map.
+     *
+     * @param stripThreadQuotes remove text that already appeared in an earlier message of the thread
+     *                          (see {@link QuotedContentIndex})
+     */
+    static List<GmailMessageContent> toThreadContents(List<Message> messages, long maxPartBytes, boolean stripThreadQuotes,
+                                                      GmailTextCleaner cleaner) {
+        if (messages == null || messages.isEmpty()) {
+            return List.of();
+        }
+
+        List<GmailMessageContent> contents = messages.stream()
+                .map(m -> {
+                    try {
+                        return toContent(m, maxPartBytes, cleaner);
+                    } catch (Exception e) {
+                        // Best effort fallback: keep at least IDs/snippet
+                        boolean draft = m.getLabelIds() != null && m.getLabelIds().contains("DRAFT");
+                        return new GmailMessageContent(m.getId(), m.getThreadId(), "", "", receivedAt(m), m.getSnippet(), "", draft);
+                    }
+                })
+                .toList();
+
+        return stripThreadQuotes ? stripQuotedHistory(contents) : contents;
+    }
+
+    /**
+     * Removes from each message what its earlier thread messages already contain (input order is kept).
+     */
+    static List<GmailMessageContent> stripQuotedHistory(List<GmailMessageContent> contents) {
+        List<GmailMessageContent> chronological = contents.stream()
+                .sorted(Comparator.comparing(GmailMessageContent::receivedAt, Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+
+        QuotedContentIndex index = new QuotedContentIndex();
+        Map<String, String> strippedById = new HashMap<>();
+        for (GmailMessageContent c : chronological) {
+            String body = c.plainTextBody();
+            strippedById.put(c.messageId(), index.strip(body));
+            // Index the full body: later replies may quote any part of it.
+            index.add(body);
+        }
+
+        return contents.stream()
+                .map(c -> new GmailMessageContent(c.messageId(), c.threadId(), c.subject(), c.from(), c.receivedAt(),
+                        c.snippet(), strippedById.getOrDefault(c.messageId(), c.plainTextBody()), c.draft()))
+                .toList();
+    }
+
+    static List<GmailHistoryMessage> toHistoryMessages(ListHistoryResponse response) {
+        List<GmailHistoryMessage> messages = new ArrayList<>();
+        if (response.getHistory() == null) {
+            return messages;
+        }
+
+        for (History h : response.getHistory()) {
+            long historyId = h.getId() != null ? h.getId().longValue() : 0L;
+            if (h.getMessagesAdded() != null) {
+                for (HistoryMessageAdded added : h.getMessagesAdded()) {
+                    addHistoryMessage(messages, added.getMessage(), historyId);
+                }
+            }
+            if (h.getLabelsAdded() != null) {
+                for (HistoryLabelAdded added : h.getLabelsAdded()) {
+                    addHistoryMessage(messages, added.getMessage(), historyId);
+                }
+            }
+        }
+        return messages;
+    }
+
+    private static void addHistoryMessage(List<GmailHistoryMessage> out, Message m, long historyId) {
+        if (m == null || m.getId() == null) {
+            return;
+        }
+        List<String> labelIds = m.getLabelIds() != null ? m.getLabelIds() : List.of();
+        out.add(new GmailHistoryMessage(m.getId(), m.getThreadId(), labelIds, historyId));
+    }
+
+    /**
+     * Builds a plain text reply draft.
+     *
+     * NOTE: Still a skeleton.
+     * Proper reply drafting requires building a raw RFC822 message with In-Reply-To/References.
+     */
+    static Draft toReplyDraft(String threadId, String subject, String draftBody) {
+        Message message = new Message();
+        message.setThreadId(threadId);
+
+        String raw = "Subject: " + (subject == null ? "" : subject) + "\r\n" +
+                "Content-Type: text/plain; charset=\"UTF-8\"\r\n" +
+                "\r\n" +
+                (draftBody == null ? "" : draftBody);
+
+        String encoded = Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        message.setRaw(encoded);
+
+        Draft draft = new Draft();
+        draft.setMessage(message);
+        return draft;
+    }
+
+    private static OffsetDateTime receivedAt(Message m) {
+        if (m.getInternalDate() == null) {
+            return null;
+        }
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(m.getInternalDate()), ZoneOffset.UTC);
+    }
+
+    /**
+     * Best-effort extraction of a human-readable body.
+     *
+     * - Prefers text/plain, then text/html.
+     * - Skips attachments (parts with a filename) and parts larger than maxPartBytes.
+     */
+    private static String extractBestEffortPlainText(MessagePart part, long maxPartBytes, GmailTextCleaner cleaner) {
+        if (part == null) return "";
+
+        String plain = findFirstPart(part, "text/plain", maxPartBytes);
+        if (plain != null && !plain.isBlank()) {
+            return plain;
+        }
+
+        String html = findFirstPart(part, "text/html", maxPartBytes);
+        if (html != null && !html.isBlank()) {
+            return cleaner.clean(html);
+        }
+
+        return isReadable(part, maxPartBytes) ? decodeBody(part) : "";
+    }
+
+    private static String findFirstPart(MessagePart part, String mimeType, long maxPartBytes) {
+        if (part == null) return null;
+
+        if (mimeType.equalsIgnoreCase(part.getMimeType())) {
+            return isReadable(part, maxPartBytes) ? decodeBody(part) : null;
+        }
+
+        if (part.getParts() == null || part.getParts().isEmpty()) {
+            return null;
+        }
+
+        for (MessagePart p : part.getParts()) {
+            String found = findFirstPart(p, mimeType, maxPartBytes);
+            if (found != null && !found.isBlank()) {
+                return found;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Attachments (even text ones) are not message bodies; oversized parts are not worth decoding.
+     */
+    private static boolean isReadable(MessagePart part, long maxPartBytes) {
+        if (part.getFilename() != null && !part.getFilename().isBlank()) {
+            return false;
+        }
+        MessagePartBody body = part.getBody();
+        return body == null || body.getSize() == null || maxPartBytes <= 0 || body.getSize() <= maxPartBytes;
+    }
+
+    /**
+     * Gmail removes the transfer encoding but keeps the original charset, so decode with the part's charset.
+     */
+    private static String decodeBody(MessagePart part) {
+        MessagePartBody body = part.getBody();
+        if (body == null || body.getData() == null) return "";
+        try {
+            byte[] decoded = Base64.getUrlDecoder().decode(body.getData());
+            return new String(decoded, charsetOf(part));
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    private static Charset charsetOf(MessagePart part) {
+        String contentType = headerValue(part.getHeaders(), "Content-Type");
+        int idx = contentType.toLowerCase().indexOf("charset=");
+        if (idx < 0) {
+            return StandardCharsets.UTF_8;
+        }
+
+        String name = contentType.substring(idx + "charset=".length()).split(";")[0].trim().replace("\"", "");
+        try {
+            return Charset.forName(name);
+        } catch (Exception e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    private static String headerValue(List<MessagePartHeader> headers, String name) {
+        if (headers == null) return "";
+        return headers.stream()
+                .filter(h -> name.equalsIgnoreCase(h.getName()))
+                .map(MessagePartHeader::getValue)
+                .findFirst()
+                .orElse("");
+    }
+}
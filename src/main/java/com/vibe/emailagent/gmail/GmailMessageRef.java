@@ -0,0 +1,14 @@
+package com.vibe.emailagent.gmail;
+
+/**
+ * Id-only reference to a Gmail message, as returned by messages.list.
+ *
+ * Notes
+ * - messages.list itself only returns ids; anything else (subject, from, snippet) costs an extra call.
+ * - Use this when the caller fetches full content anyway (e.g., ingestion).
+ */
+public record GmailMessageRef(
+        String messageId,
+        String threadId
+) {
+}
@@ -0,0 +1,13 @@
+package com.vibe.emailagent.gmail;
+
+/**
+ * Minimal view of users.getProfile.
+ *
+ * @param emailAddress mailbox address of the authenticated user (used as the sync checkpoint key)
+ * @param historyId current mailbox history id (watermark for the next incremental sync)
+ */
+public record GmailProfile(
+        String emailAddress,
+        long historyId
+) {
+}
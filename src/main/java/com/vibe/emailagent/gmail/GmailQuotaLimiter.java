@@ -0,0 +1,138 @@
+package com.vibe.emailagent.gmail;
+
+import java.util.concurrent.TimeUnit;
+
+import com.vibe.emailagent.config.GmailProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Token-bucket limiter for Gmail per-user quota units.
+ *
+ * Why
+ * - Gmail enforces a per-user quota (units/second). Each method has its own cost (see {@link GmailApiMethod}).
+ * - Without client-side pacing, concurrent callers get 429 rateLimitExceeded responses.
+ *
+ * How it works
+ * - The bucket refills continuously at unitsPerSecond, up to burstUnits.
+ * - A caller reserves its units up front. If the bucket goes into debt, the caller waits until the debt is repaid.
+ *   Reservations are served in call order, so waiting callers don't starve each other.
+ * - If the required wait exceeds maxWaitMillis, the permit is rejected (nothing is reserved, nothing is sent).
+ *   The rejection is local, so it is not retried like a server 429 (see GmailRateLimitRetry).
+ *
+ * Metrics
+ * - gmail.quota.wait (timer, tag: method): time spent waiting for permits
+ * - gmail.quota.rejected (counter, tag: method): permits rejected because the wait would exceed maxWaitMillis
+ */
+@Component
+public class GmailQuotaLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(GmailQuotaLimiter.class);
+
+    // Gmail default per-user limit.
+    private static final double DEFAULT_UNITS_PER_SECOND = 250;
+    private static final long DEFAULT_MAX_WAIT_MILLIS = 30_000;
+
+    private final MeterRegistry meterRegistry;
+
+    private final boolean enabled;
+    private final double unitsPerNano;
+    private final double burstUnits;
+    private final long maxWaitNanos;
+
+    // Guarded by this.
+    private double availableUnits;
+    private long lastRefillNanos;
+
+    public GmailQuotaLimiter(GmailProperties gmailProperties, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+
+        GmailProperties.Quota quota = gmailProperties.quota();
+        double unitsPerSecond = quota != null && quota.unitsPerSecond() > 0 ? quota.unitsPerSecond() : DEFAULT_UNITS_PER_SECOND;
+        double burst = quota != null && quota.burstUnits() > 0 ? quota.burstUnits() : unitsPerSecond;
+        long maxWaitMillis = quota != null && quota.maxWaitMillis() > 0 ? quota.maxWaitMillis() : DEFAULT_MAX_WAIT_MILLIS;
+
+        this.enabled = quota == null || quota.enabled();
+        this.unitsPerNano = unitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burstUnits = burst;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+
+        this.availableUnits = burst;
+        this.lastRefillNanos = System.nanoTime();
+
+        log.info("Gmail quota limiter: enabled={}, unitsPerSecond={}, burstUnits={}, maxWaitMillis={}",
+                enabled, unitsPerSecond, burst, maxWaitMillis);
+    }
+
+    /**
+     * Blocks until one call of the given method fits into the quota.
+     */
+    public void acquire(GmailApiMethod method) {
+        acquire(method, 1);
+    }
+
+    /**
+     * Blocks until {@code calls} calls of the given method fit into the quota (e.g., a batch request).
+     *
+     * @throws IllegalStateException if the wait would exceed the configured max wait
+     */
+    public void acquire(GmailApiMethod method, int calls) {
+        long waitNanos = reserve(method, calls);
+        if (waitNanos <= 0) {
+            return;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Gmail quota", e);
+        }
+    }
+
+    /**
+     * Reserves units without blocking.
+     *
+     * @return nanoseconds the caller must wait before issuing the call (0 if it can go now)
+     * @throws IllegalStateException if the wait would exceed the configured max wait
+     */
+    public long reserve(GmailApiMethod method, int calls) {
+        if (!enabled || calls <= 0) {
+            return 0;
+        }
+
+        int units = method.quotaUnits() * calls;
+        long waitNanos;
+
+        synchronized (this) {
+            long now = System.nanoTime();
+            availableUnits = Math.min(burstUnits, availableUnits + (now - lastRefillNanos) * unitsPerNano);
+            lastRefillNanos = now;
+
+            double remaining = availableUnits - units;
+            waitNanos = remaining >= 0 ? 0 : (long) Math.ceil(-remaining / unitsPerNano);
+
+            if (waitNanos > maxWaitNanos) {
+                Counter.builder("gmail.quota.rejected")
+                        .tag("method", method.name())
+                        .register(meterRegistry)
+                        .increment();
+                throw new IllegalStateException("Client-side Gmail quota limit: waiting " + TimeUnit.NANOSECONDS.toMillis(waitNanos)
+                        + "ms for " + method + " x" + calls + " exceeds gmail.quota.max-wait-millis (request not sent)");
+            }
+
+            availableUnits = remaining;
+        }
+
+        Timer.builder("gmail.quota.wait")
+                .tag("method", method.name())
+                .register(meterRegistry)
+                .record(waitNanos, TimeUnit.NANOSECONDS);
+
+        return waitNanos;
+    }
+}
@@ -0,0 +1,167 @@
+package com.vibe.emailagent.gmail;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.vibe.emailagent.config.GmailProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Retries Gmail calls that the server rejected for rate limiting, with exponential backoff.
+ *
+ * Why
+ * - GmailQuotaLimiter paces calls, but Gmail can still answer 429 (or 403 rateLimitExceeded /
+ *   userRateLimitExceeded), e.g. when another client shares the mailbox quota. Gmail asks clients to back off.
+ * - @ExponentialRetry does not apply here: it is an aspect on Spring bean methods, and the Gmail clients
+ *   call the API from inside their own methods (and the async client must not sleep a thread).
+ *
+ * How it works
+ * - Only server rate-limit responses are retried. Other errors, and the quota limiter's own rejection
+ *   (the request was never sent), fail immediately.
+ * - Backoff: initialBackoffMillis * 2^(attempt-1) plus up to initialBackoffMillis of random jitter, capped at
+ *   {@link #MAX_BACKOFF_MILLIS}. Each attempt goes through the quota limiter again.
+ */
+final class GmailRateLimitRetry {
+
+    private static final Logger log = LoggerFactory.getLogger(GmailRateLimitRetry.class);
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 1000;
+    static final long MAX_BACKOFF_MILLIS = 32_000;
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+
+    GmailRateLimitRetry(GmailProperties.Retry retry) {
+        this.maxAttempts = retry != null && retry.maxAttempts() > 0 ? retry.maxAttempts() : DEFAULT_MAX_ATTEMPTS;
+        this.initialBackoffMillis = retry != null && retry.initialBackoffMillis() >= 0
+                ? retry.initialBackoffMillis()
+                : DEFAULT_INITIAL_BACKOFF_MILLIS;
+    }
+
+    /**
+     * One blocking Gmail request (quota acquisition included).
+     */
+    @FunctionalInterface
+    interface Call<T> {
+        T execute() throws IOException;
+    }
+
+    /**
+     * Runs the call, sleeping between rate-limited attempts.
+     */
+    <T> T execute(String operation, Call<T> call) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.execute();
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= maxAttempts || !isRateLimited(e)) {
+                    throw e;
+                }
+                long backoff = backoffMillis(attempt);
+                log.warn("[Gmail] {} rate limited (attempt {}/{}). Retrying in {}ms", operation, attempt, maxAttempts, backoff);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the call again after a scheduled delay when it fails rate limited (no thread sleeps).
+     *
+     * @param executor runs the next attempt once the backoff has elapsed
+     */
+    <T> CompletableFuture<T> executeAsync(String operation, Supplier<CompletableFuture<T>> call, Executor executor) {
+        return executeAsync(operation, call, executor, 1);
+    }
+
+    private <T> CompletableFuture<T> executeAsync(String operation, Supplier<CompletableFuture<T>> call, Executor executor, int attempt) {
+        return call.get()
+                .handle((value, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(value);
+                    }
+                    if (attempt >= maxAttempts || !isRateLimited(error)) {
+                        return CompletableFuture.<T>failedFuture(error);
+                    }
+                    long backoff = backoffMillis(attempt);
+                    log.warn("[Gmail] {} rate limited (attempt {}/{}). Retrying in {}ms", operation, attempt, maxAttempts, backoff);
+                    Executor delayed = CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS, executor);
+                    return CompletableFuture.supplyAsync(() -> null, delayed)
+                            .thenCompose(ignored -> executeAsync(operation, call, executor, attempt + 1));
+                })
+                .thenCompose(f -> f);
+    }
+
+    long backoffMillis(int attempt) {
+        long exponential = initialBackoffMillis << Math.min(Math.max(0, attempt - 1), 20);
+        long jitter = initialBackoffMillis > 0 ? ThreadLocalRandom.current().nextLong(initialBackoffMillis + 1) : 0;
+        return Math.min(MAX_BACKOFF_MILLIS, exponential + jitter);
+    }
+
+    /**
+     * True for Gmail rate-limit responses: HTTP 429, or 403 with reason rateLimitExceeded / userRateLimitExceeded.
+     */
+    static boolean isRateLimited(Throwable t) {
+        for (Throwable cur = t; cur != null; cur = cur.getCause() == cur ? null : cur.getCause()) {
+            if (cur instanceof CompletionException) {
+                continue;
+            }
+            if (cur instanceof GoogleJsonResponseException e) {
+                return e.getStatusCode() == 429 || (e.getStatusCode() == 403 && hasRateLimitReason(e.getDetails()));
+            }
+            if (cur instanceof GmailHttpAsyncClient.GmailHttpStatusException e) {
+                return e.statusCode() == 429 || (e.statusCode() == 403 && mentionsRateLimitReason(e.getMessage()));
+            }
+            if (cur instanceof RateLimitedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same check for the error of one sub-request of a batch call.
+     */
+    static boolean isRateLimited(GoogleJsonError error) {
+        return error != null && (error.getCode() == 429 || (error.getCode() == 403 && hasRateLimitReason(error)));
+    }
+
+    private static boolean hasRateLimitReason(GoogleJsonError error) {
+        if (error == null || error.getErrors() == null) {
+            return false;
+        }
+        return error.getErrors().stream().anyMatch(info -> isRateLimitReason(info.getReason()));
+    }
+
+    private static boolean mentionsRateLimitReason(String body) {
+        return body != null && (body.contains("\"rateLimitExceeded\"") || body.contains("\"userRateLimitExceeded\""));
+    }
+
+    private static boolean isRateLimitReason(String reason) {
+        return "rateLimitExceeded".equals(reason) || "userRateLimitExceeded".equals(reason);
+    }
+
+    /**
+     * Thrown by a call whose HTTP request succeeded but reported rate-limited parts (batch sub-requests),
+     * so the remaining parts are retried like a rate-limited request.
+     */
+    static class RateLimitedException extends IOException {
+
+        RateLimitedException(String message) {
+            super(message);
+        }
+    }
+}
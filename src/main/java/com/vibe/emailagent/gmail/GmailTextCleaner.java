@@ -1,5 +1,14 @@
 package com.vibe.emailagent.gmail;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
 /**
  * Utilities for cleaning Gmail message bodies before ingestion.
  *
@@ -12,10 +21,53 @@ package com.vibe.emailagent.gmail;
  * Notes
  * - Email clients vary a lot. This is intentionally conservative and best-effort.
  * - Keep this deterministic (no LLM-based cleanup) to control cost.
+ * - Cleaning runs once per ingested message, so it avoids whole-body regex passes:
+ *   HTML goes through the single-pass {@link HtmlTextExtractor}, and the remaining patterns are
+ *   precompiled and only run when a cheap pre-check says they can match.
+ * - Some of those patterns still backtrack badly on adversarial input (e.g. thousands of "\nOn "
+ *   lines without "wrote:"). Cleaning is therefore bounded:
+ *   - input is capped at MAX_INPUT_CHARS
+ *   - regexes run over a CharSequence that counts charAt() calls against a step budget
+ *     proportional to the input size
+ *   If the budget runs out, the message is cleaned by a cheap linear path instead (HTML scan,
+ *   literal separators only) and reported via the "gmail.cleaner.budget_exceeded" counter.
+ * - A bean only so the counter is registered in the application's MeterRegistry; the cleaning itself is stateless.
  */
-public final class GmailTextCleaner {
+@Component
+public class GmailTextCleaner {
+
+    private static final Logger log = LoggerFactory.getLogger(GmailTextCleaner.class);
+
+    /**
+     * Bodies are cut to this many chars before cleaning (longer mails are almost always generated noise).
+     */
+    static final int MAX_INPUT_CHARS = 500_000;
+
+    /**
+     * Regex step budget: charAt() calls allowed per input char (normal mail uses well under 20).
+     */
+    static final long STEPS_PER_CHAR = 64;
+
+    /**
+     * Floor for the budget, so short inputs never fall back.
+     */
+    static final long MIN_STEPS = 1_000_000;
+
+    static final String BUDGET_EXCEEDED_METRIC = "gmail.cleaner.budget_exceeded";
+
+    private static final Pattern CSS_MEDIA_BLOCK = Pattern.compile("(?is)@media[^\\{]*\\{.*?\\}");
+    private static final Pattern CSS_SELECTOR_RULE = Pattern.compile("(?s)(?:\\.|#)[A-Za-z0-9_-]+\\s*\\{[^}]*\\}");
+    private static final Pattern CSS_GENERIC_RULE = Pattern.compile("(?s)\\b[A-Za-z][A-Za-z0-9_-]*\\b\\s*\\{[^}]*\\}");
+    private static final Pattern CSS_PUNCTUATION_RUN = Pattern.compile("[;:{}]{3,}");
+
+    private static final Pattern ON_WROTE_LINE = Pattern.compile("(?i)^\\s*on\\s+.+?wrote:\\s*$", Pattern.MULTILINE);
+    private static final Pattern ON_WROTE_ANYWHERE = Pattern.compile("(?is)\\n\\s*On\\s+.+?wrote:\\s*\\n");
+    private static final Pattern HEADER_BLOCK_LINE = Pattern.compile("(?i)^\\s*(from|sent|to|subject):\\s+.+$", Pattern.MULTILINE);
 
-    private GmailTextCleaner() {
+    private final Counter budgetExceeded;
+
+    public GmailTextCleaner(MeterRegistry meterRegistry) {
+        this.budgetExceeded = meterRegistry.counter(BUDGET_EXCEEDED_METRIC);
     }
 
     /**
@@ -23,81 +75,134 @@ public final class GmailTextCleaner {
      *
      * @param raw raw body extracted from Gmail payload (may still contain HTML-ish artifacts)
      */
-    public static String clean(String raw) {
+    public String clean(String raw) {
+        return clean(raw, null);
+    }
+
+    /**
+     * Cleans raw body text within the step budget.
+     *
+     * @param raw raw body extracted from Gmail payload (may still contain HTML-ish artifacts)
+     * @param messageId only used to report messages that exceeded the budget (nullable)
+     */
+    public String clean(String raw, String messageId) {
         if (raw == null || raw.isBlank()) {
             return "";
         }
 
+        String input = capInput(raw);
+        StepBudget budget = new StepBudget(Math.max(MIN_STEPS, input.length() * STEPS_PER_CHAR));
+        try {
+            return cleanWithBudget(input, budget);
+        } catch (StepBudgetExceededException e) {
+            log.warn("Text cleaning exceeded its step budget; using the cheap path. messageId={}, chars={}",
+                    messageId, input.length());
+            budgetExceeded.increment();
+            return cleanCheap(input);
+        }
+    }
+
+    private static String cleanWithBudget(String raw, StepBudget budget) {
         String text = raw;
 
         // If the body still looks like HTML, remove tags and normalize.
         if (looksLikeHtml(text)) {
-            text = htmlToText(text);
+            text = htmlToText(text, budget);
         }
 
         // Remove common quoted-reply separators.
-        text = stripQuotedReply(text);
+        text = stripQuotedReply(text, budget);
 
         // Normalize whitespace a bit.
-        text = text.replace('\r', '\n');
-        text = text.replaceAll("\n{3,}", "\n\n");
-        text = text.replaceAll("[ \t]{2,}", " ");
+        return collapseWhitespace(text).strip();
+    }
 
-        return text.strip();
+    /**
+     * Linear fallback: no regexes, only literal quote/forward separators.
+     */
+    private static String cleanCheap(String raw) {
+        String text = looksLikeHtml(raw) ? HtmlTextExtractor.toText(raw) : raw;
+        text = cutAtLiteralSeparators(text);
+        return collapseWhitespace(text).strip();
+    }
+
+    private static String capInput(String raw) {
+        if (raw.length() <= MAX_INPUT_CHARS) {
+            return raw;
+        }
+        int end = MAX_INPUT_CHARS;
+        if (Character.isHighSurrogate(raw.charAt(end - 1))) {
+            end--;
+        }
+        return raw.substring(0, end);
     }
 
     private static boolean looksLikeHtml(String s) {
-        String lower = s.toLowerCase();
-        return lower.contains("<html") || lower.contains("<body") || lower.contains("<div") || lower.contains("<br")
-                || (lower.contains("<") && lower.contains(">") && lower.contains("</"));
+        return containsIgnoreCase(s, "<html") || containsIgnoreCase(s, "<body") || containsIgnoreCase(s, "<div")
+                || containsIgnoreCase(s, "<br")
+                || (s.indexOf('<') >= 0 && s.indexOf('>') >= 0 && s.contains("</"));
     }
 
     /**
-     * Very small HTML-to-text conversion.
+     * One pass equivalent of: \r -> \n, \n{3,} -> \n\n, [ \t]{2,} -> " ".
+     */
+    private static String collapseWhitespace(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        int newlines = 0;
+        int blanks = 0;
+        char firstBlank = ' ';
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\r') {
+                c = '\n';
+            }
+
+            if (c == ' ' || c == '\t') {
+                if (blanks++ == 0) {
+                    firstBlank = c;
+                }
+                continue;
+            }
+            if (blanks > 0) {
+                out.append(blanks > 1 ? ' ' : firstBlank);
+                blanks = 0;
+                newlines = 0;
+            }
+
+            if (c == '\n') {
+                if (++newlines > 2) {
+                    continue;
+                }
+            } else {
+                newlines = 0;
+            }
+            out.append(c);
+        }
+        if (blanks > 0) {
+            out.append(blanks > 1 ? ' ' : firstBlank);
+        }
+        return out.toString();
+    }
+
+    /**
+     * HTML-to-text conversion.
      *
-     * This is intentionally minimal to avoid introducing extra dependencies.
-     * It won't be perfect, but it removes the most common tag noise.
+     * The tag/entity/whitespace handling is a single pass (see {@link HtmlTextExtractor});
+     * only leaked CSS text still goes through regexes, and only when the text contains a '{'.
      */
-    private static String htmlToText(String html) {
+    private static String htmlToText(String html, StepBudget budget) {
         if (html == null || html.isBlank()) {
             return "";
         }
 
-        String text = html;
-
-        // Remove non-content blocks early (best-effort).
-        // - Some emails inline huge CSS in <style> blocks.
-        // - Some templates include script tags.
-        text = text.replaceAll("(?is)<style[^>]*>.*?</style>", " ");
-        text = text.replaceAll("(?is)<script[^>]*>.*?</script>", " ");
-        text = text.replaceAll("(?is)<head[^>]*>.*?</head>", " ");
-
-        // Preserve line breaks for common tags before stripping.
-        text = text.replaceAll("(?i)<br\\s*/?>", "\n");
-        text = text.replaceAll("(?i)</p>", "\n");
-        text = text.replaceAll("(?i)</div>", "\n");
-        text = text.replaceAll("(?i)</li>", "\n");
-        text = text.replaceAll("(?i)</tr>", "\n");
-        text = text.replaceAll("(?i)</h[1-6]>", "\n");
-
-        // Remove the remaining tags.
-        text = text.replaceAll("<[^>]+>", " ");
-
-        // Decode a few common HTML entities.
-        text = text.replace("&nbsp;", " ")
-                .replace("&lt;", "<")
-                .replace("&gt;", ">")
-                .replace("&amp;", "&")
-                .replace("&quot;", "\"")
-                .replace("&#39;", "'");
+        String text = HtmlTextExtractor.toText(html);
 
         // Some templates accidentally leak CSS into text nodes.
         // Best-effort removal of obvious CSS-like patterns.
-        text = stripCssLikeNoise(text);
-
-        // Collapse whitespace.
-        text = text.replaceAll("[ \t]{2,}", " ");
-        text = text.replaceAll("\n{3,}", "\n\n");
+        if (text.indexOf('{') >= 0) {
+            text = collapseWhitespace(stripCssLikeNoise(text, budget));
+        }
 
         return text.strip();
     }
@@ -105,7 +210,7 @@ public final class GmailTextCleaner {
     /**
      * Removes typical CSS rules that sometimes appear in HTML email bodies.
      */
-    private static String stripCssLikeNoise(String text) {
+    private static String stripCssLikeNoise(String text, StepBudget budget) {
         if (text == null || text.isBlank()) {
             return "";
         }
@@ -113,16 +218,16 @@ public final class GmailTextCleaner {
         String out = text;
 
         // Remove @media blocks (can be huge). Non-greedy to avoid wiping too much.
-        out = out.replaceAll("(?is)@media[^\\{]*\\{.*?\\}", " ");
+        out = CSS_MEDIA_BLOCK.matcher(budget.wrap(out)).replaceAll(" ");
 
         // Remove common selector{...} patterns.
-        out = out.replaceAll("(?s)(?:\\.|#)[A-Za-z0-9_-]+\\s*\\{[^}]*\\}", " ");
+        out = CSS_SELECTOR_RULE.matcher(budget.wrap(out)).replaceAll(" ");
 
         // Very generic rule blocks like: body { margin:0; }
-        out = out.replaceAll("(?s)\\b[A-Za-z][A-Za-z0-9_-]*\\b\\s*\\{[^}]*\\}", " ");
+        out = CSS_GENERIC_RULE.matcher(budget.wrap(out)).replaceAll(" ");
 
         // Remove leftover long runs of CSS punctuation.
-        out = out.replaceAll("[;:{}]{3,}", " ");
+        out = CSS_PUNCTUATION_RUN.matcher(budget.wrap(out)).replaceAll(" ");
 
         return out;
     }
@@ -130,24 +235,19 @@ public final class GmailTextCleaner {
     /**
      * Best-effort removal of quoted replies / forwards.
      */
-    private static String stripQuotedReply(String text) {
+    private static String stripQuotedReply(String text, StepBudget budget) {
         if (text == null || text.isBlank()) {
             return "";
         }
 
-        String out = text;
-
         // 1) Typical quoted line starts with ">".
-        int quoted = indexOfLineStartingWith(out, ">");
-        if (quoted >= 0) {
-            out = out.substring(0, quoted);
-        }
+        String out = cutAtQuotedLine(text);
 
         // 2) "On ... wrote:" style (Gmail/Web).
         // Example:
         //   On Dec 31, 2025, at 2:11 PM, Lauren K <...> wrote:
         //   On Tue, Dec 31, 2025 at 2:11 PM Lauren K <...> wrote:
-        int onWroteLine = indexOfRegexLine(out, "(?i)^\\s*on\\s+.+?wrote:\\s*$");
+        int onWroteLine = indexOf(out, ON_WROTE_LINE, budget);
         if (onWroteLine >= 0) {
             out = out.substring(0, onWroteLine);
         }
@@ -155,21 +255,13 @@ public final class GmailTextCleaner {
         // 3) Apple Mail style (your example):
         //   On Dec 31, 2025, at 2:11 PM, Lauren K <...> wrote:
         // Sometimes there is no leading newline for this separator in ingestion.
-        int onWroteAnywhere = indexOfRegex(out, "(?is)\\n\\s*On\\s+.+?wrote:\\s*\\n");
+        int onWroteAnywhere = indexOf(out, ON_WROTE_ANYWHERE, budget);
         if (onWroteAnywhere >= 0) {
             out = out.substring(0, onWroteAnywhere);
         }
 
         // 4) Outlook-ish forwarded/original message blocks.
-        int original = indexOfIgnoreCase(out, "-----Original Message-----");
-        if (original >= 0) {
-            out = out.substring(0, original);
-        }
-
-        int forwarded = indexOfIgnoreCase(out, "-----Forwarded message-----");
-        if (forwarded >= 0) {
-            out = out.substring(0, forwarded);
-        }
+        out = cutAtForwardMarkers(out);
 
         // 5) Header-style quoted blocks (common in Outlook and some clients):
         //    From: ...
@@ -177,7 +269,7 @@ public final class GmailTextCleaner {
         //    To: ...
         //    Subject: ...
         // We cut from the first strongly-indicative header line.
-        int headerBlock = indexOfRegexLine(out, "(?i)^\\s*(from|sent|to|subject):\\s+.+$");
+        int headerBlock = indexOf(out, HEADER_BLOCK_LINE, budget);
         if (headerBlock >= 0) {
             out = out.substring(0, headerBlock);
         }
@@ -185,47 +277,123 @@ public final class GmailTextCleaner {
         return out.strip();
     }
 
-    /**
-     * Finds the character offset of the first line matching the regex (Pattern.MULTILINE assumed).
-     */
-    private static int indexOfRegexLine(String text, String lineRegex) {
-        if (text == null || text.isEmpty()) {
-            return -1;
+    private static String cutAtLiteralSeparators(String text) {
+        return cutAtForwardMarkers(cutAtQuotedLine(text)).strip();
+    }
+
+    private static String cutAtQuotedLine(String text) {
+        int quoted = indexOfLineStartingWith(text, ">");
+        return quoted >= 0 ? text.substring(0, quoted) : text;
+    }
+
+    private static String cutAtForwardMarkers(String text) {
+        String out = text;
+
+        int original = indexOfIgnoreCase(out, "-----Original Message-----");
+        if (original >= 0) {
+            out = out.substring(0, original);
         }
 
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(lineRegex, java.util.regex.Pattern.MULTILINE);
-        java.util.regex.Matcher m = p.matcher(text);
-        return m.find() ? m.start() : -1;
+        int forwarded = indexOfIgnoreCase(out, "-----Forwarded message-----");
+        if (forwarded >= 0) {
+            out = out.substring(0, forwarded);
+        }
+        return out;
     }
 
     /**
-     * Finds the character offset of the first match for the given regex.
+     * Finds the character offset of the first match for the given (precompiled) pattern.
      */
-    private static int indexOfRegex(String text, String regex) {
+    private static int indexOf(String text, Pattern pattern, StepBudget budget) {
         if (text == null || text.isEmpty()) {
             return -1;
         }
 
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile(regex);
-        java.util.regex.Matcher m = p.matcher(text);
+        Matcher m = pattern.matcher(budget.wrap(text));
         return m.find() ? m.start() : -1;
     }
 
     private static int indexOfLineStartingWith(String text, String prefix) {
         int idx = 0;
         while (idx < text.length()) {
-            int lineEnd = text.indexOf('\n', idx);
-            if (lineEnd < 0) lineEnd = text.length();
-            String line = text.substring(idx, lineEnd);
-            if (line.startsWith(prefix)) {
+            if (text.startsWith(prefix, idx)) {
                 return idx;
             }
+            int lineEnd = text.indexOf('\n', idx);
+            if (lineEnd < 0) {
+                break;
+            }
             idx = lineEnd + 1;
         }
         return -1;
     }
 
     private static int indexOfIgnoreCase(String haystack, String needle) {
-        return haystack.toLowerCase().indexOf(needle.toLowerCase());
+        for (int i = 0; i + needle.length() <= haystack.length(); i++) {
+            if (haystack.regionMatches(true, i, needle, 0, needle.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean containsIgnoreCase(String haystack, String needle) {
+        return indexOfIgnoreCase(haystack, needle) >= 0;
+    }
+
+    /**
+     * Shared step counter for all regex work on one message.
+     */
+    private static final class StepBudget {
+        private long remaining;
+
+        StepBudget(long steps) {
+            this.remaining = steps;
+        }
+
+        CharSequence wrap(String text) {
+            return new BudgetedCharSequence(text, this);
+        }
+
+        void step() {
+            if (--remaining < 0) {
+                throw new StepBudgetExceededException();
+            }
+        }
+    }
+
+    /**
+     * CharSequence view that charges every charAt() to the budget.
+     * java.util.regex reads input only through charAt(), so this bounds backtracking as well.
+     */
+    private record BudgetedCharSequence(CharSequence text, StepBudget budget) implements CharSequence {
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            budget.step();
+            return text.charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new BudgetedCharSequence(text.subSequence(start, end), budget);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+
+    private static final class StepBudgetExceededException extends RuntimeException {
+        StepBudgetExceededException() {
+            // Control flow only: no stack trace.
+            super("Text cleaning step budget exceeded", null, false, false);
+        }
     }
 }
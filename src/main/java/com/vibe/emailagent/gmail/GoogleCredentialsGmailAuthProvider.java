@@ -1,6 +1,11 @@
 package com.vibe.emailagent.gmail;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
@@ -9,6 +14,7 @@ import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.gson.GsonFactory;
 import com.vibe.emailagent.config.GmailProperties;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -24,6 +30,9 @@ import org.springframework.stereotype.Component;
  * How it works
  * - Uses refresh_token to obtain/refresh access tokens automatically.
  * - On app startup (bean creation), prints current config to fail fast if misconfigured.
+ * - Access tokens for non-SDK transports ({@link #accessTokenAsync()}) are refreshed on a single background
+ *   thread, ahead of expiry. Callers get the cached token, or share the one refresh in flight; no request
+ *   thread waits on a lock while the token endpoint is called.
  *
  * Common pitfalls
  * - invalid_grant can happen when:
@@ -50,8 +59,31 @@ public class GoogleCredentialsGmailAuthProvider implements GmailAuthProvider {
             "https://www.googleapis.com/auth/gmail.readonly"
     );
 
+    // A cached access token is only handed out while it is valid for longer than this.
+    private static final long TOKEN_REFRESH_MARGIN_SECONDS = 60;
+
+    // Background refresh starts this long before the access token expires.
+    private static final long TOKEN_REFRESH_AHEAD_SECONDS = 300;
+
     private final GmailProperties gmailProperties;
 
+    // Runs every refresh, so the Credential is only touched by this thread on the accessTokenAsync path.
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "gmail-token-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Built once and shared by all transports (guarded by this).
+    private Credential credential;
+
+    // Last token obtained for accessTokenAsync (null until the first refresh).
+    private volatile AccessToken token;
+
+    // Refresh in flight or last completed (guarded by refreshLock, never held while refreshing).
+    private final Object refreshLock = new Object();
+    private CompletableFuture<AccessToken> refreshing;
+
     public GoogleCredentialsGmailAuthProvider(GmailProperties gmailProperties) {
         this.gmailProperties = gmailProperties;
     }
@@ -67,11 +99,97 @@ public class GoogleCredentialsGmailAuthProvider implements GmailAuthProvider {
         );
     }
 
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+
     @Override
     public HttpRequestInitializer requestInitializer() {
         // Gmail.Builder expects a HttpRequestInitializer.
         // In google-api-client, Credential implements HttpRequestInitializer.
-        return buildCredentialFromRefreshToken();
+        return credential();
+    }
+
+    @Override
+    public CompletableFuture<String> accessTokenAsync() {
+        AccessToken current = token;
+        if (current != null && current.validFor(TOKEN_REFRESH_MARGIN_SECONDS)) {
+            return CompletableFuture.completedFuture(current.value());
+        }
+        return refresh(false).thenApply(AccessToken::value);
+    }
+
+    /**
+     * Starts a refresh on the refresher thread, or joins the one in flight.
+     */
+    private CompletableFuture<AccessToken> refresh(boolean force) {
+        synchronized (refreshLock) {
+            if (refreshing == null || refreshing.isDone()) {
+                refreshing = CompletableFuture.supplyAsync(() -> refreshNow(force), refresher);
+            }
+            return refreshing;
+        }
+    }
+
+    /**
+     * Runs on the refresher thread only.
+     *
+     * @param force refresh even if the credential's token is still valid (scheduled refresh ahead of expiry)
+     */
+    private AccessToken refreshNow(boolean force) {
+        Credential c = credential();
+        // The SDK transport may have refreshed the shared credential already.
+        Long expiresIn = c.getExpiresInSeconds();
+        if (force || c.getAccessToken() == null || (expiresIn != null && expiresIn <= TOKEN_REFRESH_MARGIN_SECONDS)) {
+            try {
+                if (!c.refreshToken()) {
+                    throw new IllegalStateException("Refresh token exchange returned false. Check refresh token validity/scopes.");
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to refresh Gmail OAuth access token", e);
+            }
+        }
+
+        AccessToken refreshed = new AccessToken(c.getAccessToken(), c.getExpirationTimeMilliseconds());
+        token = refreshed;
+        scheduleRefresh(refreshed);
+        return refreshed;
+    }
+
+    private void scheduleRefresh(AccessToken current) {
+        if (current.expiresAtMillis() == null) {
+            return;
+        }
+        long lifetimeMillis = current.expiresAtMillis() - System.currentTimeMillis();
+        if (lifetimeMillis <= 0) {
+            return;
+        }
+        // Short-lived tokens are refreshed halfway through instead of right away.
+        long delayMillis = lifetimeMillis - Math.min(TimeUnit.SECONDS.toMillis(TOKEN_REFRESH_AHEAD_SECONDS), lifetimeMillis / 2);
+        refresher.schedule(() -> refresh(true).exceptionally(e -> {
+            // Requests retry the refresh themselves once the token is about to expire.
+            log.warn("Background Gmail OAuth token refresh failed: {}", e.getMessage());
+            return null;
+        }), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized Credential credential() {
+        if (credential == null) {
+            credential = buildCredentialFromRefreshToken();
+        }
+        return credential;
+    }
+
+    /**
+     * @param expiresAtMillis epoch millis, or null if the token endpoint did not say
+     */
+    private record AccessToken(String value, Long expiresAtMillis) {
+
+        boolean validFor(long seconds) {
+            return expiresAtMillis == null
+                    || expiresAtMillis - System.currentTimeMillis() > TimeUnit.SECONDS.toMillis(seconds);
+        }
     }
 
     /**
@@ -0,0 +1,433 @@
+package com.vibe.emailagent.gmail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single-pass HTML-to-text conversion used by {@link GmailTextCleaner}.
+ *
+ * Why
+ * - The previous implementation ran a chain of String.replaceAll passes. Each pass recompiled its regex
+ *   and copied the whole body, and on large ingestion runs that was the main CPU cost.
+ * - This is one left-to-right scan (a small tokenizer/state machine) writing into a reused StringBuilder.
+ *
+ * Output rules (kept compatible with the old regex chain)
+ * - style/script/head elements are dropped with their content; comments and doctype are dropped.
+ *   Without a closing tag only the opening tag is dropped, like the regex chain did (malformed mail keeps its text).
+ * - br and closing block tags (p, div, li, tr, h1-h6, ...) become line breaks; other tags become a space.
+ * - Named entities (full HTML5 table, gmail/html5-entities.txt, ';' forms only) and numeric entities are decoded.
+ *   Unknown entities are kept literally.
+ * - Whitespace is collapsed while writing: runs of spaces become one space, at most one blank line
+ *   is kept, and leading/trailing whitespace is dropped.
+ */
+final class HtmlTextExtractor {
+
+    /**
+     * Buffers above this size are not kept per thread (one huge message should not pin memory).
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(8192));
+
+    /**
+     * Longest entity name we try to resolve ("&amp;CounterClockwiseContourIntegral;" is the longest HTML5 name).
+     */
+    private static final int MAX_ENTITY_LENGTH = 31;
+
+    private static final String ENTITY_TABLE = "/gmail/html5-entities.txt";
+
+    private static final Map<String, String> ENTITIES = loadEntityTable();
+
+    private final CharSequence in;
+    private final StringBuilder out;
+    private boolean pendingSpace;
+    private int pendingNewlines;
+    private int noTagEndFrom = Integer.MAX_VALUE;
+    private boolean quotesUnbalanced;
+    // raw-text element name -> offset from which it has no closing tag (keeps unclosed elements linear)
+    private final Map<String, Integer> noClosingTagFrom = new HashMap<>(4);
+
+    private HtmlTextExtractor(CharSequence in, StringBuilder out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    static String toText(CharSequence html) {
+        if (html == null || html.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        try {
+            new HtmlTextExtractor(html, out).run();
+            return out.toString();
+        } finally {
+            if (out.capacity() > MAX_RETAINED_CAPACITY) {
+                BUFFER.set(new StringBuilder(8192));
+            }
+        }
+    }
+
+    private void run() {
+        int n = in.length();
+        int i = 0;
+        while (i < n) {
+            char c = in.charAt(i);
+            switch (c) {
+                case '<' -> i = tag(i);
+                case '&' -> i = entity(i);
+                case ' ', '\t', '\u00A0', '\f' -> {
+                    pendingSpace = true;
+                    i++;
+                }
+                case '\r' -> {
+                    // CRLF counts as one line break.
+                    if (i + 1 >= n || in.charAt(i + 1) != '\n') {
+                        pendingNewlines++;
+                    }
+                    i++;
+                }
+                case '\n' -> {
+                    pendingNewlines++;
+                    i++;
+                }
+                default -> {
+                    emit(c);
+                    i++;
+                }
+            }
+        }
+    }
+
+    // -------------------------
+    // Output
+    // -------------------------
+
+    private void emit(char c) {
+        flushWhitespace();
+        out.append(c);
+    }
+
+    private void emitCodePoint(int cp) {
+        flushWhitespace();
+        out.appendCodePoint(cp);
+    }
+
+    /**
+     * Writes deferred whitespace before the next visible char.
+     * Deferring is what drops leading/trailing whitespace and spaces around line breaks.
+     */
+    private void flushWhitespace() {
+        if (!out.isEmpty()) {
+            if (pendingNewlines > 0) {
+                out.append('\n');
+                if (pendingNewlines > 1) {
+                    out.append('\n');
+                }
+            } else if (pendingSpace) {
+                out.append(' ');
+            }
+        }
+        pendingSpace = false;
+        pendingNewlines = 0;
+    }
+
+    // -------------------------
+    // Tags
+    // -------------------------
+
+    /**
+     * Handles markup starting at '&lt;'.
+     *
+     * @return index after the consumed markup
+     */
+    private int tag(int start) {
+        int n = in.length();
+        if (start + 1 >= n) {
+            emit('<');
+            return start + 1;
+        }
+
+        char next = in.charAt(start + 1);
+
+        if (next == '!') {
+            if (startsWith(start, "<!--")) {
+                int end = indexOf("-->", start + 4);
+                pendingSpace = true;
+                return end < 0 ? n : end + 3;
+            }
+            return skipTag(start + 2);
+        }
+        if (next == '?') {
+            return skipTag(start + 2);
+        }
+
+        boolean closing = next == '/';
+        int nameStart = closing ? start + 2 : start + 1;
+        if (nameStart >= n || !isAsciiLetter(in.charAt(nameStart))) {
+            // "a < b" is text, not a tag.
+            emit('<');
+            return start + 1;
+        }
+
+        int nameEnd = nameStart;
+        while (nameEnd < n && isAsciiLetterOrDigit(in.charAt(nameEnd))) {
+            nameEnd++;
+        }
+
+        int end = tagEnd(nameEnd);
+        if (end < 0) {
+            // Unterminated tag: treat the rest as text rather than dropping it.
+            emit('<');
+            return start + 1;
+        }
+
+        String name = lowerAscii(nameStart, nameEnd);
+
+        if (!closing && (name.equals("style") || name.equals("script") || name.equals("head"))) {
+            pendingSpace = true;
+            int close = indexOfClosingTag(name, end + 1);
+            // Unclosed: drop only the opening tag and keep the text after it.
+            return close < 0 ? end + 1 : close;
+        }
+
+        if (name.equals("br") || (closing && isBlock(name))) {
+            pendingNewlines++;
+        } else {
+            pendingSpace = true;
+        }
+        return end + 1;
+    }
+
+    private static boolean isBlock(String name) {
+        return switch (name) {
+            case "p", "div", "li", "tr", "h1", "h2", "h3", "h4", "h5", "h6",
+                 "ul", "ol", "table", "blockquote", "pre", "section", "article", "header", "footer" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Finds the '>' that ends a tag, skipping quoted attribute values.
+     * Falls back to the first '>' when a quote is never closed (e.g. title=don't).
+     */
+    private int tagEnd(int from) {
+        if (from >= noTagEndFrom) {
+            return -1;
+        }
+
+        if (!quotesUnbalanced) {
+            char quote = 0;
+            for (int i = from; i < in.length(); i++) {
+                char c = in.charAt(i);
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '>') {
+                    return i;
+                }
+            }
+            // The quote-aware scan ran off the end once; later tags use the plain scan (keeps this linear).
+            quotesUnbalanced = true;
+        }
+
+        int plain = indexOf(">", from);
+        if (plain < 0) {
+            // Remember it, so a tail full of '<' is not rescanned for every one of them.
+            noTagEndFrom = from;
+        }
+        return plain;
+    }
+
+    private int skipTag(int from) {
+        int end = indexOf(">", from);
+        pendingSpace = true;
+        return end < 0 ? in.length() : end + 1;
+    }
+
+    /**
+     * @return index after the closing tag's '>' (or -1 if there is none)
+     */
+    private int indexOfClosingTag(String name, int from) {
+        if (from >= noClosingTagFrom.getOrDefault(name, Integer.MAX_VALUE)) {
+            return -1;
+        }
+        int n = in.length();
+        for (int i = from; i + 2 + name.length() <= n; i++) {
+            if (in.charAt(i) == '<' && in.charAt(i + 1) == '/' && regionMatchesIgnoreCase(i + 2, name)) {
+                int after = i + 2 + name.length();
+                if (after == n || !isAsciiLetterOrDigit(in.charAt(after))) {
+                    int end = indexOf(">", after);
+                    return end < 0 ? n : end + 1;
+                }
+            }
+        }
+        noClosingTagFrom.put(name, from);
+        return -1;
+    }
+
+    // -------------------------
+    // Entities
+    // -------------------------
+
+    /**
+     * Handles "&...;" starting at '&amp;'.
+     *
+     * @return index after the consumed entity (or after '&amp;' if it is not one)
+     */
+    private int entity(int start) {
+        int n = in.length();
+        int limit = Math.min(n, start + 2 + MAX_ENTITY_LENGTH + 1);
+
+        int semi = -1;
+        for (int i = start + 1; i < limit; i++) {
+            char c = in.charAt(i);
+            if (c == ';') {
+                semi = i;
+                break;
+            }
+            if (!isAsciiLetterOrDigit(c) && !(c == '#' && i == start + 1)) {
+                break;
+            }
+        }
+
+        if (semi < 0) {
+            emit('&');
+            return start + 1;
+        }
+
+        if (in.charAt(start + 1) == '#') {
+            int cp = resolveNumericEntity(start + 1, semi);
+            if (cp < 0) {
+                emit('&');
+                return start + 1;
+            }
+            emitDecoded(cp);
+            return semi + 1;
+        }
+
+        String decoded = ENTITIES.get(in.subSequence(start + 1, semi).toString());
+        if (decoded == null) {
+            emit('&');
+            return start + 1;
+        }
+        // A few HTML5 entities are two code points (e.g. "&NotEqualTilde;").
+        decoded.codePoints().forEach(this::emitDecoded);
+        return semi + 1;
+    }
+
+    private void emitDecoded(int cp) {
+        if (cp == 0xA0 || cp == ' ') {
+            pendingSpace = true;
+        } else if (!isInvisible(cp)) {
+            emitCodePoint(cp);
+        }
+    }
+
+    private int resolveNumericEntity(int from, int to) {
+        boolean hex = from + 1 < to && (in.charAt(from + 1) == 'x' || in.charAt(from + 1) == 'X');
+        int digitsFrom = hex ? from + 2 : from + 1;
+        if (digitsFrom >= to || to - digitsFrom > 7) {
+            return -1;
+        }
+        int cp = 0;
+        for (int i = digitsFrom; i < to; i++) {
+            int d = Character.digit(in.charAt(i), hex ? 16 : 10);
+            if (d < 0) {
+                return -1;
+            }
+            cp = cp * (hex ? 16 : 10) + d;
+        }
+        return Character.isValidCodePoint(cp) && cp != 0 && !Character.isSurrogate((char) cp) ? cp : -1;
+    }
+
+    /**
+     * Zero-width and soft-hyphen characters (newsletters pad previews with runs of &amp;zwnj;).
+     */
+    private static boolean isInvisible(int cp) {
+        return cp == 0xAD || (cp >= 0x200B && cp <= 0x200F) || cp == 0x2060 || cp == 0xFEFF;
+    }
+
+    /**
+     * Reads "name codepoint..." lines (hex code points, '#' comments).
+     */
+    private static Map<String, String> loadEntityTable() {
+        Map<String, String> m = new HashMap<>(4096);
+        try (InputStream in = HtmlTextExtractor.class.getResourceAsStream(ENTITY_TABLE)) {
+            if (in == null) {
+                throw new IllegalStateException("HTML entity table not found on the classpath: " + ENTITY_TABLE);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.trim().split(" ");
+                StringBuilder value = new StringBuilder(2);
+                for (int i = 1; i < parts.length; i++) {
+                    value.appendCodePoint(Integer.parseInt(parts[i], 16));
+                }
+                m.put(parts[0], value.toString());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read HTML entity table: " + ENTITY_TABLE, e);
+        }
+        return Map.copyOf(m);
+    }
+
+    // -------------------------
+    // Char helpers (ASCII-only, no allocation)
+    // -------------------------
+
+    private boolean startsWith(int at, String s) {
+        return at + s.length() <= in.length() && regionMatchesIgnoreCase(at, s);
+    }
+
+    private boolean regionMatchesIgnoreCase(int at, String s) {
+        for (int k = 0; k < s.length(); k++) {
+            if (toLowerAscii(in.charAt(at + k)) != toLowerAscii(s.charAt(k))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(String s, int from) {
+        for (int i = from; i + s.length() <= in.length(); i++) {
+            if (regionMatchesIgnoreCase(i, s)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String lowerAscii(int from, int to) {
+        char[] chars = new char[to - from];
+        for (int i = from; i < to; i++) {
+            chars[i - from] = toLowerAscii(in.charAt(i));
+        }
+        return new String(chars);
+    }
+
+    private static char toLowerAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9');
+    }
+}
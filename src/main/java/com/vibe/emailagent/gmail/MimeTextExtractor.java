@@ -0,0 +1,592 @@
+package com.vibe.emailagent.gmail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streaming text extractor for raw RFC822 messages (Gmail format=raw).
+ *
+ * Why
+ * - format=full materializes the whole MIME tree, and decoding it allocates full copies of every part.
+ * - Here the message is read line by line through a fixed-size buffer. Only the text we keep is stored,
+ *   up to maxChars.
+ *
+ * Behavior
+ * - Walks multipart bodies (nested boundaries supported) and skips attachments and non-text parts.
+ * - Decodes base64 / quoted-printable / 7bit / 8bit transfer encodings and the part charset
+ *   (falls back to UTF-8 for unknown charsets).
+ * - Stops reading once the first non-blank text/plain part is extracted, or once maxChars is reached.
+ *   The first text/html part is kept as a fallback while looking for text/plain.
+ * - Subject/From are decoded from RFC 2047 encoded words.
+ */
+final class MimeTextExtractor {
+
+    /**
+     * Longest line segment held in memory. Longer lines are processed in segments.
+     */
+    private static final int MAX_LINE_BYTES = 8192;
+
+    /**
+     * Upper bound for one (unfolded) header field.
+     */
+    private static final int MAX_HEADER_CHARS = 16384;
+
+    private static final Pattern ENCODED_WORD = Pattern.compile("=\\?([^?]+)\\?([bBqQ])\\?([^?]*)\\?=");
+    private static final Pattern BETWEEN_ENCODED_WORDS = Pattern.compile("(\\?=)\\s+(=\\?)");
+
+    /**
+     * @param subject decoded Subject header ("" if missing)
+     * @param from decoded From header ("" if missing)
+     * @param text extracted text (plain text, or raw HTML if html is true)
+     * @param html true if no text/plain part was found and text holds the first text/html part
+     * @param truncated true if the extracted part was cut at maxChars
+     */
+    record Result(String subject, String from, String text, boolean html, boolean truncated) {
+    }
+
+    private final LineReader reader;
+    private final int maxChars;
+    private final Deque<String> boundaries = new ArrayDeque<>();
+
+    private final StringBuilder plain = new StringBuilder();
+    private final StringBuilder html = new StringBuilder();
+    private boolean plainTruncated;
+    private boolean htmlTruncated;
+    private boolean done;
+
+    private MimeTextExtractor(InputStream in, int maxChars) {
+        this.reader = new LineReader(in);
+        this.maxChars = maxChars > 0 ? maxChars : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Extracts the best-effort body text from an RFC822 byte stream.
+     * The stream is not closed.
+     */
+    static Result extract(InputStream rfc822, int maxChars) {
+        try {
+            return new MimeTextExtractor(rfc822, maxChars).run();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read raw MIME message", e);
+        }
+    }
+
+    private Result run() throws IOException {
+        Headers top = readHeaders();
+        parseBody(top);
+
+        String subject = decodeEncodedWords(top.get("subject"));
+        String from = decodeEncodedWords(top.get("from"));
+
+        if (!plain.toString().isBlank()) {
+            return new Result(subject, from, plain.toString(), false, plainTruncated);
+        }
+        return new Result(subject, from, html.toString(), true, htmlTruncated);
+    }
+
+    // -------------------------
+    // MIME structure
+    // -------------------------
+
+    /**
+     * Parses one entity body.
+     *
+     * @return the delimiter line that ended the body (belongs to this or an enclosing multipart),
+     *         or null at end of stream / when extraction is done
+     */
+    private Delimiter parseBody(Headers headers) throws IOException {
+        ContentType ct = ContentType.parse(headers.get("content-type"));
+
+        if (ct.isMultipart() && ct.param("boundary") != null) {
+            String boundary = ct.param("boundary");
+            boundaries.push(boundary);
+            try {
+                // Preamble
+                Delimiter d = skipUntilDelimiter();
+                while (d != null && d.boundary().equals(boundary) && !d.close()) {
+                    Headers partHeaders = readHeaders();
+                    d = parseBody(partHeaders);
+                    if (done) {
+                        return null;
+                    }
+                }
+                if (d != null && d.boundary().equals(boundary) && d.close()) {
+                    // Epilogue: runs until an enclosing boundary (or end of stream).
+                    boundaries.pop();
+                    boundary = null;
+                    return skipUntilDelimiter();
+                }
+                return d;
+            } finally {
+                if (boundary != null) {
+                    boundaries.pop();
+                }
+            }
+        }
+
+        boolean attachment = headers.get("content-disposition").toLowerCase(Locale.ROOT).startsWith("attachment");
+        boolean wantPlain = "text/plain".equals(ct.mimeType());
+        boolean wantHtml = "text/html".equals(ct.mimeType()) && html.isEmpty();
+
+        if (!attachment && (wantPlain || wantHtml)) {
+            StringBuilder target = wantPlain ? plain : html;
+            target.setLength(0);
+            Delimiter d = readTextBody(target, charsetOf(ct), headers.get("content-transfer-encoding"), wantPlain);
+            if (wantPlain && !plain.toString().isBlank()) {
+                done = true;
+            }
+            return d;
+        }
+
+        return skipUntilDelimiter();
+    }
+
+    private Delimiter skipUntilDelimiter() throws IOException {
+        while (reader.readLine()) {
+            Delimiter d = delimiterOf();
+            if (d != null) {
+                return d;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the delimiter the current line represents ("--boundary" or "--boundary--"), if any.
+     */
+    private Delimiter delimiterOf() {
+        if (!reader.lineStart || boundaries.isEmpty() || reader.length < 2
+                || reader.buf[0] != '-' || reader.buf[1] != '-') {
+            return null;
+        }
+
+        // Boundaries are ASCII; trailing whitespace after the delimiter is allowed.
+        int end = reader.length;
+        while (end > 2 && (reader.buf[end - 1] == ' ' || reader.buf[end - 1] == '\t')) {
+            end--;
+        }
+        String line = new String(reader.buf, 2, end - 2, StandardCharsets.ISO_8859_1);
+
+        // Innermost boundary first; a missing close delimiter may be ended by an enclosing one.
+        for (String b : boundaries) {
+            if (line.equals(b)) {
+                return new Delimiter(b, false);
+            }
+            if (line.length() == b.length() + 2 && line.startsWith(b) && line.endsWith("--")) {
+                return new Delimiter(b, true);
+            }
+        }
+        return null;
+    }
+
+    // -------------------------
+    // Text decoding
+    // -------------------------
+
+    private Delimiter readTextBody(StringBuilder target, Charset charset, String transferEncoding, boolean plainPart)
+            throws IOException {
+        String te = transferEncoding.trim().toLowerCase(Locale.ROOT);
+        TextSink sink = new TextSink(target, charset, maxChars);
+
+        StringBuilder base64Pending = "base64".equals(te) ? new StringBuilder() : null;
+        boolean quotedPrintable = "quoted-printable".equals(te);
+        boolean firstLine = true;
+        boolean pendingBreak = false;
+
+        while (reader.readLine()) {
+            Delimiter d = delimiterOf();
+            if (d != null) {
+                sink.finish();
+                markTruncated(plainPart, sink.truncated);
+                return d;
+            }
+            if (sink.full()) {
+                // Keep consuming up to the next delimiter so the MIME structure stays in sync,
+                // unless this is the part we stop at anyway.
+                if (plainPart && !target.toString().isBlank()) {
+                    sink.finish();
+                    markTruncated(true, true);
+                    done = true;
+                    return null;
+                }
+                continue;
+            }
+
+            if (base64Pending != null) {
+                appendBase64(base64Pending, sink);
+            } else if (quotedPrintable) {
+                if (pendingBreak && reader.lineStart) {
+                    sink.write((byte) '\n');
+                }
+                pendingBreak = appendQuotedPrintable(sink);
+            } else {
+                // The line break belongs to the previous line; the final CRLF before a delimiter belongs to it.
+                if (!firstLine && reader.lineStart) {
+                    sink.write((byte) '\n');
+                }
+                sink.write(reader.buf, 0, reader.length);
+            }
+            firstLine = false;
+        }
+
+        sink.finish();
+        markTruncated(plainPart, sink.truncated);
+        return null;
+    }
+
+    private void markTruncated(boolean plainPart, boolean truncated) {
+        if (plainPart) {
+            plainTruncated |= truncated;
+        } else {
+            htmlTruncated |= truncated;
+        }
+    }
+
+    private void appendBase64(StringBuilder pending, TextSink sink) {
+        for (int i = 0; i < reader.length; i++) {
+            char c = (char) (reader.buf[i] & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+' || c == '/' || c == '=') {
+                pending.append(c);
+            }
+        }
+
+        int usable = pending.length() - (pending.length() % 4);
+        if (usable == 0) {
+            return;
+        }
+        try {
+            byte[] decoded = Base64.getDecoder().decode(pending.substring(0, usable));
+            sink.write(decoded, 0, decoded.length);
+        } catch (IllegalArgumentException e) {
+            // Corrupt base64: drop this segment and keep going.
+        }
+        pending.delete(0, usable);
+    }
+
+    /**
+     * @return true if the line ended with a hard line break (written before the next line, since the
+     *         CRLF preceding a delimiter belongs to the delimiter)
+     */
+    private boolean appendQuotedPrintable(TextSink sink) {
+        int len = reader.length;
+
+        // Trailing whitespace is not significant in QP.
+        while (len > 0 && (reader.buf[len - 1] == ' ' || reader.buf[len - 1] == '\t')) {
+            len--;
+        }
+
+        boolean softBreak = reader.lineEnd && len > 0 && reader.buf[len - 1] == '=';
+        if (softBreak) {
+            len--;
+        }
+
+        for (int i = 0; i < len; i++) {
+            byte b = reader.buf[i];
+            if (b == '=' && i + 2 < len) {
+                int hi = Character.digit(reader.buf[i + 1], 16);
+                int lo = Character.digit(reader.buf[i + 2], 16);
+                if (hi >= 0 && lo >= 0) {
+                    sink.write((byte) ((hi << 4) | lo));
+                    i += 2;
+                    continue;
+                }
+            }
+            sink.write(b);
+        }
+
+        return reader.lineEnd && !softBreak;
+    }
+
+    private static Charset charsetOf(ContentType ct) {
+        String name = ct.param("charset");
+        if (name == null || name.isBlank()) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(name.trim());
+        } catch (Exception e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    // -------------------------
+    // Headers
+    // -------------------------
+
+    private Headers readHeaders() throws IOException {
+        Headers headers = new Headers();
+        StringBuilder current = null;
+
+        while (reader.readLine()) {
+            if (reader.lineStart && reader.length == 0) {
+                break;
+            }
+
+            // Header lines are ASCII (or UTF-8 per RFC 6532).
+            String segment = new String(reader.buf, 0, reader.length, StandardCharsets.UTF_8);
+            boolean continuation = reader.lineStart && (segment.startsWith(" ") || segment.startsWith("\t"));
+
+            if (reader.lineStart && !continuation) {
+                headers.add(current);
+                current = new StringBuilder();
+            }
+            if (current != null && current.length() < MAX_HEADER_CHARS) {
+                current.append(continuation ? " " + segment.strip() : segment);
+            }
+        }
+
+        headers.add(current);
+        return headers;
+    }
+
+    static String decodeEncodedWords(String value) {
+        if (value == null || value.isEmpty() || !value.contains("=?")) {
+            return value == null ? "" : value;
+        }
+
+        // Whitespace between adjacent encoded words is not displayed (RFC 2047 section 6.2).
+        String joined = BETWEEN_ENCODED_WORDS.matcher(value).replaceAll("$1$2");
+
+        Matcher m = ENCODED_WORD.matcher(joined);
+        StringBuilder out = new StringBuilder();
+        int last = 0;
+        while (m.find()) {
+            out.append(joined, last, m.start());
+            out.append(decodeEncodedWord(m.group(1), m.group(2), m.group(3), m.group()));
+            last = m.end();
+        }
+        out.append(joined, last, joined.length());
+        return out.toString();
+    }
+
+    private static String decodeEncodedWord(String charsetName, String encoding, String text, String original) {
+        try {
+            // RFC 2231 language suffix: charset*lang
+            int star = charsetName.indexOf('*');
+            Charset charset = Charset.forName(star >= 0 ? charsetName.substring(0, star) : charsetName);
+
+            byte[] bytes;
+            if ("B".equalsIgnoreCase(encoding)) {
+                bytes = Base64.getMimeDecoder().decode(text);
+            } else {
+                java.io.ByteArrayOutputStream buf = new java.io.ByteArrayOutputStream(text.length());
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    if (c == '_') {
+                        buf.write(' ');
+                    } else if (c == '=' && i + 2 < text.length()) {
+                        buf.write(Integer.parseInt(text.substring(i + 1, i + 3), 16));
+                        i += 2;
+                    } else {
+                        buf.write(c);
+                    }
+                }
+                bytes = buf.toByteArray();
+            }
+            return new String(bytes, charset);
+        } catch (Exception e) {
+            return original;
+        }
+    }
+
+    private record Delimiter(String boundary, boolean close) {
+    }
+
+    /**
+     * Case-insensitive header map (first occurrence wins).
+     */
+    private static final class Headers {
+        private final Map<String, String> values = new HashMap<>();
+
+        void add(StringBuilder field) {
+            if (field == null) {
+                return;
+            }
+            int colon = field.indexOf(":");
+            if (colon <= 0) {
+                return;
+            }
+            String name = field.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            values.putIfAbsent(name, field.substring(colon + 1).trim());
+        }
+
+        String get(String name) {
+            return values.getOrDefault(name, "");
+        }
+    }
+
+    /**
+     * Parsed Content-Type header (mime type lower-cased, parameter names lower-cased, quotes removed).
+     */
+    private record ContentType(String mimeType, Map<String, String> params) {
+
+        static ContentType parse(String header) {
+            if (header == null || header.isBlank()) {
+                return new ContentType("text/plain", Map.of());
+            }
+
+            String[] parts = header.split(";");
+            Map<String, String> params = new HashMap<>();
+            for (int i = 1; i < parts.length; i++) {
+                int eq = parts[i].indexOf('=');
+                if (eq <= 0) {
+                    continue;
+                }
+                String key = parts[i].substring(0, eq).trim().toLowerCase(Locale.ROOT);
+                String value = parts[i].substring(eq + 1).trim();
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                params.put(key, value);
+            }
+            return new ContentType(parts[0].trim().toLowerCase(Locale.ROOT), params);
+        }
+
+        boolean isMultipart() {
+            return mimeType.startsWith("multipart/");
+        }
+
+        String param(String name) {
+            return params.get(name);
+        }
+    }
+
+    /**
+     * Incremental byte -> char decoding into the target builder, capped at maxChars.
+     * Multi-byte sequences split across lines are carried over by the CharsetDecoder.
+     */
+    private static final class TextSink {
+        private final StringBuilder target;
+        private final CharsetDecoder decoder;
+        private final int maxChars;
+        private final ByteBuffer in = ByteBuffer.allocate(4096);
+        private final CharBuffer out = CharBuffer.allocate(4096);
+        boolean truncated;
+
+        TextSink(StringBuilder target, Charset charset, int maxChars) {
+            this.target = target;
+            this.maxChars = maxChars;
+            this.decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        boolean full() {
+            return truncated;
+        }
+
+        void write(byte b) {
+            if (!in.hasRemaining()) {
+                drain(false);
+            }
+            in.put(b);
+        }
+
+        void write(byte[] bytes, int off, int len) {
+            for (int i = off; i < off + len && !truncated; i++) {
+                write(bytes[i]);
+            }
+        }
+
+        void finish() {
+            drain(true);
+        }
+
+        private void drain(boolean endOfInput) {
+            in.flip();
+            decoder.decode(in, out, endOfInput);
+            if (endOfInput) {
+                decoder.flush(out);
+            }
+            in.compact();
+
+            out.flip();
+            int room = maxChars - target.length();
+            if (out.remaining() > room) {
+                target.append(out, 0, Math.max(0, room));
+                truncated = true;
+            } else {
+                target.append(out);
+            }
+            out.clear();
+        }
+    }
+
+    /**
+     * Reads lines into a fixed buffer (CRLF/LF stripped).
+     *
+     * - lineStart: the current segment starts at the beginning of a line
+     * - lineEnd: the current segment ends the line (false if the line was longer than the buffer)
+     */
+    private static final class LineReader {
+        private final InputStream in;
+        final byte[] buf = new byte[MAX_LINE_BYTES];
+        int length;
+        boolean lineStart = true;
+        boolean lineEnd = true;
+        private int peeked = -2;
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        boolean readLine() throws IOException {
+            lineStart = lineEnd;
+            length = 0;
+
+            int b = next();
+            if (b < 0) {
+                return false;
+            }
+
+            while (b >= 0) {
+                if (b == '\n') {
+                    stripCr();
+                    lineEnd = true;
+                    return true;
+                }
+                if (length == buf.length) {
+                    peeked = b;
+                    lineEnd = false;
+                    return true;
+                }
+                buf[length++] = (byte) b;
+                b = next();
+            }
+
+            stripCr();
+            lineEnd = true;
+            return true;
+        }
+
+        private void stripCr() {
+            if (length > 0 && buf[length - 1] == '\r') {
+                length--;
+            }
+        }
+
+        private int next() throws IOException {
+            if (peeked != -2) {
+                int b = peeked;
+                peeked = -2;
+                return b;
+            }
+            return in.read();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.vibe.emailagent.gmail;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Rolling-hash index of text already seen earlier in a thread, used to remove quoted history.
+ *
+ * Why
+ * - {@link GmailTextCleaner} only recognizes a few quote separators ("&gt;", "On ... wrote:", Outlook headers).
+ *   Every other client format leaves the whole quoted history in the body, so the same text is embedded and
+ *   sent to the LLM once per reply.
+ * - If earlier messages of the thread are known, quoted text can be found by content instead of by format.
+ *
+ * How it works
+ * - Lines are normalized: leading quote markers ("&gt;") and whitespace are skipped, words are lower-cased.
+ * - Each window of WINDOW_WORDS consecutive words is hashed with a polynomial rolling hash (64-bit),
+ *   so windows cross line breaks and rewrapped quotes still match.
+ * - strip() removes every run of words covered by a window seen in an earlier message, drops lines that
+ *   end up empty (with the blank or marker-only lines around them), and drops an attribution line ending
+ *   in ':' right before a removed block.
+ *
+ * Notes
+ * - A window is 8 words, so short phrases that happen to repeat ("Thanks, talk soon") are kept.
+ * - Not thread-safe; build one per thread.
+ */
+public final class QuotedContentIndex {
+
+    static final int WINDOW_WORDS = 8;
+
+    /**
+     * Attribution lines longer than this are treated as content.
+     */
+    private static final int MAX_ATTRIBUTION_CHARS = 200;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long WINDOW_BASE = 1_000_003L;
+
+    /**
+     * WINDOW_BASE^(WINDOW_WORDS - 1), used to roll the oldest word out of the window.
+     */
+    private static final long WINDOW_BASE_POW;
+
+    static {
+        long pow = 1;
+        for (int i = 1; i < WINDOW_WORDS; i++) {
+            pow *= WINDOW_BASE;
+        }
+        WINDOW_BASE_POW = pow;
+    }
+
+    private final Set<Long> windows = new HashSet<>();
+
+    public boolean isEmpty() {
+        return windows.isEmpty();
+    }
+
+    /**
+     * Indexes a message body (or a stored chunk of one) that precedes the messages to be stripped.
+     */
+    public void add(String earlierText) {
+        if (earlierText == null || earlierText.isBlank()) {
+            return;
+        }
+        Words words = Words.of(earlierText);
+        for (int i = 0; i + WINDOW_WORDS <= words.count; i++) {
+            windows.add(words.windowHashes[i]);
+        }
+    }
+
+    /**
+     * Removes every span of the text that already appears in an indexed message.
+     *
+     * @return the text without quoted spans (unchanged if nothing matched)
+     */
+    public String strip(String text) {
+        if (text == null || text.isBlank() || windows.isEmpty()) {
+            return text;
+        }
+
+        Words words = Words.of(text);
+        if (words.count < WINDOW_WORDS) {
+            return text;
+        }
+
+        boolean[] covered = new boolean[words.count];
+        boolean any = false;
+        for (int i = 0; i + WINDOW_WORDS <= words.count; i++) {
+            if (windows.contains(words.windowHashes[i])) {
+                for (int k = i; k < i + WINDOW_WORDS; k++) {
+                    covered[k] = true;
+                }
+                any = true;
+            }
+        }
+        if (!any) {
+            return text;
+        }
+
+        return rebuild(text, words, covered);
+    }
+
+    /**
+     * Copies the text line by line, leaving out covered words.
+     *
+     * Lines without words (blank, or only "&gt;" markers, e.g. between quoted paragraphs) are held back until
+     * the next line with words: before a removed line they are removed with it, after a removed block they
+     * shrink to a single blank line before the kept text.
+     */
+    private static String rebuild(String text, Words words, boolean[] covered) {
+        StringBuilder out = new StringBuilder(text.length());
+        int w = 0;
+        int lineStart = 0;
+        int pendingAttributionStart = -1;
+        // output offset of the lines without words since the last line with words
+        int gapStart = -1;
+        // the last line with words was removed
+        boolean afterRemoved = false;
+
+        while (lineStart < text.length()) {
+            int lineEnd = text.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = text.length();
+            }
+
+            if (w >= words.count || words.starts[w] >= lineEnd) {
+                if (gapStart < 0) {
+                    gapStart = out.length();
+                }
+                out.append(text, lineStart, lineEnd);
+                if (lineEnd < text.length()) {
+                    out.append('\n');
+                }
+                lineStart = lineEnd + 1;
+                continue;
+            }
+
+            // Copy the line, cutting covered words (and the whitespace before them).
+            int lineOutStart = out.length();
+            int cursor = lineStart;
+            boolean removedSomething = false;
+            while (w < words.count && words.starts[w] < lineEnd) {
+                if (covered[w]) {
+                    int cutFrom = words.starts[w];
+                    while (cutFrom > cursor && Character.isWhitespace(text.charAt(cutFrom - 1))) {
+                        cutFrom--;
+                    }
+                    out.append(text, cursor, cutFrom);
+                    cursor = words.ends[w];
+                    removedSomething = true;
+                }
+                w++;
+            }
+            out.append(text, cursor, lineEnd);
+
+            if (removedSomething && isBlankOrQuoteMarkers(out, lineOutStart)) {
+                // "On ... wrote:" / "Le ... a écrit :" right before a removed block goes with it,
+                // as do the lines without words in between.
+                if (pendingAttributionStart >= 0) {
+                    out.setLength(pendingAttributionStart);
+                } else if (gapStart >= 0) {
+                    out.setLength(gapStart);
+                } else {
+                    out.setLength(lineOutStart);
+                }
+                pendingAttributionStart = -1;
+                gapStart = -1;
+                afterRemoved = true;
+                lineStart = lineEnd + 1;
+                continue;
+            }
+
+            if (afterRemoved && gapStart >= 0) {
+                String line = out.substring(lineOutStart);
+                out.setLength(gapStart);
+                if (out.length() > 0 && !endsWithBlankLine(out)) {
+                    out.append('\n');
+                }
+                lineOutStart = out.length();
+                out.append(line);
+            }
+            gapStart = -1;
+            afterRemoved = false;
+
+            if (removedSomething) {
+                pendingAttributionStart = -1;
+            } else {
+                String line = out.substring(lineOutStart).strip();
+                pendingAttributionStart = line.endsWith(":") && line.length() <= MAX_ATTRIBUTION_CHARS
+                        ? lineOutStart
+                        : -1;
+            }
+
+            if (lineEnd < text.length()) {
+                out.append('\n');
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        // Marker lines left after a removed block at the end of the text.
+        if (afterRemoved && gapStart >= 0) {
+            out.setLength(gapStart);
+        }
+
+        return out.toString().strip();
+    }
+
+    private static boolean endsWithBlankLine(CharSequence s) {
+        return s.length() >= 2 && s.charAt(s.length() - 1) == '\n' && s.charAt(s.length() - 2) == '\n';
+    }
+
+    private static boolean isBlankOrQuoteMarkers(CharSequence s, int from) {
+        for (int i = from; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '>' && !Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Word offsets and rolling window hashes for one text.
+     */
+    private static final class Words {
+        int count;
+        int[] starts;
+        int[] ends;
+        long[] windowHashes;
+
+        static Words of(String text) {
+            Words words = new Words();
+            int capacity = Math.max(16, text.length() / 5);
+            words.starts = new int[capacity];
+            words.ends = new int[capacity];
+            long[] hashes = new long[capacity];
+
+            int i = 0;
+            int n = text.length();
+            boolean lineStart = true;
+            while (i < n) {
+                char c = text.charAt(i);
+                if (c == '\n') {
+                    lineStart = true;
+                    i++;
+                    continue;
+                }
+                // Quote markers at the start of a line are not content.
+                if (Character.isWhitespace(c) || (lineStart && c == '>')) {
+                    i++;
+                    continue;
+                }
+                lineStart = false;
+
+                int start = i;
+                long h = FNV_OFFSET;
+                while (i < n && !Character.isWhitespace(text.charAt(i))) {
+                    h ^= Character.toLowerCase(text.charAt(i));
+                    h *= FNV_PRIME;
+                    i++;
+                }
+
+                if (words.count == words.starts.length) {
+                    int grown = words.count * 2;
+                    words.starts = Arrays.copyOf(words.starts, grown);
+                    words.ends = Arrays.copyOf(words.ends, grown);
+                    hashes = Arrays.copyOf(hashes, grown);
+                }
+                words.starts[words.count] = start;
+                words.ends[words.count] = i;
+                hashes[words.count] = h;
+                words.count++;
+            }
+
+            words.windowHashes = rollingWindows(hashes, words.count);
+            return words;
+        }
+
+        /**
+         * windowHashes[i] = hash of words i .. i + WINDOW_WORDS - 1.
+         */
+        private static long[] rollingWindows(long[] wordHashes, int count) {
+            long[] out = new long[Math.max(0, count - WINDOW_WORDS + 1)];
+            if (out.length == 0) {
+                return out;
+            }
+
+            long h = 0;
+            for (int k = 0; k < WINDOW_WORDS; k++) {
+                h = h * WINDOW_BASE + wordHashes[k];
+            }
+            out[0] = h;
+            for (int i = 1; i < out.length; i++) {
+                h = (h - wordHashes[i - 1] * WINDOW_BASE_POW) * WINDOW_BASE + wordHashes[i + WINDOW_WORDS - 1];
+                out[i] = h;
+            }
+            return out;
+        }
+    }
+}
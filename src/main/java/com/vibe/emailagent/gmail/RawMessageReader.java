@@ -0,0 +1,190 @@
+package com.vibe.emailagent.gmail;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Reads a messages.get (format=raw) JSON response straight into {@link MimeTextExtractor}.
+ *
+ * Why
+ * - Parsed into a Message, the base64url `raw` field is one String as large as the whole message
+ *   (attachments included, plus a third for base64), before the MIME parser even starts.
+ *
+ * How it works
+ * - Jackson reads the small fields (id, threadId, snippet, internalDate) up to the start of the "raw" value.
+ * - The raw value is then read from the response stream itself (Jackson's read-ahead first), decoded on the fly
+ *   and parsed by MimeTextExtractor. Once the extractor is done, the rest of the value is skipped unbuffered.
+ * - Fields after the raw value are parsed by a second Jackson parser, so the field order does not matter.
+ *
+ * Notes
+ * - The whole RFC822 message is still downloaded (see gmail.fetch.format in application.yml); only memory is saved.
+ */
+final class RawMessageReader {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /**
+     * Prepended to what follows the raw value (", ...}" or "}") so it parses as a JSON object again.
+     */
+    private static final byte[] CONTINUATION = "{\"raw\":null".getBytes(StandardCharsets.US_ASCII);
+
+    private String id;
+    private String threadId;
+    private String snippet = "";
+    private OffsetDateTime receivedAt;
+    private MimeTextExtractor.Result result;
+
+    private RawMessageReader() {
+    }
+
+    /**
+     * @param json response body (not closed)
+     * @param maxBodyChars stop reading the body after this many characters (<= 0: no limit)
+     */
+    static GmailMessageContent read(InputStream json, int maxBodyChars, GmailTextCleaner cleaner) {
+        try {
+            RawMessageReader reader = new RawMessageReader();
+            reader.readObject(json, maxBodyChars);
+            return reader.toContent(cleaner);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read raw Gmail message", e);
+        }
+    }
+
+    private void readObject(InputStream in, int maxBodyChars) throws IOException {
+        JsonParser parser = JSON.createParser(in);
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object");
+        }
+
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            token = parser.nextToken();
+            if ("raw".equals(name) && token == JsonToken.VALUE_STRING && result == null) {
+                // Jackson stops after the opening quote and only reads string content on demand: take back
+                // what it read ahead and read the value from here on.
+                ByteArrayOutputStream readAhead = new ByteArrayOutputStream();
+                parser.releaseBuffered(readAhead);
+                InputStream rest = new BufferedInputStream(
+                        new SequenceInputStream(new ByteArrayInputStream(readAhead.toByteArray()), in));
+
+                JsonStringStream raw = new JsonStringStream(rest);
+                result = MimeTextExtractor.extract(new BufferedInputStream(Base64.getUrlDecoder().wrap(raw)), maxBodyChars);
+                raw.skipRest();
+
+                readObject(new SequenceInputStream(new ByteArrayInputStream(CONTINUATION), rest), maxBodyChars);
+                return;
+            }
+
+            switch (name) {
+                case "id" -> id = parser.getValueAsString();
+                case "threadId" -> threadId = parser.getValueAsString();
+                case "snippet" -> snippet = parser.getValueAsString("");
+                case "internalDate" -> {
+                    String millis = parser.getValueAsString();
+                    if (millis != null) {
+                        receivedAt = OffsetDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(millis)), ZoneOffset.UTC);
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new IOException("Unexpected token " + token);
+        }
+    }
+
+    private GmailMessageContent toContent(GmailTextCleaner cleaner) {
+        if (result == null) {
+            return new GmailMessageContent(id, threadId, "", "", receivedAt, snippet, "");
+        }
+        String body = cleaner.clean(result.text(), id);
+        return new GmailMessageContent(id, threadId, result.subject(), result.from(), receivedAt, snippet, body);
+    }
+
+    /**
+     * The characters of one JSON string value, read from just after its opening quote up to the closing quote.
+     * JSON escapes are decoded.
+     */
+    static final class JsonStringStream extends InputStream {
+        private final InputStream in;
+        private boolean ended;
+
+        JsonStringStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (ended) {
+                return -1;
+            }
+            int c = in.read();
+            if (c < 0) {
+                throw new EOFException("Unterminated JSON string");
+            }
+            if (c == '"') {
+                ended = true;
+                return -1;
+            }
+            return c == '\\' ? unescape() : c;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n = 0;
+            while (n < len) {
+                int c = read();
+                if (c < 0) {
+                    break;
+                }
+                b[off + n++] = (byte) c;
+            }
+            return n == 0 ? -1 : n;
+        }
+
+        void skipRest() throws IOException {
+            while (read() >= 0) {
+                // discard
+            }
+        }
+
+        private int unescape() throws IOException {
+            int e = in.read();
+            return switch (e) {
+                case '"', '\\', '/' -> e;
+                case 'u' -> {
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(in.read(), 16);
+                        if (digit < 0) {
+                            throw new IOException("Invalid \\u escape in JSON string");
+                        }
+                        code = code * 16 + digit;
+                    }
+                    yield code;
+                }
+                default -> throw new IOException("Unexpected escape in base64 value: \\" + (char) e);
+            };
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.vibe.emailagent.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.vibe.emailagent.domain.GmailSyncCheckpoint;
+
+/**
+ * GmailSyncCheckpoint JPA repository.
+ */
+public interface GmailSyncCheckpointRepository extends JpaRepository<GmailSyncCheckpoint, Long> {
+
+    Optional<GmailSyncCheckpoint> findByMailboxAndConsumer(String mailbox, String consumer);
+}
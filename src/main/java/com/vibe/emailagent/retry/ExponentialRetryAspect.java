@@ -71,7 +71,9 @@ public class ExponentialRetryAspect {
     /**
      * Conservative retry filter.
      *
-     * We retry only when it looks like a transient network/transport error.
+     * We retry only when it looks like a transient network/transport error,
+     * or a rate limit response (429 from the LLM / embedding provider).
+     * Gmail calls are not proxied by this aspect; their rate-limit retries live in GmailRateLimitRetry.
      */
     private static boolean isRetryable(Throwable t) {
         String m = safeMessage(t).toLowerCase();
@@ -83,6 +85,7 @@ public class ExponentialRetryAspect {
                 || m.contains("connection closed")
                 || m.contains("timeout")
                 || m.contains("timed out")
+                || m.contains("429")
                 || m.contains("502")
                 || m.contains("503")
                 || m.contains("504")) {
@@ -1,6 +1,7 @@
 package com.vibe.emailagent.run;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -19,9 +20,11 @@ import org.springframework.stereotype.Component;
 import com.vibe.emailagent.config.EmailAgentRunnerProperties;
 import com.vibe.emailagent.gmail.GmailClient;
 import com.vibe.emailagent.gmail.GmailMessageContent;
+import com.vibe.emailagent.gmail.GmailMessageRef;
 import com.vibe.emailagent.gmail.GmailMessageSummary;
 import com.vibe.emailagent.service.EmailAgentService;
 import com.vibe.emailagent.service.EmailDraft;
+import com.vibe.emailagent.service.MailboxSyncService;
 
 /**
  * Default automation mode (one-off runner).
@@ -41,18 +44,24 @@ public class  EmailAutomationRunner implements ApplicationRunner {
 
     private static final Logger log = LoggerFactory.getLogger(EmailAutomationRunner.class);
 
+    private static final String SYNC_MODE_HISTORY = "history";
+    private static final String SYNC_CONSUMER = "automation";
+
     private final GmailClient gmailClient;
     private final EmailAgentService emailAgentService;
     private final EmailAgentRunnerProperties runnerProperties;
+    private final MailboxSyncService mailboxSyncService;
     private final ConfigurableApplicationContext applicationContext;
 
     public EmailAutomationRunner(GmailClient gmailClient,
                                 EmailAgentService emailAgentService,
                                 EmailAgentRunnerProperties runnerProperties,
+                                MailboxSyncService mailboxSyncService,
                                 ConfigurableApplicationContext applicationContext) {
         this.gmailClient = gmailClient;
         this.emailAgentService = emailAgentService;
         this.runnerProperties = runnerProperties;
+        this.mailboxSyncService = mailboxSyncService;
         this.applicationContext = applicationContext;
     }
 
@@ -71,10 +80,37 @@ public class  EmailAutomationRunner implements ApplicationRunner {
 
             log.info("[Runner] Start email automation. lookbackHours={}, since={}, maxMessages={}", lookback, since, maxMessages);
 
-            // 1) Fetch candidate inbound messages in the time window.
+            // 1) Fetch candidate inbound messages.
+            //    - history mode: only messages added since the last run (Gmail History API).
+            //    - otherwise (or without a usable checkpoint): the fixed time window.
             //    This might include multiple messages from the same thread.
-            List<GmailMessageSummary> candidates = gmailClient.findUnrepliedMessagesSince(since, maxMessages);
+            MailboxSyncService.MailboxDelta delta = null;
+            if (SYNC_MODE_HISTORY.equalsIgnoreCase(runnerProperties.syncMode())) {
+                delta = mailboxSyncService.loadDelta(SYNC_CONSUMER);
+            }
+
+            List<GmailMessageSummary> candidates;
+            // Number of leading delta messages this run handles; the watermark moves past exactly these.
+            int handled = 0;
+            if (delta != null && !delta.fullScan()) {
+                List<GmailMessageRef> inbound = new ArrayList<>();
+                for (var changed : delta.messages()) {
+                    if (changed.hasLabel("INBOX") && !changed.hasLabel("SENT")) {
+                        if (inbound.size() >= maxMessages) {
+                            log.info("[Runner] maxMessages reached; the remaining history changes are picked up by the next run.");
+                            break;
+                        }
+                        inbound.add(new GmailMessageRef(changed.messageId(), changed.threadId()));
+                    }
+                    handled++;
+                }
+                candidates = gmailClient.fetchMessageSummaries(inbound);
+            } else {
+                candidates = gmailClient.findUnrepliedMessagesSince(since, maxMessages);
+            }
+
             if (candidates.isEmpty()) {
+                advanceCheckpoint(delta, handled);
                 log.info("[Runner] No candidate messages found. Exiting.");
                 return;
             }
@@ -115,14 +151,21 @@ public class  EmailAutomationRunner implements ApplicationRunner {
                 try {
                     List<GmailMessageContent> threadMessages = gmailClient.fetchThreadMessages(target.threadId());
 
+                    // History deltas can list a message again after it was drafted for (see MailboxDelta#watermarkBefore).
+                    if (hasDraftSince(threadMessages, target.receivedAt())) {
+                        log.info("[Runner] Draft already exists. Skipping threadId={}, messageId={}", target.threadId(), target.messageId());
+                        continue;
+                    }
+
                     // Sort ascending so the prompt reads naturally.
                     threadMessages = threadMessages.stream()
                             .sorted(Comparator.comparing(GmailMessageContent::receivedAt, Comparator.nullsLast(Comparator.naturalOrder())))
                             .toList();
 
-                    // Best-effort inbound filter: exclude messages from me.
+                    // Best-effort inbound filter: exclude drafts and messages from me.
                     // WARNING: 'From' parsing isn't robust yet. We'll refine later.
                     List<GmailMessageContent> inbound = threadMessages.stream()
+                            .filter(m -> !m.draft())
                             .filter(m -> m.from() == null || !m.from().toLowerCase().contains("me"))
                             .toList();
 
@@ -144,9 +187,32 @@ public class  EmailAutomationRunner implements ApplicationRunner {
                 }
             }
 
+            advanceCheckpoint(delta, handled);
+
             log.info("[Runner] Email automation finished.");
         } finally {
             applicationContext.close();
         }
     }
+
+    /**
+     * Stores the history watermark past the delta messages this run handled (all of them unless maxMessages cut it short).
+     * - A run that stopped at maxMessages still moves forward; the rest of the delta is listed again next run.
+     * - Per-thread drafting failures are logged and not retried, same as the query mode.
+     */
+    private void advanceCheckpoint(MailboxSyncService.MailboxDelta delta, int handled) {
+        if (delta == null) {
+            return;
+        }
+        mailboxSyncService.saveCheckpoint(delta.mailbox(), SYNC_CONSUMER, delta.watermarkBefore(handled));
+    }
+
+    /**
+     * True if the thread has a draft created at or after the target message (a draft for it already exists).
+     */
+    static boolean hasDraftSince(List<GmailMessageContent> threadMessages, OffsetDateTime targetReceivedAt) {
+        return threadMessages.stream()
+                .filter(GmailMessageContent::draft)
+                .anyMatch(d -> targetReceivedAt == null || d.receivedAt() == null || !d.receivedAt().isBefore(targetReceivedAt));
+    }
 }
@@ -3,21 +3,25 @@ package com.vibe.emailagent.run;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import com.vibe.emailagent.gmail.GmailClient;
 import com.vibe.emailagent.gmail.GmailMessageContent;
-import com.vibe.emailagent.gmail.GmailMessagePage;
+import com.vibe.emailagent.gmail.GmailMessageIdPage;
+import com.vibe.emailagent.gmail.GmailMessageRef;
+import com.vibe.emailagent.service.EmailEmbeddingPartitions;
+import com.vibe.emailagent.service.EmailEmbeddingWriter;
+import com.vibe.emailagent.service.EmbeddingCaller;
+import com.vibe.emailagent.service.IngestedMessageIndex;
 import com.vibe.emailagent.service.TextChunker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Profile;
-import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Component;
 
 /**
@@ -34,6 +38,8 @@ import org.springframework.stereotype.Component;
  * - This runner requires a working DB connection (unlike GmailFetchTestRunner).
  * - This runner is intentionally deterministic and limited.
  * - To avoid embedding token limits, long emails are chunked.
+ * - Chunks are embedded directly and stored with EmailEmbeddingWriter (emailagent.ingestion.writer: insert | copy),
+ *   which also fills the typed message_id / thread_id / received_at / sender columns that VectorStore.add does not.
  */
 @Component
 @Profile("gmail-test")
@@ -49,17 +55,23 @@ public class GmailTestIngestRunner implements ApplicationRunner {
     private static final int DEFAULT_CHUNK_OVERLAP = 200;
 
     private final GmailClient gmailClient;
-    private final VectorStore vectorStore;
-    private final JdbcClient jdbcClient;
+    private final IngestedMessageIndex ingestedMessages;
+    private final EmbeddingCaller embeddingCaller;
+    private final EmailEmbeddingWriter embeddingWriter;
+    private final EmailEmbeddingPartitions partitions;
     private final ConfigurableApplicationContext applicationContext;
 
     public GmailTestIngestRunner(GmailClient gmailClient,
-                                VectorStore vectorStore,
-                                JdbcClient jdbcClient,
+                                IngestedMessageIndex ingestedMessages,
+                                EmbeddingCaller embeddingCaller,
+                                EmailEmbeddingWriter embeddingWriter,
+                                EmailEmbeddingPartitions partitions,
                                 ConfigurableApplicationContext applicationContext) {
         this.gmailClient = gmailClient;
-        this.vectorStore = vectorStore;
-        this.jdbcClient = jdbcClient;
+        this.ingestedMessages = ingestedMessages;
+        this.embeddingCaller = embeddingCaller;
+        this.embeddingWriter = embeddingWriter;
+        this.partitions = partitions;
         this.applicationContext = applicationContext;
     }
 
@@ -100,17 +112,22 @@ public class GmailTestIngestRunner implements ApplicationRunner {
 
             while (processed < maxMessages) {
                 long batchSize = Math.min(pageSize, maxMessages - processed);
-                GmailMessagePage page = gmailClient.listMessages(query, batchSize, pageToken);
+                // Ids only: de-dup runs before any per-message Gmail call, and new messages are fetched in full anyway.
+                GmailMessageIdPage page = gmailClient.listMessageIds(query, batchSize, pageToken);
 
                 if (page.messages() == null || page.messages().isEmpty()) {
                     break;
                 }
 
-                for (var summary : page.messages()) {
+                // De-duplication must be based on the stable Gmail message id (one query per page).
+                // PgVectorStore uses UUID for its internal document id.
+                Set<String> ingested = ingestedMessages.findIngested(page.messages().stream().map(GmailMessageRef::messageId).toList());
+
+                for (var ref : page.messages()) {
                     if (processed >= maxMessages) break;
                     processed++;
 
-                    String messageId = summary.messageId();
+                    String messageId = ref.messageId();
                     log.info("[GmailTestIngest] Processing messageId={}", messageId);
 
                     if (messageId == null || messageId.isBlank()) {
@@ -119,9 +136,7 @@ public class GmailTestIngestRunner implements ApplicationRunner {
                         continue;
                     }
 
-                    // De-duplication must be based on the stable Gmail message id.
-                    // PgVectorStore uses UUID for its internal document id.
-                    if (existsByMessageId(messageId)) {
+                    if (ingested.contains(messageId)) {
                         log.info("[GmailTestIngest] Skipping messageId={} (already ingested)", messageId);
                         skipped++;
                         continue;
@@ -172,7 +187,9 @@ public class GmailTestIngestRunner implements ApplicationRunner {
                         continue;
                     }
 
-                    vectorStore.add(docs);
+                    partitions.ensureFor(docs);
+                    embeddingWriter.write(docs, embeddingCaller.embed(docs.stream().map(Document::getText).toList()));
+                    ingestedMessages.markIngested(messageId);
                     insertedMessage++;
                     insertedChunks += docs.size();
 
@@ -195,25 +212,6 @@ public class GmailTestIngestRunner implements ApplicationRunner {
         }
     }
 
-    /**
-     * Checks if the Gmail message has already been ingested.
-     *
-     * We store Gmail's message id in metadata.message_id.
-     */
-    private boolean existsByMessageId(String messageId) {
-        Integer found = jdbcClient.sql("""
-                        SELECT 1
-                        FROM email_embeddings
-                        WHERE metadata ->> 'message_id' = ?
-                        LIMIT 1
-                        """)
-                .param(messageId)
-                .query(Integer.class)
-                .optional()
-                .orElse(null);
-        return found != null;
-    }
-
     private static int argInt(ApplicationArguments args, String key, int defaultValue) {
         if (!args.containsOption(key)) {
             return defaultValue;
@@ -33,8 +33,8 @@ public class InitialIngestionRunner implements ApplicationRunner {
             log.info("[Ingestion] Job started.");
 
             EmailIngestionService.IngestionResult result = ingestionService.ingest();
-            log.info("[Ingestion] Job finished. processed={}, inserted={}, skipped={}",
-                    result.processed(), result.inserted(), result.skipped());
+            log.info("[Ingestion] Job finished. processed={}, inserted={}, skipped={}, reused={}",
+                    result.processed(), result.inserted(), result.skipped(), result.reused());
         } finally {
             applicationContext.close();
         }
@@ -0,0 +1,331 @@
+package com.vibe.emailagent.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+import com.vibe.emailagent.config.IngestionProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Service;
+
+/**
+ * Mailbox-wide boilerplate detection backed by the boilerplate_shingle table.
+ *
+ * Why
+ * - Legal footers, marketing signatures and "Sent from my iPhone" tails repeat across thousands of messages.
+ *   They are not useful retrieval content, but without this they are chunked and embedded every time.
+ *
+ * How it works
+ * - Every line is normalized (lower-cased, quote markers removed, whitespace collapsed, digits folded)
+ *   and hashed. Each paragraph (block between blank lines) gets a hash built from its line hashes.
+ * - boilerplate_shingle counts how many ingested messages contained each hash.
+ * - A shingle is frequent once it was seen in at least minMessages other messages. Frequent shingles are
+ *   stripped when they are:
+ *   - a whole paragraph of 2+ lines
+ *   - a long line (legal sentences, unsubscribe footers)
+ *   - part of the trailing block of the message (signature): short frequent lines are only removed there,
+ *     so common greetings/thanks in the body are kept.
+ * - After stripping, the message's own shingles are added to the index (incremental update). The caller runs
+ *   that update in the transaction that stores the message, so a failed run never counts a message twice.
+ *
+ * Notes
+ * - If stripping would remove everything, the original body is kept.
+ */
+@Service
+@Profile({"ingest"})
+public class BoilerplateIndex {
+
+    /**
+     * Normalized lines shorter than this are ignored ("--", "Hi", initials).
+     */
+    static final int MIN_LINE_CHARS = 4;
+
+    /**
+     * Frequent lines at least this long are stripped anywhere in the message.
+     */
+    static final int LONG_LINE_CHARS = 40;
+
+    /**
+     * Only the first lines of a message are analyzed (keeps one upsert bounded); the rest is kept as is.
+     */
+    static final int MAX_LINES = 1000;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final JdbcClient jdbcClient;
+    private final IngestionProperties ingestionProperties;
+
+    public BoilerplateIndex(JdbcClient jdbcClient, IngestionProperties ingestionProperties) {
+        this.jdbcClient = jdbcClient;
+        this.ingestionProperties = ingestionProperties;
+    }
+
+    /**
+     * Body with frequent blocks removed.
+     *
+     * @param recordShingles counts the body's shingles; run it in the transaction that stores the message (null if none)
+     */
+    public record Stripped(String body, Runnable recordShingles) {
+    }
+
+    /**
+     * Strips frequent blocks from the body and prepares the update that records the body's shingles.
+     */
+    public Stripped strip(String body) {
+        Analysis analysis = analyze(body);
+        if (analysis.hashes.isEmpty()) {
+            return new Stripped(body, null);
+        }
+        Long[] hashes = analysis.hashes.toArray(Long[]::new);
+        return new Stripped(strip(analysis, hashes), () -> record(hashes));
+    }
+
+    /**
+     * Strips frequent blocks without counting the body again (re-processing an already ingested message).
+     */
+    public String stripWithoutRecording(String body) {
+        Analysis analysis = analyze(body);
+        if (analysis.hashes.isEmpty()) {
+            return body;
+        }
+        return strip(analysis, analysis.hashes.toArray(Long[]::new));
+    }
+
+    private String strip(Analysis analysis, Long[] hashes) {
+        Map<Long, Integer> counts = loadCounts(hashes);
+        int minMessages = Math.max(2, ingestionProperties.boilerplateMinMessages());
+        return strip(analysis, h -> counts.getOrDefault(h, 0) >= minMessages);
+    }
+
+    private Map<Long, Integer> loadCounts(Long[] hashes) {
+        Map<Long, Integer> counts = new HashMap<>();
+        jdbcClient.sql("""
+                        SELECT hash, message_count
+                        FROM boilerplate_shingle
+                        WHERE hash = ANY(?)
+                        """)
+                .param(hashes)
+                .query(rs -> {
+                    counts.put(rs.getLong("hash"), rs.getInt("message_count"));
+                });
+        return counts;
+    }
+
+    private void record(Long[] hashes) {
+        // Rows are locked in hash order, so concurrent upserts with overlapping hashes cannot deadlock.
+        jdbcClient.sql("""
+                        INSERT INTO boilerplate_shingle (hash, message_count, updated_at)
+                        SELECT h, 1, now() FROM unnest(?::bigint[]) AS h
+                        ORDER BY h
+                        ON CONFLICT (hash) DO UPDATE
+                          SET message_count = boilerplate_shingle.message_count + 1,
+                              updated_at = now()
+                        """)
+                .param(hashes)
+                .update();
+    }
+
+    // -------------------------
+    // Shingling (package-private for tests)
+    // -------------------------
+
+    /**
+     * Lines of one body with their hashes.
+     *
+     * - lineHashes[i] == 0: blank or ignored (too short) line
+     * - paragraphs: [firstLine, lastLine, hash] for paragraphs with 2+ hashed lines
+     * - hashes: distinct hashes recorded for this message
+     * - tail: text after the first MAX_LINES lines, not analyzed and never stripped ("" if there is none)
+     */
+    static final class Analysis {
+        final List<String> lines = new ArrayList<>();
+        final List<Long> lineHashes = new ArrayList<>();
+        final List<Integer> lineLengths = new ArrayList<>();
+        final List<long[]> paragraphs = new ArrayList<>();
+        final Set<Long> hashes = new LinkedHashSet<>();
+        String tail = "";
+
+        String withTail(String head) {
+            return tail.isEmpty() ? head : head + "\n" + tail;
+        }
+    }
+
+    static Analysis analyze(String body) {
+        Analysis a = new Analysis();
+        if (body == null || body.isBlank()) {
+            return a;
+        }
+
+        int tailStart = lineOffset(body, MAX_LINES);
+        if (tailStart < body.length()) {
+            a.tail = body.substring(tailStart);
+        }
+
+        body.substring(0, tailStart).lines().forEach(line -> {
+            int[] normalizedLength = new int[1];
+            long h = hashNormalized(line, normalizedLength);
+            boolean counted = normalizedLength[0] >= MIN_LINE_CHARS;
+            a.lines.add(line);
+            a.lineHashes.add(counted ? h : 0L);
+            a.lineLengths.add(normalizedLength[0]);
+            if (counted) {
+                a.hashes.add(h);
+            }
+        });
+
+        // Paragraphs: runs of non-blank lines.
+        int start = -1;
+        for (int i = 0; i <= a.lines.size(); i++) {
+            boolean blank = i == a.lines.size() || a.lines.get(i).isBlank();
+            if (!blank && start < 0) {
+                start = i;
+            } else if (blank && start >= 0) {
+                addParagraph(a, start, i - 1);
+                start = -1;
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Offset just after the line terminator of the given number of lines (body.length() if it has fewer).
+     * Line terminators are those of {@link String#lines()}: \n, \r and \r\n.
+     */
+    static int lineOffset(String body, int lines) {
+        int count = 0;
+        for (int i = 0; i < body.length() && count < lines; i++) {
+            char c = body.charAt(i);
+            if (c == '\r' && i + 1 < body.length() && body.charAt(i + 1) == '\n') {
+                i++;
+            }
+            if (c == '\n' || c == '\r') {
+                count++;
+                if (count == lines) {
+                    return i + 1;
+                }
+            }
+        }
+        return body.length();
+    }
+
+    private static void addParagraph(Analysis a, int first, int last) {
+        long h = FNV_OFFSET;
+        int hashedLines = 0;
+        for (int i = first; i <= last; i++) {
+            long lineHash = a.lineHashes.get(i);
+            if (lineHash != 0) {
+                h = (h ^ lineHash) * FNV_PRIME;
+                hashedLines++;
+            }
+        }
+        if (hashedLines >= 2) {
+            a.paragraphs.add(new long[]{first, last, h});
+            a.hashes.add(h);
+        }
+    }
+
+    /**
+     * Removes frequent blocks (see class doc). Returns the original text if nothing (or everything) matched.
+     */
+    static String strip(Analysis a, LongPredicate frequent) {
+        int n = a.lines.size();
+        boolean[] remove = new boolean[n];
+        boolean any = false;
+
+        for (long[] p : a.paragraphs) {
+            if (frequent.test(p[2])) {
+                for (int i = (int) p[0]; i <= (int) p[1]; i++) {
+                    remove[i] = true;
+                }
+                any = true;
+            }
+        }
+
+        for (int i = 0; i < n; i++) {
+            long h = a.lineHashes.get(i);
+            if (h != 0 && a.lineLengths.get(i) >= LONG_LINE_CHARS && frequent.test(h)) {
+                remove[i] = true;
+                any = true;
+            }
+        }
+
+        // Trailing block: walk up from the end while lines are blank, ignored, removed or frequent.
+        // With an unanalyzed tail the analyzed lines do not end the message, so there is no signature to look for.
+        int tailStart = n;
+        boolean tailHasFrequent = false;
+        for (int i = a.tail.isEmpty() ? n - 1 : -1; i >= 0; i--) {
+            long h = a.lineHashes.get(i);
+            boolean isFrequent = h != 0 && frequent.test(h);
+            if (h != 0 && !isFrequent && !remove[i]) {
+                break;
+            }
+            tailHasFrequent |= isFrequent;
+            tailStart = i;
+        }
+        if (tailHasFrequent) {
+            for (int i = tailStart; i < n; i++) {
+                remove[i] = true;
+            }
+            any = true;
+        }
+
+        if (!any) {
+            return a.withTail(String.join("\n", a.lines));
+        }
+
+        StringBuilder out = new StringBuilder();
+        boolean kept = !a.tail.isBlank();
+        for (int i = 0; i < n; i++) {
+            if (remove[i]) {
+                continue;
+            }
+            out.append(a.lines.get(i)).append('\n');
+            kept |= !a.lines.get(i).isBlank();
+        }
+        if (!kept) {
+            return a.withTail(String.join("\n", a.lines));
+        }
+        return a.withTail(out.toString().replaceAll("\n{3,}", "\n\n").strip());
+    }
+
+    /**
+     * FNV-1a over the normalized line, computed without building the normalized string.
+     */
+    private static long hashNormalized(String line, int[] normalizedLength) {
+        long h = FNV_OFFSET;
+        int len = 0;
+        boolean pendingSpace = false;
+        boolean leading = true;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (leading && (c == '>' || Character.isWhitespace(c))) {
+                continue;
+            }
+            leading = false;
+
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                continue;
+            }
+            if (pendingSpace) {
+                h = (h ^ ' ') * FNV_PRIME;
+                len++;
+                pendingSpace = false;
+            }
+            char normalized = Character.isDigit(c) ? '0' : Character.toLowerCase(c);
+            h = (h ^ normalized) * FNV_PRIME;
+            len++;
+        }
+
+        normalizedLength[0] = len;
+        // 0 is reserved for "not hashed".
+        return h == 0 ? 1 : h;
+    }
+}
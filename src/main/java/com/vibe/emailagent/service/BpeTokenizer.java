@@ -0,0 +1,191 @@
+package com.vibe.emailagent.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process byte-pair-encoding tokenizer for tiktoken vocabularies.
+ *
+ * Why
+ * - Embedding limits are in tokens (text-embedding-3-*: 8191, cl100k_base). Character-based chunking either
+ *   wastes the budget (English) or overflows it (CJK, emoji).
+ *
+ * Format
+ * - The ranks file is the standard *.tiktoken file: one "base64(token bytes) rank" pair per line.
+ * - Pre-tokenization uses the cl100k_base split pattern (o200k_base splits slightly differently, so counts
+ *   for o200k are close but not exact).
+ *
+ * Notes
+ * - Tokens are kept as ISO-8859-1 strings (one char per byte) so the ranks map needs no byte[] wrapper.
+ * - Pieces longer than MAX_PIECE_BYTES (e.g. base64 blobs) are merged in slices to keep BPE linear;
+ *   the count for such pieces can differ from tiktoken by a few tokens.
+ */
+public final class BpeTokenizer implements Tokenizer {
+
+    private static final Pattern CL100K_SPLIT = Pattern.compile(
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+",
+            Pattern.UNICODE_CHARACTER_CLASS);
+
+    static final int MAX_PIECE_BYTES = 256;
+
+    private final String name;
+    private final Map<String, Integer> ranks;
+
+    private BpeTokenizer(String name, Map<String, Integer> ranks) {
+        this.name = name;
+        this.ranks = ranks;
+    }
+
+    /**
+     * Loads a *.tiktoken ranks file.
+     *
+     * @param name vocabulary name for logs (e.g. "cl100k_base")
+     */
+    public static BpeTokenizer load(String name, InputStream ranksFile) throws IOException {
+        Map<String, Integer> ranks = new HashMap<>(200_000);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(ranksFile, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space <= 0) {
+                    continue;
+                }
+                byte[] token = Base64.getDecoder().decode(line.substring(0, space));
+                ranks.put(new String(token, StandardCharsets.ISO_8859_1), Integer.parseInt(line.substring(space + 1).trim()));
+            }
+        }
+        if (ranks.isEmpty()) {
+            throw new IllegalStateException("Empty BPE ranks file: " + name);
+        }
+        return new BpeTokenizer(name, ranks);
+    }
+
+    @Override
+    public String name() {
+        return "bpe:" + name;
+    }
+
+    @Override
+    public int[] tokenEnds(String text) {
+        if (text == null || text.isEmpty()) {
+            return new int[0];
+        }
+
+        TokenEnds out = new TokenEnds(Math.max(16, text.length() / 3));
+        Matcher m = CL100K_SPLIT.matcher(text);
+        while (m.find()) {
+            encodePiece(text, m.start(), m.end(), out);
+        }
+        return out.toArray();
+    }
+
+    /**
+     * Encodes one pre-tokenized piece and appends the char end offset of each token.
+     */
+    private void encodePiece(String text, int from, int to, TokenEnds out) {
+        String piece = text.substring(from, to);
+        byte[] bytes = piece.getBytes(StandardCharsets.UTF_8);
+
+        // charEndByByte[b] = char offset (in text) of the end of the char that contains byte b
+        int[] charEndByByte = new int[bytes.length];
+        int b = 0;
+        for (int i = 0; i < piece.length(); ) {
+            int cp = piece.codePointAt(i);
+            int next = i + Character.charCount(cp);
+            int len = utf8Length(cp);
+            for (int k = 0; k < len; k++) {
+                charEndByByte[b++] = from + next;
+            }
+            i = next;
+        }
+
+        String latin1 = new String(bytes, StandardCharsets.ISO_8859_1);
+        if (ranks.containsKey(latin1)) {
+            out.add(to);
+            return;
+        }
+
+        for (int sliceStart = 0; sliceStart < latin1.length(); sliceStart += MAX_PIECE_BYTES) {
+            int sliceEnd = Math.min(latin1.length(), sliceStart + MAX_PIECE_BYTES);
+            for (int tokenEndByte : bytePairMerge(latin1, sliceStart, sliceEnd)) {
+                out.add(charEndByByte[tokenEndByte - 1]);
+            }
+        }
+    }
+
+    /**
+     * Classic BPE: repeatedly merges the adjacent pair with the lowest rank.
+     *
+     * @return exclusive end byte offsets of the resulting tokens
+     */
+    private int[] bytePairMerge(String bytes, int from, int to) {
+        // boundaries[0..count] are part start offsets, boundaries[count] == to
+        int[] boundaries = new int[to - from + 1];
+        int count = to - from;
+        for (int i = 0; i <= count; i++) {
+            boundaries[i] = from + i;
+        }
+
+        while (count > 1) {
+            int bestRank = Integer.MAX_VALUE;
+            int bestIndex = -1;
+            for (int i = 0; i + 1 < count; i++) {
+                Integer rank = ranks.get(bytes.substring(boundaries[i], boundaries[i + 2]));
+                if (rank != null && rank < bestRank) {
+                    bestRank = rank;
+                    bestIndex = i;
+                }
+            }
+            if (bestIndex < 0) {
+                break;
+            }
+            // Merge part bestIndex with bestIndex + 1 by dropping the boundary between them.
+            System.arraycopy(boundaries, bestIndex + 2, boundaries, bestIndex + 1, count - bestIndex - 1);
+            count--;
+        }
+
+        return Arrays.copyOfRange(boundaries, 1, count + 1);
+    }
+
+    /**
+     * Bytes String.getBytes(UTF_8) produces for the code point (a lone surrogate becomes '?').
+     */
+    private static int utf8Length(int cp) {
+        if (cp < 0x80 || Character.isSurrogate((char) cp) && cp < 0x10000) {
+            return 1;
+        }
+        if (cp < 0x800) {
+            return 2;
+        }
+        return cp < 0x10000 ? 3 : 4;
+    }
+
+    private static final class TokenEnds {
+        private int[] ends;
+        private int count;
+
+        TokenEnds(int capacity) {
+            this.ends = new int[capacity];
+        }
+
+        void add(int end) {
+            if (count == ends.length) {
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            ends[count++] = end;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ends, count);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.vibe.emailagent.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Content-defined chunker (FastCDC-style gear hash over chars).
+ *
+ * Why
+ * - With fixed windows ({@link TextChunker}) one inserted line near the top shifts every later boundary,
+ *   so re-processing a slightly different body re-embeds everything.
+ * - Here a boundary depends only on the text just before it, so an edit only changes the chunks around it;
+ *   the rest keep their {@link #hash} and can be reused.
+ *
+ * How it works
+ * - Rolling gear hash: h = (h << 1) + GEAR[c]; a boundary candidate is where (h & mask) == 0.
+ * - Normalized chunking (FastCDC): a stricter mask before avgChars and a looser one after it, which keeps
+ *   chunk sizes close to avgChars. minChars are skipped, maxChars forces a cut.
+ * - A candidate is moved forward to the next whitespace (still content-defined) so words are not split.
+ *
+ * Notes
+ * - Chunks are not overlapped: overlapping windows would tie a chunk to its predecessor's boundary.
+ */
+public final class ContentDefinedChunker {
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // Fixed seed: boundaries (and therefore chunk hashes) must be stable across runs and releases.
+        SplittableRandom random = new SplittableRandom(0x5DEECE66DL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private ContentDefinedChunker() {
+    }
+
+    /**
+     * Collecting variant of {@link #iterate}.
+     */
+    public static List<String> chunk(String text, int minChars, int avgChars, int maxChars) {
+        List<String> out = new ArrayList<>();
+        iterate(text, minChars, avgChars, maxChars).forEachRemaining(c -> out.add(c.toString()));
+        return out;
+    }
+
+    /**
+     * Lazily splits text at content-defined boundaries.
+     *
+     * @param text input text (not copied; must not change while iterating)
+     * @param minChars no boundary before this many chars
+     * @param avgChars target average chunk length
+     * @param maxChars hard cut
+     * @return trimmed, non-blank chunk views
+     */
+    public static Iterator<CharSequence> iterate(CharSequence text, int minChars, int avgChars, int maxChars) {
+        int max = Math.max(1, maxChars);
+        int avg = Math.min(max, Math.max(1, avgChars));
+        int min = Math.min(avg, Math.max(0, minChars));
+        return new CdcIterator(text == null ? "" : text, min, avg, max);
+    }
+
+    /**
+     * Stable content hash of a chunk (SHA-256 of the UTF-8 text, hex).
+     */
+    public static String hash(CharSequence chunk) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(chunk.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Exclusive end of the chunk starting at start.
+     */
+    static int nextBoundary(CharSequence text, int start, int min, int avg, int max) {
+        int n = text.length();
+        if (n - start <= min) {
+            return n;
+        }
+
+        int bits = 31 - Integer.numberOfLeadingZeros(avg);
+        long maskStrict = mask(bits + 1);
+        long maskLoose = mask(Math.max(1, bits - 1));
+
+        int end = Math.min(n, start + max);
+        int normal = Math.min(end, start + avg);
+
+        long h = 0;
+        int i = start + min;
+        for (; i < normal; i++) {
+            h = (h << 1) + GEAR[gearIndex(text.charAt(i))];
+            if ((h & maskStrict) == 0) {
+                return toWhitespace(text, i + 1, end);
+            }
+        }
+        for (; i < end; i++) {
+            h = (h << 1) + GEAR[gearIndex(text.charAt(i))];
+            if ((h & maskLoose) == 0) {
+                return toWhitespace(text, i + 1, end);
+            }
+        }
+        return end;
+    }
+
+    private static int toWhitespace(CharSequence text, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int gearIndex(char c) {
+        return (c ^ (c >>> 8)) & 0xFF;
+    }
+
+    /**
+     * Mask with the given number of bits spread over the upper half of the hash (FastCDC uses spread masks
+     * so the decision depends on a longer window than the lowest bits would).
+     */
+    private static long mask(int bits) {
+        long mask = 0;
+        for (int i = 0; i < bits; i++) {
+            mask |= 1L << (63 - i * 2);
+        }
+        return mask;
+    }
+
+    private static final class CdcIterator implements Iterator<CharSequence> {
+        private final CharSequence text;
+        private final int min;
+        private final int avg;
+        private final int max;
+
+        private int pos;
+        private CharSequence next;
+
+        CdcIterator(CharSequence text, int min, int avg, int max) {
+            this.text = text;
+            this.min = min;
+            this.avg = avg;
+            this.max = max;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && pos < text.length()) {
+                int start = pos;
+                pos = nextBoundary(text, start, min, avg, max);
+                next = TextChunker.trimmedView(text, start, pos);
+            }
+            return next != null;
+        }
+
+        @Override
+        public CharSequence next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            CharSequence out = next;
+            next = null;
+            return out;
+        }
+    }
+}
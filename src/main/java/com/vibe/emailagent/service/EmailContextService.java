@@ -1,16 +1,16 @@
 package com.vibe.emailagent.service;
 
 import java.time.OffsetDateTime;
-import java.util.Collections;
+import java.time.ZoneOffset;
 import java.util.List;
 
 import org.slf4j.Logger;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.vibe.emailagent.config.RetrievalProperties;
 import com.vibe.emailagent.domain.BusinessRule;
 import com.vibe.emailagent.repository.BusinessRuleRepository;
 
@@ -19,7 +19,8 @@ import com.vibe.emailagent.repository.BusinessRuleRepository;
  *
  * Single source of truth
  * - Thread reconstruction is performed by querying the email_embeddings table directly.
- * - Similarity search is performed via Spring AI VectorStore (pgvector).
+ * - Similarity search is performed by HybridEmailSearch: pgvector SQL (EmailSimilaritySearch), optionally fused
+ *   with full-text search (emailagent.retrieval.mode=hybrid).
  */
 @Service
 @Profile({"automation", "draft-test"})
@@ -27,22 +28,28 @@ public class EmailContextService {
 
     private static final Logger log = org.slf4j.LoggerFactory.getLogger(EmailContextService.class);
 
+    // Same as the VectorStore default.
+    private static final int DEFAULT_TOP_K = 4;
+
     private final BusinessRuleRepository businessRuleRepository;
-    private final VectorStore vectorStore;
+    private final HybridEmailSearch emailSearch;
     private final JdbcClient jdbcClient;
+    private final RetrievalProperties retrievalProperties;
 
     public EmailContextService(BusinessRuleRepository businessRuleRepository,
-                              VectorStore vectorStore,
-                              JdbcClient jdbcClient) {
+                              HybridEmailSearch emailSearch,
+                              JdbcClient jdbcClient,
+                              RetrievalProperties retrievalProperties) {
         this.businessRuleRepository = businessRuleRepository;
-        this.vectorStore = vectorStore;
+        this.emailSearch = emailSearch;
         this.jdbcClient = jdbcClient;
+        this.retrievalProperties = retrievalProperties;
     }
 
     @Transactional(readOnly = true)
     public EmailContext collectContext(String threadId, String currentQuestion) {
         List<EmailMessage> threadConversation = loadThreadConversation(threadId);
-        List<EmailMessage> similarHistory = loadSimilarHistory(currentQuestion);
+        List<EmailMessage> similarHistory = loadSimilarHistory(threadId, currentQuestion);
         List<BusinessRule> businessRules = businessRuleRepository.findAll();
 
         return new EmailContext(threadId, currentQuestion, threadConversation, similarHistory, businessRules);
@@ -50,36 +57,35 @@ public class EmailContextService {
 
     /**
      * Deterministically reconstructs a thread from email_embeddings.
+     *
+     * Notes
+     * - Ordered by when mail was received (typed column), not when it was ingested; chunks of one message
+     *   stay in chunk order.
      */
     List<EmailMessage> loadThreadConversation(String threadId) {
         List<EmailMessage> emailsInThread = jdbcClient.sql("""
                         SELECT
                           id,
-                          created_at,
-                          content,
-                          metadata
+                          received_at,
+                          sender,
+                          metadata ->> 'subject' AS subject,
+                          content
                         FROM email_embeddings
-                        WHERE metadata ->> 'thread_id' = ?
-                        ORDER BY created_at ASC
+                        WHERE thread_id = ?
+                        ORDER BY received_at ASC NULLS LAST, message_id, (metadata ->> 'chunk_index')::int
                         """)
                 .param(threadId)
                 .query((rs, rowNum) -> {
                     String docId = rs.getString("id");
-                    OffsetDateTime createdAt = rs.getObject("created_at", OffsetDateTime.class);
+                    OffsetDateTime receivedAt = rs.getObject("received_at", OffsetDateTime.class);
                     String content = rs.getString("content");
 
-                    String subject = null;
-                    String from = null;
-
-                    // If you need subject/from reliably as columns, we can denormalize into columns later.
-                    // For now, thread reconstruction uses metadata.
-
                     return new EmailMessage(
                             docId,
                             threadId,
-                            subject,
-                            from,
-                            createdAt,
+                            rs.getString("subject"),
+                            rs.getString("sender"),
+                            receivedAt,
                             null,
                             content,
                             null
@@ -92,11 +98,11 @@ public class EmailContextService {
         return emailsInThread;
     }
 
-    List<EmailMessage> loadSimilarHistory(String query) {
-        var docs = vectorStore.similaritySearch(query);
-        if (docs == null) {
-            docs = Collections.emptyList();
-        }
+    /**
+     * Similar chunks from other mail (see emailagent.retrieval.*). Filters run inside the search query.
+     */
+    List<EmailMessage> loadSimilarHistory(String threadId, String query) {
+        var docs = emailSearch.search(query, similarityFilter(threadId, OffsetDateTime.now(ZoneOffset.UTC)));
 
         List<EmailMessage> similarHistories = docs.stream()
                 .map(d -> new EmailMessage(
@@ -116,4 +122,13 @@ public class EmailContextService {
         return similarHistories;
 
     }
+
+    private EmailSimilaritySearch.Filter similarityFilter(String threadId, OffsetDateTime now) {
+        return new EmailSimilaritySearch.Filter(
+                retrievalProperties.topK() > 0 ? retrievalProperties.topK() : DEFAULT_TOP_K,
+                retrievalProperties.similarityThreshold() > 0 ? retrievalProperties.similarityThreshold() : null,
+                retrievalProperties.excludeCurrentThread() ? threadId : null,
+                retrievalProperties.lookbackDays() > 0 ? now.minusDays(retrievalProperties.lookbackDays()) : null,
+                retrievalProperties.senderDomains() != null ? retrievalProperties.senderDomains() : List.of());
+    }
 }
@@ -0,0 +1,78 @@
+package com.vibe.emailagent.service;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the monthly email_embeddings partitions that rows are about to be written into (see V8).
+ *
+ * Why
+ * - email_embeddings has no default partition, so a row for a month without a partition fails the insert.
+ *
+ * How it works
+ * - Months already ensured by this process are remembered; the database call only happens for new months.
+ * - email_embeddings_ensure_partition is idempotent and serializes concurrent creators.
+ *
+ * Contract
+ * - Call before the write and outside its transaction: creating a partition locks the parent table,
+ *   and inside a batch transaction that lock would be held until the batch commits.
+ */
+@Component
+@Profile({"ingest", "gmail-test"})
+public class EmailEmbeddingPartitions {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailEmbeddingPartitions.class);
+
+    private final JdbcClient jdbcClient;
+    private final Set<YearMonth> ensured = ConcurrentHashMap.newKeySet();
+
+    public EmailEmbeddingPartitions(JdbcClient jdbcClient) {
+        this.jdbcClient = jdbcClient;
+    }
+
+    /**
+     * Ensures partitions for every received month in docs, plus the current and next month
+     * (rows without a received date are stored at ingestion time).
+     */
+    public void ensureFor(List<Document> docs) {
+        Set<YearMonth> months = new TreeSet<>();
+        YearMonth now = YearMonth.now(ZoneOffset.UTC);
+        months.add(now);
+        months.add(now.plusMonths(1));
+        for (Document doc : docs) {
+            OffsetDateTime receivedAt = EmailEmbeddingWriter.receivedAt(doc);
+            if (receivedAt != null) {
+                months.add(monthOf(receivedAt));
+            }
+        }
+        months.forEach(this::ensure);
+    }
+
+    void ensure(YearMonth month) {
+        if (ensured.contains(month)) {
+            return;
+        }
+        String partition = jdbcClient.sql("SELECT email_embeddings_ensure_partition(?)")
+                .param(month.atDay(1))
+                .query(String.class)
+                .single();
+        ensured.add(month);
+        log.debug("[Partitions] Ensured {} for {}", partition, month);
+    }
+
+    static YearMonth monthOf(OffsetDateTime timestamp) {
+        return YearMonth.from(timestamp.withOffsetSameInstant(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,222 @@
+package com.vibe.emailagent.service;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vibe.emailagent.config.IngestionProperties;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.postgresql.core.BaseConnection;
+import org.springframework.ai.document.Document;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes pre-embedded chunks into email_embeddings.
+ *
+ * Why
+ * - VectorStore.add embeds and inserts per call. The ingestion batcher already has the embeddings,
+ *   so it only needs the insert, and one multi-row INSERT per batch instead of one statement per row.
+ *
+ * Modes (emailagent.ingestion.writer)
+ * - insert (default): multi-row INSERT ... ON CONFLICT (id, received_at) DO UPDATE; vectors are sent in
+ *   pgvector's text form and cast server-side.
+ * - copy: binary COPY through the driver's CopyManager (see {@link PgBinaryCopyEncoder}). No text parsing of
+ *   vectors or JSON on the server; the fastest path for large backfills. COPY has no ON CONFLICT, which is
+ *   fine because ids are fresh random UUIDs.
+ *
+ * Notes
+ * - Same row layout as PgVectorStore (id, content, metadata jsonb, embedding vector), so VectorStore reads
+ *   these rows as usual.
+ * - Also fills the typed columns (V7) from metadata: message_id, thread_id, received_at, sender (metadata.from).
+ *   VectorStore.add does not know them, so all chunk rows go through this writer.
+ * - received_at is the partition key (V8) and NOT NULL; without a parseable received date the row is stored
+ *   at the current time. The month's partition must exist ({@link EmailEmbeddingPartitions}).
+ */
+@Component
+@Profile({"ingest", "gmail-test"})
+public class EmailEmbeddingWriter {
+
+    public static final String WRITER_COPY = "copy";
+
+    private static final String COLUMNS = "(id, content, metadata, embedding, message_id, thread_id, received_at, sender)";
+    private static final int COLUMN_COUNT = 8;
+
+    private static final String COPY_SQL = "COPY email_embeddings " + COLUMNS + " FROM STDIN (FORMAT binary)";
+    private static final int COPY_BUFFER_BYTES = 1 << 16;
+
+    /**
+     * Rows per INSERT statement (8 bind parameters each; Postgres allows 65535 per statement).
+     */
+    static final int MAX_ROWS_PER_STATEMENT = 1000;
+
+    private final JdbcClient jdbcClient;
+    private final DataSource dataSource;
+    private final ObjectMapper objectMapper;
+    private final boolean copy;
+
+    public EmailEmbeddingWriter(JdbcClient jdbcClient, DataSource dataSource, ObjectMapper objectMapper, IngestionProperties ingestionProperties) {
+        this(jdbcClient, dataSource, objectMapper, ingestionProperties != null && WRITER_COPY.equalsIgnoreCase(ingestionProperties.writer()));
+    }
+
+    EmailEmbeddingWriter(JdbcClient jdbcClient, DataSource dataSource, ObjectMapper objectMapper, boolean copy) {
+        this.jdbcClient = jdbcClient;
+        this.dataSource = dataSource;
+        this.objectMapper = objectMapper;
+        this.copy = copy;
+    }
+
+    /**
+     * Inserts documents with their embeddings (same order).
+     */
+    public void write(List<Document> docs, List<float[]> embeddings) {
+        if (docs.size() != embeddings.size()) {
+            throw new IllegalArgumentException("docs and embeddings differ in size");
+        }
+        if (docs.isEmpty()) {
+            return;
+        }
+
+        if (copy) {
+            copyRows(docs, embeddings);
+            return;
+        }
+        for (int from = 0; from < docs.size(); from += MAX_ROWS_PER_STATEMENT) {
+            int to = Math.min(docs.size(), from + MAX_ROWS_PER_STATEMENT);
+            insertRows(docs.subList(from, to), embeddings.subList(from, to));
+        }
+    }
+
+    private void insertRows(List<Document> docs, List<float[]> embeddings) {
+        StringBuilder sql = new StringBuilder("INSERT INTO email_embeddings ").append(COLUMNS).append(" VALUES ");
+        List<Object> params = new ArrayList<>(docs.size() * COLUMN_COUNT);
+
+        for (int i = 0; i < docs.size(); i++) {
+            Document doc = docs.get(i);
+            sql.append(i == 0 ? "" : ", ").append("(?, ?, ?::jsonb, ?::vector, ?, ?, ?::timestamptz, ?)");
+            params.add(UUID.fromString(doc.getId()));
+            params.add(doc.getText());
+            params.add(toJson(doc));
+            params.add(toVectorLiteral(embeddings.get(i)));
+            params.add(metadataText(doc, "message_id"));
+            params.add(metadataText(doc, "thread_id"));
+            params.add(partitionTime(doc).toString());
+            params.add(metadataText(doc, "from"));
+        }
+        sql.append("""
+                 ON CONFLICT (id, received_at) DO UPDATE
+                SET content = EXCLUDED.content, metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding,
+                    message_id = EXCLUDED.message_id, thread_id = EXCLUDED.thread_id, sender = EXCLUDED.sender""");
+
+        jdbcClient.sql(sql.toString()).params(params).update();
+    }
+
+    /**
+     * Streams all rows with one binary COPY on the current (transaction-bound, if any) connection.
+     */
+    void copyRows(List<Document> docs, List<float[]> embeddings) {
+        if (docs.isEmpty()) {
+            return;
+        }
+
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        PGCopyOutputStream stream = null;
+        try {
+            CopyManager copyManager = new CopyManager(connection.unwrap(BaseConnection.class));
+            stream = new PGCopyOutputStream(copyManager.copyIn(COPY_SQL), COPY_BUFFER_BYTES);
+
+            PgBinaryCopyEncoder encoder = new PgBinaryCopyEncoder(stream);
+            encoder.writeHeader();
+            for (int i = 0; i < docs.size(); i++) {
+                Document doc = docs.get(i);
+                encoder.startRow(COLUMN_COUNT);
+                encoder.writeUuid(UUID.fromString(doc.getId()));
+                encoder.writeText(doc.getText());
+                encoder.writeJsonb(toJson(doc));
+                encoder.writeVector(embeddings.get(i));
+                encoder.writeText(metadataText(doc, "message_id"));
+                encoder.writeText(metadataText(doc, "thread_id"));
+                encoder.writeTimestamptz(partitionTime(doc));
+                encoder.writeText(metadataText(doc, "from"));
+            }
+            encoder.writeTrailer();
+            stream.endCopy();
+        } catch (SQLException | IOException e) {
+            cancelQuietly(stream);
+            throw new IllegalStateException("Binary COPY into email_embeddings failed", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private static void cancelQuietly(PGCopyOutputStream stream) {
+        try {
+            if (stream != null && stream.isActive()) {
+                stream.cancelCopy();
+            }
+        } catch (SQLException ignored) {
+            // The original failure is more useful than the cancel failure.
+        }
+    }
+
+    private String toJson(Document doc) {
+        try {
+            return objectMapper.writeValueAsString(doc.getMetadata());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize metadata for document " + doc.getId(), e);
+        }
+    }
+
+    private static String metadataText(Document doc, String key) {
+        Object value = doc.getMetadata().get(key);
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * metadata.received_at as written by ingestion (OffsetDateTime#toString); unparseable values become NULL.
+     */
+    static OffsetDateTime receivedAt(Document doc) {
+        String value = metadataText(doc, "received_at");
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return OffsetDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Value of the received_at column: the received date, or now if there is none.
+     */
+    static OffsetDateTime partitionTime(Document doc) {
+        OffsetDateTime receivedAt = receivedAt(doc);
+        return receivedAt != null ? receivedAt : OffsetDateTime.now(ZoneOffset.UTC);
+    }
+
+    static String toVectorLiteral(float[] embedding) {
+        StringBuilder sb = new StringBuilder(embedding.length * 12);
+        sb.append('[');
+        for (int i = 0; i < embedding.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(embedding[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
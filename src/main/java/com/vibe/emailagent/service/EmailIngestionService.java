@@ -1,51 +1,111 @@
 package com.vibe.emailagent.service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import com.vibe.emailagent.config.IngestionProperties;
+import com.vibe.emailagent.gmail.AsyncGmailClient;
 import com.vibe.emailagent.gmail.GmailClient;
+import com.vibe.emailagent.gmail.GmailHistoryMessage;
 import com.vibe.emailagent.gmail.GmailMessageContent;
-import com.vibe.emailagent.gmail.GmailMessagePage;
+import com.vibe.emailagent.gmail.GmailMessageIdPage;
+import com.vibe.emailagent.gmail.GmailMessageRef;
+import com.vibe.emailagent.gmail.QuotedContentIndex;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.document.Document;
-import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
- * Ingestion pipeline: Gmail -> (Embedding via VectorStore) -> email_embeddings.
+ * Ingestion pipeline: Gmail -> chunks -> (batched embedding, see EmbeddingBatcher) -> email_embeddings.
+ *
+ * Stages (see IngestionPipeline)
+ * - Listing and de-dup run on the calling thread; fetch, process, embedding and writes run on bounded pools,
+ *   so Gmail latency, CPU work and embedding latency overlap.
+ * - With gmail.client=async, fetches go through {@link AsyncGmailClient} without joining: one fetch thread keeps
+ *   up to ingestion.fetch-concurrency requests open.
+ *
+ * Transactions
+ * - There is no run-wide transaction: each embedding batch (ingestion.embed-batch-size / embed-batch-tokens)
+ *   is written and committed on its own, so a failure late in a large backfill keeps everything before it.
+ * - De-dup reads committed rows, so after a crash, messages whose batch never committed have no rows and are
+ *   picked up again by the next run. Batches keep a message's chunks together, so none is left half stored.
+ * - Re-processing (ingestion.reprocess) deletes a message's stale rows and renumbers its kept rows in the
+ *   transaction of the batch that inserts its new chunks, so the old and new versions are never mixed.
+ * - Boilerplate shingle counts (ingestion.strip-boilerplate) of a new message commit in that same batch
+ *   transaction, so a message whose batch failed is not counted again by the next run.
  *
  * Single source of truth
  * - We store historical content only in the VectorStore table (email_embeddings).
  * - De-duplication is performed by checking metadata.message_id (Gmail messageId).
+ * - Rows are written in the same layout as PgVectorStore, so retrieval through the VectorStore is unchanged.
  */
 @Service
-@Transactional
 @Profile({"ingest"})
 public class EmailIngestionService {
 
     private static final Logger log = LoggerFactory.getLogger(EmailIngestionService.class);
 
+    private static final String SYNC_MODE_HISTORY = "history";
+    private static final String SYNC_CONSUMER = "ingest";
+
+    private static final String CHUNK_MODE_TOKENS = "tokens";
+    private static final String CHUNK_MODE_CDC = "cdc";
+
+    private static final String LABEL_INBOX = "INBOX";
+    private static final String LABEL_SENT = "SENT";
+
+    private static final EmbeddingBatcher.MessageChunks NOTHING_TO_WRITE = new EmbeddingBatcher.MessageChunks(List.of(), null);
+
     private final GmailClient gmailClient;
-    private final VectorStore vectorStore;
     private final IngestionProperties ingestionProperties;
     private final JdbcClient jdbcClient;
+    private final MailboxSyncService mailboxSyncService;
+    private final BoilerplateIndex boilerplateIndex;
+    private final Tokenizer tokenizer;
+    private final EmbeddingCache embeddingCache;
+    private final EmailEmbeddingWriter embeddingWriter;
+    private final IngestedMessageIndex ingestedMessages;
+    private final EmailEmbeddingPartitions partitions;
+    private final TransactionTemplate transactionTemplate;
 
     public EmailIngestionService(GmailClient gmailClient,
-                                VectorStore vectorStore,
                                 IngestionProperties ingestionProperties,
-                                JdbcClient jdbcClient) {
+                                JdbcClient jdbcClient,
+                                MailboxSyncService mailboxSyncService,
+                                BoilerplateIndex boilerplateIndex,
+                                Tokenizer tokenizer,
+                                EmbeddingCache embeddingCache,
+                                EmailEmbeddingWriter embeddingWriter,
+                                IngestedMessageIndex ingestedMessages,
+                                EmailEmbeddingPartitions partitions,
+                                PlatformTransactionManager transactionManager) {
         this.gmailClient = gmailClient;
-        this.vectorStore = vectorStore;
         this.ingestionProperties = ingestionProperties;
         this.jdbcClient = jdbcClient;
+        this.mailboxSyncService = mailboxSyncService;
+        this.boilerplateIndex = boilerplateIndex;
+        this.tokenizer = tokenizer;
+        this.embeddingCache = embeddingCache;
+        this.embeddingWriter = embeddingWriter;
+        this.ingestedMessages = ingestedMessages;
+        this.partitions = partitions;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     @PostConstruct
@@ -58,11 +118,28 @@ public class EmailIngestionService {
         log.info("Lookback Hours: {}", ingestionProperties.lookbackHours());
         log.info("Max Messages: {}", ingestionProperties.maxMessages());
         log.info("Page Size: {}", ingestionProperties.pageSize());
+        log.info("Sync Mode: {}", ingestionProperties.syncMode());
+        log.info("Strip Stored Thread Quotes: {}", ingestionProperties.stripStoredThreadQuotes());
+        log.info("Chunk Mode: {} (chunkTokens={}, overlapTokens={}, tokenizer={})", ingestionProperties.chunkMode(),
+                ingestionProperties.chunkTokens(), ingestionProperties.chunkOverlapTokens(), tokenizer.name());
+        log.info("Strip Boilerplate: {} (minMessages={})", ingestionProperties.stripBoilerplate(), ingestionProperties.boilerplateMinMessages());
+        log.info("Reprocess: {}", ingestionProperties.reprocess());
+        log.info("Dedup Bloom Filter: {} (expectedIds={})", ingestionProperties.dedupeBloomFilter(), ingestionProperties.dedupeBloomExpectedIds());
+        log.info("Embedding Cache: {} (model={})", ingestionProperties.embeddingCache(), ingestionProperties.embeddingCacheModel());
+        log.info("Embedding Batch: maxInputs={}, maxTokens={}", ingestionProperties.embedBatchSize(), ingestionProperties.embedBatchTokens());
+        log.info("Pipeline: fetch={}, process={}, embed={}, write={}, queueCapacity={}", ingestionProperties.fetchConcurrency(),
+                ingestionProperties.processConcurrency(), ingestionProperties.embedConcurrency(),
+                ingestionProperties.writeConcurrency(), ingestionProperties.pipelineQueueCapacity());
     }
 
     /**
      * Runs ingestion based on configured parameters.
      *
+     * Sync modes (emailagent.ingestion.sync-mode)
+     * - query (default): re-runs the Gmail search query every time.
+     * - history: processes only Gmail History API changes since the stored watermark.
+     *   Falls back to the query scan when there is no watermark or it has expired.
+     *
      * @return summary statistics
      */
     public IngestionResult ingest() {
@@ -74,99 +151,417 @@ public class EmailIngestionService {
         int chunkOverlap = Math.max(0, ingestionProperties.chunkOverlap());
 
         String query = buildQuery(lookbackHours);
-        log.info("[Ingestion] query='{}', lookbackHours={}, maxMessages={}, pageSize={}, chunkSize={}, chunkOverlap={}",
-                query, lookbackHours, maxMessages, pageSize, chunkSize, chunkOverlap);
+        log.info("[Ingestion] query='{}', lookbackHours={}, maxMessages={}, pageSize={}, chunkSize={}, chunkOverlap={}, syncMode={}",
+                query, lookbackHours, maxMessages, pageSize, chunkSize, chunkOverlap, ingestionProperties.syncMode());
+
+        // Current and next month up front; older months are created as batches need them.
+        partitions.ensureFor(List.of());
+
+        Progress progress = new Progress();
+        try (IngestionPipeline pipeline = new IngestionPipeline(pipelineSettings(),
+                fetcher(),
+                content -> prepare(content, chunkSize, chunkOverlap, progress),
+                embeddingCache::embed,
+                // One transaction per batch: a failure late in a backfill keeps everything committed before it.
+                (batch, embeddings) -> {
+                    // Partitions first, outside the batch transaction (see EmailEmbeddingPartitions).
+                    partitions.ensureFor(batch.docs());
+                    transactionTemplate.executeWithoutResult(status -> {
+                        // Re-processed messages swap their old rows for the new chunks in this same transaction.
+                        batch.reconciles().forEach(Runnable::run);
+                        embeddingWriter.write(batch.docs(), embeddings);
+                    });
+                },
+                tokenizer, ingestionProperties.embedBatchSize(), ingestionProperties.embedBatchTokens())) {
+            try {
+                IngestionResult result = ingest(query, maxMessages, pageSize, pipeline, progress);
+                if (ingestionProperties.embeddingCache()) {
+                    log.info("[Ingestion] Embedding cache hit rate: {}", String.format("%.3f", embeddingCache.hitRate()));
+                }
+                return result;
+            } catch (RuntimeException e) {
+                log.error("[Ingestion] Run failed after committing {} chunks; committed batches are kept and their messages "
+                        + "are skipped on the next run.", pipeline.committedChunks());
+                throw e;
+            }
+        }
+    }
+
+    private IngestionResult ingest(String query, int maxMessages, int pageSize, IngestionPipeline pipeline, Progress progress) {
+        if (!SYNC_MODE_HISTORY.equalsIgnoreCase(ingestionProperties.syncMode())) {
+            scanByQuery(query, maxMessages, pageSize, false, pipeline, progress);
+            pipeline.drain();
+            return progress.toResult(pipeline.committedChunks());
+        }
+
+        MailboxSyncService.MailboxDelta delta = mailboxSyncService.loadDelta(SYNC_CONSUMER);
+        long watermark = delta.historyId();
+        if (delta.fullScan()) {
+            // Must reach the end of the listing once to store a checkpoint, so stored mail is paged past.
+            scanByQuery(query, maxMessages, pageSize, true, pipeline, progress);
+        } else {
+            watermark = delta.watermarkBefore(submitDelta(delta.messages(), maxMessages, pipeline, progress));
+        }
 
-        int processed = 0;
-        int inserted = 0;
-        int skipped = 0;
+        // Everything up to the watermark must be stored before it moves.
+        pipeline.drain();
 
+        if (delta.fullScan() && progress.truncated) {
+            // The query scan stopped somewhere in Gmail's listing order, which has no history id to resume from.
+            log.info("[Ingestion] maxMessages reached during the full scan; keeping the previous sync checkpoint.");
+        } else {
+            if (progress.truncated) {
+                log.info("[Ingestion] maxMessages reached; the remaining history changes are picked up by the next run.");
+            }
+            mailboxSyncService.saveCheckpoint(delta.mailbox(), SYNC_CONSUMER, watermark);
+        }
+
+        return progress.toResult(pipeline.committedChunks());
+    }
+
+    private IngestionPipeline.Settings pipelineSettings() {
+        int fetchConcurrency = Math.max(1, ingestionProperties.fetchConcurrency());
+        return new IngestionPipeline.Settings(
+                // A non-blocking client keeps fetch-concurrency requests open from one thread.
+                gmailClient instanceof AsyncGmailClient ? 1 : fetchConcurrency,
+                fetchConcurrency,
+                ingestionProperties.processConcurrency(),
+                ingestionProperties.embedConcurrency(),
+                ingestionProperties.writeConcurrency(),
+                ingestionProperties.pipelineQueueCapacity());
+    }
+
+    /**
+     * Fetch stage: non-blocking with gmail.client=async, otherwise one blocking call per fetch thread.
+     */
+    private Function<String, CompletableFuture<GmailMessageContent>> fetcher() {
+        if (gmailClient instanceof AsyncGmailClient async) {
+            return async::fetchMessageContentAsync;
+        }
+        return messageId -> CompletableFuture.completedFuture(gmailClient.fetchMessageContent(messageId));
+    }
+
+    /**
+     * Queues the query's messages in Gmail listing order.
+     *
+     * @param skipIngested false (sync-mode=query): maxMessages caps every listed message, so a run lists at most
+     *                     maxMessages ids. true (history full-scan fallback): only new (or re-processed) messages
+     *                     count, so a large mailbox still reaches the end of the scan over later runs and the
+     *                     history checkpoint can be stored; already ingested ones are paged past.
+     */
+    private void scanByQuery(String query, int maxMessages, int pageSize, boolean skipIngested,
+                             IngestionPipeline pipeline, Progress progress) {
         String pageToken = null;
+        int counted = 0;
 
-        while (processed < maxMessages) {
-            long batchSize = Math.min(pageSize, maxMessages - processed);
-            GmailMessagePage page = gmailClient.listMessages(query, batchSize, pageToken);
+        while (true) {
+            long batchSize = skipIngested ? pageSize : Math.min(pageSize, maxMessages - counted);
+            // Ids only: de-dup runs before any per-message Gmail call, and new messages are fetched in full anyway.
+            GmailMessageIdPage page = gmailClient.listMessageIds(query, batchSize, pageToken);
 
             if (page.messages() == null || page.messages().isEmpty()) {
-                break;
+                return;
             }
 
-            for (var summary : page.messages()) {
-                if (processed >= maxMessages) break;
-                processed++;
-
-                String messageId = summary.messageId();
-                if (messageId == null || messageId.isBlank()) {
-                    skipped++;
+            // One de-dup query per page instead of one per message.
+            Set<String> ingested = ingestedMessages.findIngested(page.messages().stream().map(GmailMessageRef::messageId).toList());
+            for (var ref : page.messages()) {
+                boolean alreadyIngested = ingested.contains(ref.messageId());
+                if (skipIngested && alreadyIngested && !ingestionProperties.reprocess()) {
+                    submitOne(ref.messageId(), true, pipeline, progress);
                     continue;
                 }
-
-                // De-duplication against email_embeddings (by original Gmail message id)
-                if (existsInEmbeddings(messageId)) {
-                    skipped++;
-                    continue;
+                if (counted >= maxMessages) {
+                    // Gmail still lists messages this run will not queue.
+                    progress.truncated = true;
+                    return;
                 }
+                submitOne(ref.messageId(), alreadyIngested, pipeline, progress);
+                counted++;
+            }
 
-                GmailMessageContent content = gmailClient.fetchMessageContent(messageId);
+            pageToken = page.nextPageToken();
+            if (pageToken == null || pageToken.isBlank()) {
+                return;
+            }
+            if (!skipIngested && counted >= maxMessages) {
+                // Loop stopped because of maxMessages while Gmail still had more pages.
+                progress.truncated = true;
+                return;
+            }
+        }
+    }
 
-                String body = content.plainTextBody();
-                if (body == null || body.isBlank()) {
-                    skipped++;
-                    continue;
-                }
+    /**
+     * Queues the delta's messages in history order until maxMessages new (or re-processed) messages are queued.
+     * - Already ingested messages are dropped before the cap, so a backlog of them cannot use up every run.
+     *
+     * @return number of leading delta messages handled (the watermark may move past exactly these)
+     */
+    private int submitDelta(List<GmailHistoryMessage> changes, int maxMessages, IngestionPipeline pipeline, Progress progress) {
+        Set<String> ingested = ingestedMessages.findIngested(changes.stream()
+                .filter(this::matchesMailboxScope)
+                .map(GmailHistoryMessage::messageId)
+                .toList());
+
+        int queued = 0;
+        for (int i = 0; i < changes.size(); i++) {
+            GmailHistoryMessage changed = changes.get(i);
+            if (!matchesMailboxScope(changed)) {
+                continue;
+            }
+            boolean alreadyIngested = ingested.contains(changed.messageId());
+            if (alreadyIngested && !ingestionProperties.reprocess()) {
+                submitOne(changed.messageId(), true, pipeline, progress);
+                continue;
+            }
+            if (queued >= maxMessages) {
+                progress.truncated = true;
+                return i;
+            }
+            submitOne(changed.messageId(), alreadyIngested, pipeline, progress);
+            queued++;
+        }
+        return changes.size();
+    }
 
-                List<String> chunks = TextChunker.chunk(body, chunkSize, chunkOverlap);
-                if (chunks.isEmpty()) {
-                    skipped++;
-                    continue;
-                }
+    /**
+     * Listing stage: de-duplicates and queues the message for fetch (blocks while the pipeline is full).
+     */
+    private void submitOne(String messageId, boolean alreadyIngested, IngestionPipeline pipeline, Progress progress) {
+        progress.processed++;
 
-                int totalChunks = chunks.size();
+        if (messageId == null || messageId.isBlank() || !progress.submitted.add(messageId)) {
+            progress.skipped.incrementAndGet();
+            return;
+        }
 
-                for (int i = 0; i < totalChunks; i++) {
-                    String chunk = chunks.get(i);
-                    if (chunk == null || chunk.isBlank()) {
-                        continue;
-                    }
+        // De-duplication against email_embeddings (by original Gmail message id, resolved per page).
+        // When re-processing, already ingested messages are re-chunked and reconciled by chunk_hash instead.
+        if (alreadyIngested && !ingestionProperties.reprocess()) {
+            progress.skipped.incrementAndGet();
+            return;
+        }
+        if (alreadyIngested) {
+            progress.reprocessing.add(messageId);
+        }
 
-                    Map<String, Object> metadata = new HashMap<>();
-                    metadata.put("message_id", content.messageId());
-                    metadata.put("thread_id", content.threadId());
-                    metadata.put("subject", content.subject());
-                    metadata.put("from", content.from());
-                    metadata.put("received_at", content.receivedAt() != null ? content.receivedAt().toString() : null);
-                    metadata.put("snippet", content.snippet());
-                    metadata.put("chunk_index", i);
-                    metadata.put("total_chunks", totalChunks);
-
-                    String docId = UUID.randomUUID().toString();
-                    Document doc = new Document(docId, chunk, metadata);
-                    vectorStore.add(List.of(doc));
-                    inserted++;
-                }
+        ingestedMessages.markIngested(messageId);
+        pipeline.submit(messageId);
+    }
+
+    /**
+     * Process stage (runs concurrently): strip, chunk and reconcile one fetched message.
+     *
+     * @return new documents to embed, plus the stale-row delete/renumbering for re-processed messages
+     *         (run by the write stage in the batch transaction); empty if nothing changed
+     */
+    private EmbeddingBatcher.MessageChunks prepare(GmailMessageContent content, int chunkSize, int chunkOverlap, Progress progress) {
+        String messageId = content.messageId();
+        boolean alreadyIngested = progress.reprocessing.contains(messageId);
+
+        String body = content.plainTextBody();
+        if (ingestionProperties.stripStoredThreadQuotes() && body != null) {
+            body = stripStoredThreadQuotes(content, body);
+        }
+        // Shingle counts of a new message are committed with its rows (see BoilerplateIndex).
+        Runnable recordShingles = null;
+        if (ingestionProperties.stripBoilerplate() && body != null && !body.isBlank()) {
+            if (alreadyIngested) {
+                body = boilerplateIndex.stripWithoutRecording(body);
+            } else {
+                BoilerplateIndex.Stripped stripped = boilerplateIndex.strip(body);
+                body = stripped.body();
+                recordShingles = stripped.recordShingles();
             }
+        }
+        if (body == null || body.isBlank()) {
+            return nothingLeft(messageId, alreadyIngested, progress);
+        }
 
-            pageToken = page.nextPageToken();
-            if (pageToken == null || pageToken.isBlank()) {
-                break;
+        // Chunks are produced lazily as views over body; only the Document text is copied.
+        Iterator<CharSequence> chunks = chunkIterator(body, chunkSize, chunkOverlap);
+
+        // chunk_hash -> stored row id, for chunks this message already has
+        Map<String, StoredChunk> stored = alreadyIngested ? loadStoredChunks(messageId) : new HashMap<>();
+        List<Document> docs = new ArrayList<>();
+        Map<StoredChunk, Integer> kept = new HashMap<>();
+        int chunkIndex = 0;
+        while (chunks.hasNext()) {
+            String chunk = chunks.next().toString();
+            String chunkHash = ContentDefinedChunker.hash(chunk);
+
+            StoredChunk existing = stored.remove(chunkHash);
+            if (existing != null) {
+                kept.put(existing, chunkIndex++);
+                continue;
             }
+
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("message_id", messageId);
+            metadata.put("thread_id", content.threadId());
+            metadata.put("subject", content.subject());
+            metadata.put("from", content.from());
+            metadata.put("received_at", content.receivedAt() != null ? content.receivedAt().toString() : null);
+            metadata.put("snippet", content.snippet());
+            metadata.put("chunk_index", chunkIndex++);
+            metadata.put("chunk_hash", chunkHash);
+
+            String docId = UUID.randomUUID().toString();
+            docs.add(new Document(docId, chunk, metadata));
+        }
+        int totalChunks = chunkIndex;
+        boolean unchanged = docs.isEmpty() && stored.isEmpty() && kept.entrySet().stream()
+                .allMatch(e -> e.getKey().isAt(e.getValue(), totalChunks));
+        if (totalChunks == 0) {
+            return nothingLeft(messageId, alreadyIngested, progress);
+        }
+        if (unchanged) {
+            progress.skipped.incrementAndGet();
+            return NOTHING_TO_WRITE;
+        }
+
+        for (Document doc : docs) {
+            doc.getMetadata().put("total_chunks", totalChunks);
         }
 
-        return new IngestionResult(processed, inserted, skipped);
+        Runnable reconcile = recordShingles;
+        if (alreadyIngested) {
+            UUID[] staleIds = stored.values().stream().map(StoredChunk::id).toArray(UUID[]::new);
+            reconcile = () -> {
+                // Chunks of the previous version that no longer occur in the body.
+                if (staleIds.length > 0) {
+                    jdbcClient.sql("DELETE FROM email_embeddings WHERE id = ANY(?)")
+                            .param(staleIds)
+                            .update();
+                }
+
+                // total_chunks is only known once the iterator is drained.
+                kept.forEach((chunk, index) -> jdbcClient.sql("""
+                                UPDATE email_embeddings
+                                SET metadata = metadata || jsonb_build_object('chunk_index', ?, 'total_chunks', ?)
+                                WHERE id = ?
+                                """)
+                        .params(index, totalChunks, chunk.id())
+                        .update());
+            };
+        }
+
+        // Embedded and inserted by later stages, together with chunks of other messages.
+        progress.reused.addAndGet(kept.size());
+        return new EmbeddingBatcher.MessageChunks(docs, reconcile);
     }
 
-    private boolean existsInEmbeddings(String messageId) {
-        Integer found = jdbcClient.sql("""
-                        SELECT 1
+    /**
+     * Result for a message whose body yields no chunks (e.g., everything was quoted history or boilerplate).
+     * A re-processed message also drops its stored rows, so the previous version stops being searchable.
+     */
+    private EmbeddingBatcher.MessageChunks nothingLeft(String messageId, boolean alreadyIngested, Progress progress) {
+        progress.skipped.incrementAndGet();
+        if (!alreadyIngested) {
+            return NOTHING_TO_WRITE;
+        }
+        log.debug("[Ingestion] Re-processed message has no content left; deleting its stored chunks. messageId={}", messageId);
+        return new EmbeddingBatcher.MessageChunks(List.of(), () -> jdbcClient.sql("DELETE FROM email_embeddings WHERE message_id = ?")
+                .param(messageId)
+                .update());
+    }
+
+    private Iterator<CharSequence> chunkIterator(String body, int chunkSize, int chunkOverlap) {
+        String mode = ingestionProperties.chunkMode();
+        if (CHUNK_MODE_TOKENS.equalsIgnoreCase(mode)) {
+            return TokenChunker.iterate(body, tokenizer, ingestionProperties.chunkTokens(), ingestionProperties.chunkOverlapTokens());
+        }
+        if (CHUNK_MODE_CDC.equalsIgnoreCase(mode)) {
+            return ContentDefinedChunker.iterate(body, ingestionProperties.cdcMinChars(),
+                    ingestionProperties.cdcAvgChars(), ingestionProperties.cdcMaxChars());
+        }
+        return TextChunker.iterate(body, chunkSize, chunkOverlap);
+    }
+
+    /**
+     * Stored chunks of a message by chunk_hash.
+     * Rows without a hash (ingested before chunk hashes existed) and duplicate hashes are keyed by row id,
+     * so they never match and are replaced.
+     */
+    private Map<String, StoredChunk> loadStoredChunks(String messageId) {
+        Map<String, StoredChunk> out = new HashMap<>();
+        jdbcClient.sql("""
+                        SELECT id,
+                               metadata ->> 'chunk_hash' AS chunk_hash,
+                               (metadata ->> 'chunk_index')::int AS chunk_index,
+                               (metadata ->> 'total_chunks')::int AS total_chunks
                         FROM email_embeddings
-                        WHERE metadata ->> 'message_id' = ?
-                        LIMIT 1
+                        WHERE message_id = ?
                         """)
                 .param(messageId)
-                .query(Integer.class)
-                .optional()
-                .orElse(null);
-        return found != null;
+                .query(rs -> {
+                    UUID id = rs.getObject("id", UUID.class);
+                    StoredChunk chunk = new StoredChunk(id, rs.getInt("chunk_index"), rs.getInt("total_chunks"));
+                    String chunkHash = rs.getString("chunk_hash");
+                    if (chunkHash == null || out.putIfAbsent(chunkHash, chunk) != null) {
+                        out.put("row:" + id, chunk);
+                    }
+                });
+        return out;
+    }
+
+    private record StoredChunk(UUID id, int chunkIndex, int totalChunks) {
+        boolean isAt(int index, int total) {
+            return chunkIndex == index && totalChunks == total;
+        }
+    }
+
+    /**
+     * Removes text that is already stored for earlier messages of the same thread (typically quoted history).
+     *
+     * Notes
+     * - Only chunks received before this message are indexed, so an older message never loses text
+     *   to a newer reply that quoted it.
+     * - Chunks are indexed one by one; overlap between chunks only adds duplicate windows.
+     * - Only rows already written are seen: messages of the same thread that are in the pipeline at the same
+     *   time do not strip each other.
+     */
+    private String stripStoredThreadQuotes(GmailMessageContent content, String body) {
+        if (content.threadId() == null || content.threadId().isBlank() || content.receivedAt() == null) {
+            return body;
+        }
+
+        QuotedContentIndex index = new QuotedContentIndex();
+        jdbcClient.sql("""
+                        SELECT content
+                        FROM email_embeddings
+                        WHERE thread_id = ?
+                          AND received_at < ?
+                          AND message_id <> ?
+                        """)
+                .param(content.threadId())
+                .param(content.receivedAt())
+                .param(content.messageId())
+                .query(rs -> {
+                    index.add(rs.getString("content"));
+                });
+
+        if (index.isEmpty()) {
+            return body;
+        }
+
+        String stripped = index.strip(body);
+        if (stripped.length() < body.length()) {
+            log.debug("[Ingestion] Removed quoted thread history. messageId={}, chars {} -> {}",
+                    content.messageId(), body.length(), stripped.length());
+        }
+        return stripped;
+    }
+
+    /**
+     * Applies the same mailbox scope as {@link #buildQuery(int)} to a history change.
+     */
+    private boolean matchesMailboxScope(GmailHistoryMessage m) {
+        if (ingestionProperties.includeSent()) {
+            return m.hasLabel(LABEL_INBOX) || m.hasLabel(LABEL_SENT);
+        }
+        return m.hasLabel(LABEL_INBOX) && !m.hasLabel(LABEL_SENT);
     }
 
     private String buildQuery(int lookbackHours) {
@@ -189,6 +584,31 @@ public class EmailIngestionService {
         return base + " newer_than:" + lookbackHours + "h";
     }
 
-    public record IngestionResult(int processed, int inserted, int skipped) {
+    /**
+     * @param inserted chunks committed to email_embeddings in this run
+     */
+    public record IngestionResult(int processed, int inserted, int skipped, int reused) {
+    }
+
+    /**
+     * Mutable run state shared by the query-scan and history paths.
+     *
+     * processed/truncated/submitted belong to the listing thread; the rest is also updated by pipeline stages.
+     */
+    private static final class Progress {
+        int processed;
+        boolean truncated;
+        // message ids queued in this run (a message can be listed twice, e.g. by history deltas)
+        final Set<String> submitted = new HashSet<>();
+        // already ingested message ids queued for re-processing
+        final Set<String> reprocessing = ConcurrentHashMap.newKeySet();
+
+        final AtomicInteger skipped = new AtomicInteger();
+        // chunks kept from a previous ingestion because their chunk_hash did not change (reprocess)
+        final AtomicInteger reused = new AtomicInteger();
+
+        IngestionResult toResult(int committedChunks) {
+            return new IngestionResult(processed, committedChunks, skipped.get(), reused.get());
+        }
     }
 }
@@ -0,0 +1,340 @@
+package com.vibe.emailagent.service;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vibe.emailagent.config.RetrievalProperties;
+import org.springframework.ai.document.Document;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Similarity search over email_embeddings in plain SQL.
+ *
+ * Why
+ * - VectorStore.similaritySearch can only filter on metadata JSON. Filtering on the received_at column
+ *   lets Postgres prune the monthly partitions (V8), so recent-mail searches only touch recent partitions.
+ *
+ * How it works
+ * - The query is embedded once (EmbeddingCaller), then ordered by the pgvector distance operator that
+ *   matches emailagent.retrieval.distance-type, so the HNSW index of each partition is used.
+ * - recent-months > 0: searches [start of the month N-1 months ago, ...) first. Unless recent-only, the
+ *   remaining results come from older months (received_at < window start), again pruned.
+ * - Each search runs in its own read-only transaction (REQUIRES_NEW), and hnsw.ef_search / statement_timeout are
+ *   set for that transaction only. Joining a caller's transaction (EmailContextService.collectContext is
+ *   @Transactional) would leave both settings on the caller's later queries.
+ * - {@link Filter} conditions (thread exclusion, received window, sender domains, similarity threshold)
+ *   are part of the WHERE clause, so topK counts only rows that pass them.
+ *
+ * Notes
+ * - HNSW applies WHERE conditions to the ef_search candidates it visits. With very selective filters,
+ *   raise hnsw-ef-search or expect fewer than topK results.
+ * - Results look like VectorStore results: Document(id, content, metadata) with metadata.distance.
+ * - Called inside a transaction, a search briefly uses a second pooled connection.
+ */
+@Component
+@Profile({"automation", "draft-test"})
+public class EmailSimilaritySearch {
+
+    private static final Pattern LEXICAL_TOKEN = Pattern.compile("[\\p{L}\\p{N}][\\p{L}\\p{N}_\\-./#]*");
+    private static final int MAX_LEXICAL_TERMS = 32;
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final EmbeddingCaller embeddingCaller;
+    private final JdbcClient jdbcClient;
+    private final ObjectMapper objectMapper;
+    private final RetrievalProperties retrievalProperties;
+    private final TransactionTemplate readOnlyTransaction;
+    private final String distanceOperator;
+
+    public EmailSimilaritySearch(EmbeddingCaller embeddingCaller,
+                                 JdbcClient jdbcClient,
+                                 ObjectMapper objectMapper,
+                                 RetrievalProperties retrievalProperties,
+                                 PlatformTransactionManager transactionManager) {
+        this.embeddingCaller = embeddingCaller;
+        this.jdbcClient = jdbcClient;
+        this.objectMapper = objectMapper;
+        this.retrievalProperties = retrievalProperties;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Own transaction: set_config(..., true) must not outlive the search.
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.distanceOperator = distanceOperator(retrievalProperties.distanceType());
+    }
+
+    /**
+     * Conditions pushed down into the search query.
+     *
+     * @param topK max results
+     * @param minSimilarity minimum similarity (1 - cosine distance); null = no threshold
+     * @param excludeThreadId skip chunks of this thread (typically the thread being answered); null = none
+     * @param receivedAfter only mail received at or after this instant; null = no lower bound
+     * @param senderDomains only mail whose sender address is in one of these domains; empty = any sender
+     */
+    public record Filter(int topK,
+                         Double minSimilarity,
+                         String excludeThreadId,
+                         OffsetDateTime receivedAfter,
+                         List<String> senderDomains) {
+
+        public static Filter topK(int topK) {
+            return new Filter(topK, null, null, null, List.of());
+        }
+    }
+
+    /**
+     * @return up to topK chunks, nearest first (recent months first when configured)
+     */
+    public List<Document> search(String query, int topK) {
+        return search(query, Filter.topK(topK));
+    }
+
+    /**
+     * @return up to filter.topK chunks passing the filter, nearest first (recent months first when configured)
+     */
+    public List<Document> search(String query, Filter filter) {
+        return search(query, filter, 0);
+    }
+
+    /**
+     * Vector search with a server-side statement timeout (<= 0: none).
+     */
+    List<Document> search(String query, Filter filter, long statementTimeoutMillis) {
+        int topK = filter.topK();
+        if (query == null || query.isBlank() || topK <= 0) {
+            return List.of();
+        }
+        // Before the search transaction starts. A caller's transaction (if any) still holds its connection meanwhile.
+        String vector = EmailEmbeddingWriter.toVectorLiteral(embeddingCaller.embed(List.of(query)).get(0));
+
+        return readOnlyTransaction.execute(status -> {
+            setLocal("statement_timeout", statementTimeoutMillis);
+            setLocal("hnsw.ef_search", retrievalProperties.hnswEfSearch());
+
+            if (retrievalProperties.recentMonths() <= 0) {
+                return nearest(vector, filter, filter.receivedAfter(), null, topK);
+            }
+
+            OffsetDateTime windowStart = windowStart(YearMonth.now(ZoneOffset.UTC), retrievalProperties.recentMonths());
+            List<Document> out = new ArrayList<>(nearest(vector, filter, later(windowStart, filter.receivedAfter()), null, topK));
+            boolean olderInRange = filter.receivedAfter() == null || filter.receivedAfter().isBefore(windowStart);
+            if (!retrievalProperties.recentOnly() && olderInRange && out.size() < topK) {
+                out.addAll(nearest(vector, filter, filter.receivedAfter(), windowStart, topK - out.size()));
+            }
+            return out;
+        });
+    }
+
+    /**
+     * Full-text search (content_tsv, V9) for the identifier-like terms of the query, best ts_rank_cd first.
+     * Same filter as the vector search, except the similarity threshold (there is no distance here).
+     *
+     * @return up to filter.topK chunks; empty if the query has no identifier terms
+     */
+    List<Document> keywordSearch(String query, Filter filter, long statementTimeoutMillis) {
+        String[] terms = lexicalTerms(query, MAX_LEXICAL_TERMS);
+        if (terms.length == 0 || filter.topK() <= 0) {
+            return List.of();
+        }
+
+        return readOnlyTransaction.execute(status -> {
+            setLocal("statement_timeout", statementTimeoutMillis);
+
+            // Each term is quoted, so to_tsquery treats it as one (possibly multi-part) term; terms are OR'ed.
+            StringBuilder sql = new StringBuilder("""
+                    SELECT id, content, metadata, ts_rank_cd(content_tsv, q) AS rank
+                    FROM email_embeddings,
+                         to_tsquery('simple', array_to_string(ARRAY(SELECT quote_literal(t) FROM unnest(?::text[]) t), ' | ')) q
+                    WHERE content_tsv @@ q""");
+            List<Object> params = new ArrayList<>();
+            params.add(terms);
+            appendFilter(sql, params, filter, filter.receivedAfter(), null);
+            sql.append(" ORDER BY rank DESC LIMIT ?");
+            params.add(filter.topK());
+
+            return jdbcClient.sql(sql.toString())
+                    .params(params)
+                    .query((rs, rowNum) -> {
+                        Map<String, Object> metadata = parseMetadata(rs.getString("metadata"));
+                        metadata.put("lexical_rank", rs.getDouble("rank"));
+                        return new Document(rs.getString("id"), rs.getString("content"), metadata);
+                    })
+                    .list();
+        });
+    }
+
+    /**
+     * Nearest chunks passing the filter with receivedFrom <= received_at < receivedBefore (either bound may be null).
+     */
+    private List<Document> nearest(String vector, Filter filter, OffsetDateTime receivedFrom, OffsetDateTime receivedBefore,
+                                   int limit) {
+        StringBuilder sql = new StringBuilder("SELECT id, content, metadata, embedding ")
+                .append(distanceOperator).append(" ?::vector AS distance FROM email_embeddings WHERE true");
+        List<Object> params = new ArrayList<>();
+        params.add(vector);
+        appendFilter(sql, params, filter, receivedFrom, receivedBefore);
+        if (filter.minSimilarity() != null) {
+            sql.append(" AND embedding ").append(distanceOperator).append(" ?::vector <= ?");
+            params.add(vector);
+            params.add(maxDistance(distanceOperator, filter.minSimilarity()));
+        }
+        sql.append(" ORDER BY embedding ").append(distanceOperator).append(" ?::vector LIMIT ?");
+        params.add(vector);
+        params.add(limit);
+
+        return jdbcClient.sql(sql.toString())
+                .params(params)
+                .query((rs, rowNum) -> {
+                    Map<String, Object> metadata = parseMetadata(rs.getString("metadata"));
+                    metadata.put("distance", rs.getDouble("distance"));
+                    return new Document(rs.getString("id"), rs.getString("content"), metadata);
+                })
+                .list();
+    }
+
+    /**
+     * Appends the column conditions shared by both searches (" AND ..." after an existing WHERE).
+     */
+    private static void appendFilter(StringBuilder sql, List<Object> params, Filter filter,
+                                     OffsetDateTime receivedFrom, OffsetDateTime receivedBefore) {
+        if (receivedFrom != null) {
+            sql.append(" AND received_at >= ?");
+            params.add(receivedFrom);
+        }
+        if (receivedBefore != null) {
+            sql.append(" AND received_at < ?");
+            params.add(receivedBefore);
+        }
+        if (filter.excludeThreadId() != null && !filter.excludeThreadId().isBlank()) {
+            // thread_id IS NULL rows do not belong to any thread, so they are kept.
+            sql.append(" AND thread_id IS DISTINCT FROM ?");
+            params.add(filter.excludeThreadId());
+        }
+        String[] domains = normalizeDomains(filter.senderDomains());
+        if (domains.length > 0) {
+            // Domain of the first address in the From header ("Name <user@example.com>" or "user@example.com").
+            sql.append(" AND lower(substring(sender from '@([^>\\s]+)')) = ANY(?)");
+            params.add(domains);
+        }
+    }
+
+    private void setLocal(String setting, long millis) {
+        if (millis > 0) {
+            // SET LOCAL cannot take bind parameters; set_config(..., true) is the same thing.
+            jdbcClient.sql("SELECT set_config(?, ?, true)")
+                    .param(setting)
+                    .param(String.valueOf(millis))
+                    .query(String.class)
+                    .single();
+        }
+    }
+
+    private Map<String, Object> parseMetadata(String json) {
+        if (json == null) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, METADATA_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to parse email_embeddings metadata", e);
+        }
+    }
+
+    /**
+     * Largest distance that still meets a similarity threshold.
+     * Cosine: similarity = 1 - distance. Inner product: <#> is the negative inner product. Euclidean has no
+     * bounded similarity; like PgVectorStore, 1 - threshold is used as the distance limit.
+     */
+    static double maxDistance(String operator, double minSimilarity) {
+        return "<#>".equals(operator) ? -minSimilarity : 1 - minSimilarity;
+    }
+
+    /**
+     * Terms for the lexical search: identifier-like tokens (containing a digit: order numbers, SKUs, invoice ids).
+     * Lowercased, de-duplicated, in query order.
+     *
+     * Notes
+     * - Plain words are not used: under the 'simple' configuration (no stop words) OR-ing the words of a
+     *   question matches nearly every chunk, which is slow and adds nothing the vector search lacks.
+     */
+    static String[] lexicalTerms(String query, int maxTerms) {
+        if (query == null || query.isBlank()) {
+            return new String[0];
+        }
+        Set<String> identifiers = new LinkedHashSet<>();
+        Matcher m = LEXICAL_TOKEN.matcher(query);
+        while (m.find()) {
+            // Trailing separators belong to the sentence, not the token ("INV-42." -> "inv-42").
+            String token = m.group().replaceAll("[-_./#]+$", "").toLowerCase(Locale.ROOT);
+            if (token.chars().anyMatch(Character::isDigit)) {
+                identifiers.add(token);
+            }
+        }
+        return identifiers.stream().limit(maxTerms).toArray(String[]::new);
+    }
+
+    /**
+     * True if {@link #keywordSearch} has anything to look for in this query.
+     */
+    static boolean hasLexicalTerms(String query) {
+        return lexicalTerms(query, 1).length > 0;
+    }
+
+    static String[] normalizeDomains(List<String> domains) {
+        if (domains == null) {
+            return new String[0];
+        }
+        return domains.stream()
+                .filter(d -> d != null && !d.isBlank())
+                .map(d -> d.trim().toLowerCase(Locale.ROOT))
+                .map(d -> d.startsWith("@") ? d.substring(1) : d)
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    private static OffsetDateTime later(OffsetDateTime a, OffsetDateTime b) {
+        return b == null || a.isAfter(b) ? a : b;
+    }
+
+    /**
+     * pgvector operator for a Spring AI PgVectorStore distance type.
+     */
+    static String distanceOperator(String distanceType) {
+        if (distanceType == null || distanceType.isBlank()) {
+            return "<=>";
+        }
+        return switch (distanceType.trim().toUpperCase()) {
+            case "COSINE_DISTANCE" -> "<=>";
+            case "EUCLIDEAN_DISTANCE" -> "<->";
+            case "NEGATIVE_INNER_PRODUCT" -> "<#>";
+            default -> throw new IllegalStateException("Unsupported distance type: " + distanceType);
+        };
+    }
+
+    /**
+     * Start (UTC) of the window covering the current month and the months - 1 before it.
+     */
+    static OffsetDateTime windowStart(YearMonth currentMonth, int months) {
+        return currentMonth.minusMonths(Math.max(1, months) - 1L).atDay(1).atStartOfDay().atOffset(ZoneOffset.UTC);
+    }
+}
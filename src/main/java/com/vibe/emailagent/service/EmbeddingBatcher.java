@@ -0,0 +1,164 @@
+package com.vibe.emailagent.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+
+/**
+ * Collects chunks across messages and embeds/inserts them in batches.
+ *
+ * Why
+ * - One embedding request + one INSERT per chunk is dominated by round trips. Providers accept many inputs
+ *   per request (OpenAI: 2048 inputs, 300k tokens), so a backfill can use far fewer calls.
+ *
+ * How it works
+ * - {@link #add} buffers a document; a batch is flushed when the next document would exceed
+ *   maxInputs or maxTokens.
+ * - {@link #flush} hands the whole batch to the sink, which embeds it with one call and writes it with one
+ *   multi-row INSERT (in {@link IngestionPipeline}: on the embed and write stages).
+ * - A message's reconcile work (re-processing: stale rows to delete, kept rows to renumber) travels in the batch
+ *   that holds its chunks, so it commits together with them.
+ * - A batch is the commit unit and never splits a message. A message that alone exceeds the limits becomes a batch
+ *   of its own with several embedding requests, so it is still committed (or lost) as a whole: de-dup treats any
+ *   stored row as "message ingested", and a partially stored message would never be completed.
+ *
+ * Contract
+ * - One instance per ingestion run, used from one thread. Callers must call {@link #flush} at the end of the run
+ *   and before anything that reads back what was added (sync checkpoint).
+ */
+final class EmbeddingBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingBatcher.class);
+
+    private final Consumer<Batch> sink;
+    private final Tokenizer tokenizer;
+    private final int maxInputs;
+    private final int maxTokens;
+
+    private final List<Document> pending = new ArrayList<>();
+    private final List<Runnable> pendingReconciles = new ArrayList<>();
+    private int pendingTokens;
+
+    /**
+     * Chunks of one message to embed.
+     *
+     * @param reconcile work that must commit in the same transaction as the INSERT of docs, or null
+     */
+    record MessageChunks(List<Document> docs, Runnable reconcile) {
+
+        boolean isEmpty() {
+            return docs.isEmpty() && reconcile == null;
+        }
+    }
+
+    /**
+     * One commit unit: documents to embed and insert, and the reconcile work of their messages (run first).
+     *
+     * @param requests the documents, grouped into embedding requests within maxInputs/maxTokens (usually one)
+     */
+    record Batch(List<List<Document>> requests, List<Runnable> reconciles) {
+
+        List<Document> docs() {
+            return requests.stream().flatMap(Collection::stream).toList();
+        }
+    }
+
+    /**
+     * @param sink receives each full batch (e.g., hands it to an embedding stage of {@link IngestionPipeline})
+     */
+    EmbeddingBatcher(Consumer<Batch> sink, Tokenizer tokenizer, int maxInputs, int maxTokens) {
+        this.sink = sink;
+        this.tokenizer = tokenizer;
+        this.maxInputs = Math.max(1, maxInputs);
+        this.maxTokens = Math.max(1, maxTokens);
+    }
+
+    void add(Document doc) {
+        add(doc, tokenizer.count(doc.getText()));
+    }
+
+    /**
+     * Adds all chunks of one message, starting a new batch first if they would not fit into the current one.
+     * A message that alone exceeds the limits is handed to the sink right away as its own multi-request batch.
+     */
+    void addMessage(MessageChunks message) {
+        List<Document> docs = message.docs();
+        int[] tokens = new int[docs.size()];
+        int total = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = tokenizer.count(docs.get(i).getText());
+            total += tokens[i];
+        }
+        boolean fitsOneRequest = docs.size() <= maxInputs && total <= maxTokens;
+        if (!fitsOneRequest || pending.size() + docs.size() > maxInputs || pendingTokens + total > maxTokens) {
+            flush();
+        }
+
+        if (fitsOneRequest) {
+            for (int i = 0; i < tokens.length; i++) {
+                add(docs.get(i), tokens[i]);
+            }
+            if (message.reconcile() != null) {
+                pendingReconciles.add(message.reconcile());
+            }
+            return;
+        }
+
+        List<List<Document>> requests = new ArrayList<>();
+        List<Document> request = new ArrayList<>();
+        int requestTokens = 0;
+        for (int i = 0; i < tokens.length; i++) {
+            if (!request.isEmpty() && (request.size() >= maxInputs || requestTokens + tokens[i] > maxTokens)) {
+                requests.add(List.copyOf(request));
+                request.clear();
+                requestTokens = 0;
+            }
+            request.add(docs.get(i));
+            requestTokens += tokens[i];
+        }
+        requests.add(List.copyOf(request));
+        emit(new Batch(requests, message.reconcile() != null ? List.of(message.reconcile()) : List.of()), total);
+    }
+
+    private void add(Document doc, int tokens) {
+        if (!pending.isEmpty() && (pending.size() >= maxInputs || pendingTokens + tokens > maxTokens)) {
+            flush();
+        }
+
+        pending.add(doc);
+        pendingTokens += tokens;
+    }
+
+    /**
+     * Hands everything buffered so far to the sink.
+     *
+     * @return number of documents in the batch
+     */
+    int flush() {
+        if (pending.isEmpty() && pendingReconciles.isEmpty()) {
+            return 0;
+        }
+
+        int flushed = pending.size();
+        emit(new Batch(pending.isEmpty() ? List.of() : List.of(List.copyOf(pending)), List.copyOf(pendingReconciles)),
+                pendingTokens);
+
+        pending.clear();
+        pendingReconciles.clear();
+        pendingTokens = 0;
+        return flushed;
+    }
+
+    private void emit(Batch batch, int tokens) {
+        long started = System.nanoTime();
+        sink.accept(batch);
+        log.debug("[Ingestion] Flushed {} chunks (~{} tokens, {} requests, {} reconciled messages) in {} ms",
+                batch.docs().size(), tokens, batch.requests().size(), batch.reconciles().size(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+}
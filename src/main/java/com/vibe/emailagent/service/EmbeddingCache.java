@@ -0,0 +1,182 @@
+package com.vibe.emailagent.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vibe.emailagent.config.IngestionProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+
+/**
+ * Persistent embedding cache in front of {@link EmbeddingCaller}.
+ *
+ * Why
+ * - Identical chunks (newsletters, auto-replies, CC'd copies, inbox + sent) were embedded again at full cost.
+ *
+ * How it works
+ * - Key: (model, SHA-256 of the normalized text). Normalization collapses whitespace runs and trims,
+ *   which is what differs between otherwise identical cleaned bodies.
+ * - One lookup per batch ({@code content_hash = ANY(?)}); only misses go to the provider (duplicates within the
+ *   batch are embedded once); new vectors are stored with ON CONFLICT DO NOTHING.
+ * - Hits and misses are counted in {@link #HITS_METRIC} / {@link #MISSES_METRIC}.
+ *
+ * Notes
+ * - emailagent.ingestion.embedding-cache=false bypasses the table entirely.
+ */
+@Component
+@Profile({"ingest"})
+public class EmbeddingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCache.class);
+
+    static final String HITS_METRIC = "ingestion.embedding_cache.hits";
+    static final String MISSES_METRIC = "ingestion.embedding_cache.misses";
+
+    private final EmbeddingCaller embeddingCaller;
+    private final JdbcClient jdbcClient;
+    private final boolean enabled;
+    private final String model;
+    private final Counter hits;
+    private final Counter misses;
+
+    public EmbeddingCache(EmbeddingCaller embeddingCaller, JdbcClient jdbcClient, IngestionProperties ingestionProperties,
+                          MeterRegistry meterRegistry) {
+        this.embeddingCaller = embeddingCaller;
+        this.jdbcClient = jdbcClient;
+        this.enabled = ingestionProperties.embeddingCache();
+        this.model = ingestionProperties.embeddingCacheModel();
+        this.hits = meterRegistry.counter(HITS_METRIC, "model", String.valueOf(model));
+        this.misses = meterRegistry.counter(MISSES_METRIC, "model", String.valueOf(model));
+    }
+
+    /**
+     * Same contract as {@link EmbeddingCaller#embed}: one embedding per text, in input order.
+     */
+    public List<float[]> embed(List<String> texts) {
+        if (!enabled) {
+            return embeddingCaller.embed(texts);
+        }
+
+        List<String> keys = texts.stream().map(EmbeddingCache::contentHash).toList();
+        Map<String, float[]> vectors = lookup(keys);
+        int cached = vectors.size();
+
+        // Misses, de-duplicated within the batch (first text per key).
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (!vectors.containsKey(keys.get(i))) {
+                missing.putIfAbsent(keys.get(i), texts.get(i));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            List<float[]> fresh = embeddingCaller.embed(new ArrayList<>(missing.values()));
+            List<String> missingKeys = new ArrayList<>(missing.keySet());
+            for (int i = 0; i < missingKeys.size(); i++) {
+                vectors.put(missingKeys.get(i), fresh.get(i));
+            }
+            store(missingKeys, fresh);
+        }
+
+        int hitCount = texts.size() - missing.size();
+        hits.increment(hitCount);
+        misses.increment(missing.size());
+        log.debug("[EmbeddingCache] texts={}, storedHits={}, embedded={}", texts.size(), cached, missing.size());
+
+        List<float[]> out = new ArrayList<>(texts.size());
+        for (String key : keys) {
+            out.add(vectors.get(key));
+        }
+        return out;
+    }
+
+    /**
+     * Share of texts served without a provider call since startup (NaN before the first batch).
+     */
+    public double hitRate() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? Double.NaN : hits.count() / total;
+    }
+
+    private Map<String, float[]> lookup(List<String> keys) {
+        Map<String, float[]> out = new HashMap<>();
+        jdbcClient.sql("""
+                        SELECT content_hash, embedding::text AS embedding
+                        FROM embedding_cache
+                        WHERE model = ? AND content_hash = ANY(?)
+                        """)
+                .params(model, keys.stream().distinct().toArray(String[]::new))
+                .query(rs -> {
+                    out.put(rs.getString("content_hash"), parseVector(rs.getString("embedding")));
+                });
+        return out;
+    }
+
+    private void store(List<String> keys, List<float[]> embeddings) {
+        StringBuilder sql = new StringBuilder("INSERT INTO embedding_cache (model, content_hash, embedding) VALUES ");
+        List<Object> params = new ArrayList<>(keys.size() * 3);
+        for (int i = 0; i < keys.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append("(?, ?, ?::vector)");
+            params.add(model);
+            params.add(keys.get(i));
+            params.add(EmailEmbeddingWriter.toVectorLiteral(embeddings.get(i)));
+        }
+        sql.append(" ON CONFLICT (model, content_hash) DO NOTHING");
+        jdbcClient.sql(sql.toString()).params(params).update();
+    }
+
+    /**
+     * SHA-256 (hex) of the text with whitespace runs collapsed to one space and trimmed.
+     */
+    static String contentHash(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+                continue;
+            }
+            if (space) {
+                normalized.append(' ');
+                space = false;
+            }
+            normalized.append(c);
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalized.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Parses pgvector's text form ("[0.1,0.2,...]").
+     */
+    static float[] parseVector(String text) {
+        String body = text.substring(text.indexOf('[') + 1, text.lastIndexOf(']'));
+        if (body.isBlank()) {
+            return new float[0];
+        }
+        String[] parts = body.split(",");
+        float[] out = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            out[i] = Float.parseFloat(parts[i].trim());
+        }
+        return out;
+    }
+}
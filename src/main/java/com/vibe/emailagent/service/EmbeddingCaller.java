@@ -0,0 +1,38 @@
+package com.vibe.emailagent.service;
+
+import java.util.List;
+
+import com.vibe.emailagent.retry.ExponentialRetry;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dedicated component that performs the embedding HTTP call.
+ *
+ * Why this exists
+ * - Same reason as {@link LlmCaller}: retry is proxy-based, so the annotated call must live in its own bean.
+ * - One call embeds a whole batch (see {@link EmbeddingBatcher}).
+ */
+@Component
+public class EmbeddingCaller {
+
+    private final EmbeddingModel embeddingModel;
+
+    public EmbeddingCaller(EmbeddingModel embeddingModel) {
+        this.embeddingModel = embeddingModel;
+    }
+
+    /**
+     * Embeds all texts in a single request.
+     *
+     * @return one embedding per text, in input order
+     */
+    @ExponentialRetry
+    public List<float[]> embed(List<String> texts) {
+        List<float[]> embeddings = embeddingModel.embed(texts);
+        if (embeddings.size() != texts.size()) {
+            throw new IllegalStateException("Embedding count mismatch: expected " + texts.size() + " but got " + embeddings.size());
+        }
+        return embeddings;
+    }
+}
@@ -0,0 +1,144 @@
+package com.vibe.emailagent.service;
+
+import java.util.Arrays;
+
+/**
+ * Fallback tokenizer that estimates token boundaries from character classes.
+ *
+ * Used when the BPE vocabulary file is not on the classpath.
+ * The estimate aims high (chunks come out smaller than the limit), but without the vocabulary it is not a bound:
+ * keep some headroom below the embedding model's hard limit.
+ *
+ * How it works
+ * - A token ends wherever the character class changes (letter / digit / symbol / whitespace, and lower to upper
+ *   case), as BPE merges rarely cross those. A space does not end the token before a word (" word" is one token).
+ * - Words mixing letters and digits, or with capitals inside (ids, hex, base64), are "dense": BPE has few merges
+ *   for them, so their letters and digits count 0.6 each until the next whitespace.
+ * - Within a run, tokens are counted per character:
+ *   - letters, whitespace: 0.3 (English averages ~0.25 in cl100k)
+ *   - digits: 0.4 (cl100k splits numbers into groups of at most 3 digits)
+ *   - ASCII symbols (URL and markup punctuation): 1 each
+ *   - non-ASCII: 0.6 per UTF-8 byte (Hangul/CJK ~1.8, emoji ~2.4 per char)
+ */
+public final class EstimatingTokenizer implements Tokenizer {
+
+    private static final double LETTER_WEIGHT = 0.3;
+    private static final double DIGIT_WEIGHT = 0.4;
+    private static final double DENSE_WEIGHT = 0.6;
+    private static final double SYMBOL_WEIGHT = 1.0;
+    private static final double NON_ASCII_WEIGHT_PER_BYTE = 0.6;
+
+    private static final int LOWER = 1;
+    private static final int UPPER = 2;
+    private static final int DIGIT = 3;
+    private static final int SPACE = 4;
+    private static final int SYMBOL = 5;
+    private static final int NON_ASCII = 6;
+
+    @Override
+    public int[] tokenEnds(String text) {
+        if (text == null || text.isEmpty()) {
+            return new int[0];
+        }
+
+        int[] ends = new int[Math.max(16, text.length() / 3)];
+        int count = 0;
+        double acc = 0;
+        int previous = 0;
+        boolean dense = false;
+
+        int i = 0;
+        while (i < text.length()) {
+            int start = i;
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            int current = classOf(cp);
+
+            if (current == SPACE) {
+                dense = false;
+            } else if (isMixed(previous, current)) {
+                dense = true;
+            }
+            if (acc > 0 && startsToken(previous, current) && (count == 0 || ends[count - 1] < start)) {
+                // Close the partial token before this character.
+                if (count == ends.length) {
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+                ends[count++] = start;
+                acc = 0;
+            }
+            previous = current;
+
+            acc += dense && (current == LOWER || current == UPPER || current == DIGIT) ? DENSE_WEIGHT : weight(current, cp);
+            while (acc >= 1.0) {
+                if (count == ends.length) {
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+                ends[count++] = i;
+                acc -= 1.0;
+            }
+        }
+        if (acc > 0 && (count == 0 || ends[count - 1] < text.length())) {
+            if (count == ends.length) {
+                ends = Arrays.copyOf(ends, count + 1);
+            }
+            ends[count++] = text.length();
+        }
+        return Arrays.copyOf(ends, count);
+    }
+
+    @Override
+    public String name() {
+        return "estimate";
+    }
+
+    private static boolean startsToken(int previous, int current) {
+        if (previous == current || previous == SPACE) {
+            return false;
+        }
+        // "Hello": a capital letter starts the word, lower case continues it.
+        return !(previous == UPPER && current == LOWER);
+    }
+
+    /**
+     * Letters next to digits, or a capital inside a lower-case run: ids, hex, base64.
+     */
+    private static boolean isMixed(int previous, int current) {
+        boolean letters = previous == LOWER || previous == UPPER;
+        return (letters && current == DIGIT)
+                || (previous == DIGIT && (current == LOWER || current == UPPER))
+                || (previous == LOWER && current == UPPER);
+    }
+
+    private static double weight(int charClass, int cp) {
+        return switch (charClass) {
+            case LOWER, UPPER, SPACE -> LETTER_WEIGHT;
+            case DIGIT -> DIGIT_WEIGHT;
+            case SYMBOL -> SYMBOL_WEIGHT;
+            default -> NON_ASCII_WEIGHT_PER_BYTE * utf8Length(cp);
+        };
+    }
+
+    private static int classOf(int cp) {
+        if (cp >= 0x80) {
+            return NON_ASCII;
+        }
+        if (cp >= 'a' && cp <= 'z') {
+            return LOWER;
+        }
+        if (cp >= 'A' && cp <= 'Z') {
+            return UPPER;
+        }
+        if (cp >= '0' && cp <= '9') {
+            return DIGIT;
+        }
+        return cp == ' ' || cp == '\t' || cp == '\n' || cp == '\r' ? SPACE : SYMBOL;
+    }
+
+    private static int utf8Length(int cp) {
+        if (cp < 0x800) {
+            return 2;
+        }
+        return cp < 0x10000 ? 3 : 4;
+    }
+}
@@ -0,0 +1,165 @@
+package com.vibe.emailagent.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.vibe.emailagent.config.RetrievalProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Retrieval entry point: vector search, or hybrid vector + full-text search (emailagent.retrieval.mode).
+ *
+ * Why
+ * - Embeddings are good at meaning but blur exact identifiers (order numbers, SKUs, invoice ids) that customers
+ *   quote; a full-text match on content_tsv (V9) finds those chunks.
+ *
+ * How it works (hybrid)
+ * - Both legs run in parallel with the same {@link EmailSimilaritySearch.Filter}, each fetching
+ *   hybrid-candidates results.
+ * - The lexical leg only looks for identifier-like terms. A query without any is a plain vector search.
+ * - Each leg has a latency budget, measured from the start of the search and also applied as its
+ *   statement_timeout. A leg that misses the budget or fails is logged and contributes nothing.
+ * - Results are merged with reciprocal rank fusion: score = sum over legs of 1 / (rrf-k + rank), rank from 1.
+ *   RRF only uses ranks, so cosine distances and ts_rank_cd values never have to be made comparable.
+ *
+ * Notes
+ * - Fused documents carry metadata.rrf_score, plus distance and/or lexical_rank from the legs that found them.
+ */
+@Component
+@Profile({"automation", "draft-test"})
+public class HybridEmailSearch {
+
+    private static final Logger log = LoggerFactory.getLogger(HybridEmailSearch.class);
+
+    static final String MODE_HYBRID = "hybrid";
+
+    private static final int THREADS = 4;
+
+    private final EmailSimilaritySearch similaritySearch;
+    private final RetrievalProperties retrievalProperties;
+    private final ExecutorService executor;
+
+    public HybridEmailSearch(EmailSimilaritySearch similaritySearch, RetrievalProperties retrievalProperties) {
+        this.similaritySearch = similaritySearch;
+        this.retrievalProperties = retrievalProperties;
+        this.executor = Executors.newFixedThreadPool(THREADS, daemonThreads("retrieval-"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return up to filter.topK chunks, best first
+     */
+    public List<Document> search(String query, EmailSimilaritySearch.Filter filter) {
+        if (!MODE_HYBRID.equalsIgnoreCase(retrievalProperties.mode()) || !EmailSimilaritySearch.hasLexicalTerms(query)) {
+            return similaritySearch.search(query, filter);
+        }
+
+        EmailSimilaritySearch.Filter legFilter = new EmailSimilaritySearch.Filter(
+                Math.max(filter.topK(), retrievalProperties.hybridCandidates()),
+                filter.minSimilarity(), filter.excludeThreadId(), filter.receivedAfter(), filter.senderDomains());
+        long vectorBudget = retrievalProperties.vectorBudgetMillis();
+        long lexicalBudget = retrievalProperties.lexicalBudgetMillis();
+
+        long started = System.nanoTime();
+        CompletableFuture<List<Document>> vector = CompletableFuture.supplyAsync(
+                () -> similaritySearch.search(query, legFilter, vectorBudget), executor);
+        CompletableFuture<List<Document>> lexical = CompletableFuture.supplyAsync(
+                () -> similaritySearch.keywordSearch(query, legFilter, lexicalBudget), executor);
+
+        List<Document> vectorHits = await("vector", vector, started, vectorBudget);
+        List<Document> lexicalHits = await("lexical", lexical, started, lexicalBudget);
+
+        List<Document> fused = fuse(List.of(vectorHits, lexicalHits), retrievalProperties.rrfK(), filter.topK());
+        log.info("[Retrieval] Hybrid search: vector={}, lexical={}, fused={}, millis={}",
+                vectorHits.size(), lexicalHits.size(), fused.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return fused;
+    }
+
+    /**
+     * Reciprocal rank fusion of ranked result lists (best first).
+     * Ties keep the order in which documents were first seen (earlier lists first).
+     */
+    static List<Document> fuse(List<List<Document>> rankings, int k, int topK) {
+        int rrfK = Math.max(0, k);
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, Document> firstSeen = new LinkedHashMap<>();
+        Map<String, Map<String, Object>> metadata = new HashMap<>();
+
+        for (List<Document> ranking : rankings) {
+            for (int i = 0; i < ranking.size(); i++) {
+                Document doc = ranking.get(i);
+                scores.merge(doc.getId(), 1.0 / (rrfK + i + 1), Double::sum);
+                firstSeen.putIfAbsent(doc.getId(), doc);
+                // Keep leg-specific values (distance, lexical_rank) from every list that found the chunk.
+                metadata.computeIfAbsent(doc.getId(), id -> new HashMap<>()).putAll(doc.getMetadata());
+            }
+        }
+
+        List<String> ids = new ArrayList<>(firstSeen.keySet());
+        // Stable sort: equal scores keep first-seen order.
+        ids.sort(Comparator.comparingDouble((String id) -> scores.get(id)).reversed());
+
+        List<Document> out = new ArrayList<>(Math.min(ids.size(), Math.max(0, topK)));
+        for (String id : ids.subList(0, Math.min(ids.size(), Math.max(0, topK)))) {
+            Map<String, Object> merged = metadata.get(id);
+            merged.put("rrf_score", scores.get(id));
+            out.add(new Document(id, firstSeen.get(id).getText(), merged));
+        }
+        return out;
+    }
+
+    /**
+     * Result of one leg, or an empty list if it fails or is not done within budgetMillis of startedNanos
+     * (budgetMillis <= 0: wait without limit).
+     */
+    static List<Document> await(String leg, CompletableFuture<List<Document>> future, long startedNanos, long budgetMillis) {
+        try {
+            if (budgetMillis <= 0) {
+                return future.get();
+            }
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis) - (System.nanoTime() - startedNanos);
+            return future.get(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // The statement_timeout ends the query itself; the result is simply not used.
+            future.cancel(true);
+            log.warn("[Retrieval] {} search missed its {}ms budget; continuing without it", leg, budgetMillis);
+            return List.of();
+        } catch (ExecutionException e) {
+            log.warn("[Retrieval] {} search failed; continuing without it", leg, e.getCause());
+            return List.of();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the " + leg + " search", e);
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
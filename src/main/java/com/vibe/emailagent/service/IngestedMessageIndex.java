@@ -0,0 +1,147 @@
+package com.vibe.emailagent.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import com.vibe.emailagent.config.IngestionProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Answers "which of these Gmail message ids are already in email_embeddings?" for a whole page at once.
+ *
+ * Why
+ * - One JSONB-expression lookup per listed message adds a DB round trip per message; a large backfill spends
+ *   minutes on that alone.
+ *
+ * How it works
+ * - {@link #findIngested} resolves all ids with one {@code message_id = ANY(?)} query
+ *   (served by email_embeddings_message_id_idx).
+ * - Optional Bloom filter (emailagent.ingestion.dedupe-bloom-filter): all stored message ids are streamed once
+ *   before the first lookup. Ids the filter has never seen are new without asking the DB; only "maybe" ids
+ *   are queried.
+ *
+ * Notes
+ * - The filter only knows ids stored by this process (loaded + {@link #markIngested}). Do not enable it while
+ *   another process ingests into the same table.
+ */
+@Component
+@Profile({"ingest", "gmail-test"})
+public class IngestedMessageIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestedMessageIndex.class);
+
+    /**
+     * Ids per ANY(?) array.
+     */
+    static final int MAX_IDS_PER_QUERY = 5_000;
+
+    private static final int STREAM_FETCH_SIZE = 10_000;
+    private static final double BLOOM_FALSE_POSITIVE_RATE = 0.01;
+
+    private final JdbcClient jdbcClient;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final IngestionProperties ingestionProperties;
+
+    private BloomFilter bloomFilter;
+
+    public IngestedMessageIndex(JdbcClient jdbcClient,
+                                DataSource dataSource,
+                                PlatformTransactionManager transactionManager,
+                                IngestionProperties ingestionProperties) {
+        this.jdbcClient = jdbcClient;
+        this.ingestionProperties = ingestionProperties;
+
+        // Postgres only streams with a fetch size inside a transaction.
+        this.streamingJdbcTemplate = new JdbcTemplate(dataSource);
+        this.streamingJdbcTemplate.setFetchSize(STREAM_FETCH_SIZE);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Returns the subset of messageIds that already has rows in email_embeddings.
+     */
+    public synchronized Set<String> findIngested(Collection<String> messageIds) {
+        List<String> candidates = new ArrayList<>(messageIds.size());
+        BloomFilter filter = ingestionProperties.dedupeBloomFilter() ? loadedBloomFilter() : null;
+        for (String id : messageIds) {
+            if (id != null && !id.isBlank() && (filter == null || filter.mightContain(id))) {
+                candidates.add(id);
+            }
+        }
+
+        Set<String> found = new HashSet<>();
+        for (int from = 0; from < candidates.size(); from += MAX_IDS_PER_QUERY) {
+            List<String> slice = candidates.subList(from, Math.min(candidates.size(), from + MAX_IDS_PER_QUERY));
+            jdbcClient.sql("""
+                            SELECT DISTINCT message_id
+                            FROM email_embeddings
+                            WHERE message_id = ANY(?)
+                            """)
+                    .param(slice.toArray(String[]::new))
+                    .query(rs -> {
+                        found.add(rs.getString("message_id"));
+                    });
+        }
+        return found;
+    }
+
+    /**
+     * Records that rows for messageId are being written, so the Bloom filter stays free of false negatives.
+     */
+    public synchronized void markIngested(String messageId) {
+        if (bloomFilter != null && messageId != null) {
+            bloomFilter.add(messageId);
+        }
+    }
+
+    private BloomFilter loadedBloomFilter() {
+        if (bloomFilter != null) {
+            return bloomFilter;
+        }
+
+        long started = System.currentTimeMillis();
+        // Row estimate (chunks >= messages) sizes the filter without a counting scan. email_embeddings is
+        // partitioned (V8): the parent has no reltuples of its own, so the leaf partitions are summed
+        // (never-analyzed partitions report -1).
+        Long estimatedRows = jdbcClient.sql("""
+                        SELECT COALESCE(SUM(GREATEST(c.reltuples, 0)), 0)::bigint
+                        FROM pg_partition_tree('email_embeddings') t
+                        JOIN pg_class c ON c.oid = t.relid
+                        WHERE t.isleaf
+                        """)
+                .query(Long.class)
+                .optional()
+                .orElse(0L);
+        long expected = Math.max(ingestionProperties.dedupeBloomExpectedIds(), estimatedRows);
+
+        BloomFilter filter = new BloomFilter(expected, BLOOM_FALSE_POSITIVE_RATE);
+        long[] loaded = new long[1];
+        readOnlyTransaction.executeWithoutResult(status -> streamingJdbcTemplate.query("""
+                        SELECT DISTINCT message_id
+                        FROM email_embeddings
+                        WHERE message_id IS NOT NULL
+                        """, rs -> {
+                    filter.add(rs.getString(1));
+                    loaded[0]++;
+                }));
+
+        log.info("[Dedup] Bloom filter loaded. ids={}, sizedFor={}, bytes={}, tookMs={}",
+                loaded[0], expected, filter.sizeInBytes(), System.currentTimeMillis() - started);
+        bloomFilter = filter;
+        return filter;
+    }
+}
@@ -0,0 +1,266 @@
+package com.vibe.emailagent.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.vibe.emailagent.gmail.GmailMessageContent;
+import com.vibe.emailagent.service.EmbeddingBatcher.Batch;
+import com.vibe.emailagent.service.EmbeddingBatcher.MessageChunks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.document.Document;
+
+/**
+ * Staged ingestion pipeline: fetch -> process (clean/strip/chunk) -> batch -> embed -> write.
+ *
+ * Why
+ * - Run sequentially, every message pays Gmail latency + CPU + embedding latency + INSERT in turn.
+ *   With stages running side by side, throughput approaches the slowest stage instead of the sum.
+ *
+ * How it works
+ * - Each stage is a fixed pool with a bounded queue. Submitting to a full stage blocks the submitting thread,
+ *   so a slow stage throttles everything upstream of it (down to the listing loop) instead of buffering.
+ * - Stages only submit downstream, so a full queue can never wait on itself.
+ * - Fetches return futures: a blocking client completes them on the fetch thread, a non-blocking one
+ *   ({@link com.vibe.emailagent.gmail.AsyncGmailClient}) keeps up to maxFetchesInFlight requests open from a
+ *   single fetch thread. Either way, at most maxFetchesInFlight fetches are outstanding.
+ * - The batch stage is a single thread that owns the {@link EmbeddingBatcher}; full batches are embedded and
+ *   written on their own pools.
+ * - Each batch is written (and committed) on its own; batches keep a message's chunks together, so a crash
+ *   loses at most the batches in flight and never leaves a message half stored.
+ *
+ * Contract
+ * - One instance per run. Call {@link #drain} before anything that depends on all rows being written
+ *   (sync checkpoint, result counters), then {@link #close}.
+ * - The first failure in any stage stops the pipeline; {@link #submit} and {@link #drain} rethrow it.
+ */
+final class IngestionPipeline implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionPipeline.class);
+
+    /**
+     * Per-stage thread counts, the bound on outstanding fetches and the queue capacity of each stage.
+     */
+    record Settings(int fetchConcurrency, int maxFetchesInFlight, int processConcurrency, int embedConcurrency,
+                    int writeConcurrency, int queueCapacity) {
+    }
+
+    private final Function<String, CompletableFuture<GmailMessageContent>> fetch;
+    private final Semaphore fetchPermits;
+    private final Function<GmailMessageContent, MessageChunks> process;
+
+    private final Stage fetchStage;
+    private final Stage processStage;
+    private final Stage batchStage;
+    private final Stage embedStage;
+    private final Stage writeStage;
+    private final EmbeddingBatcher batcher;
+
+    private final AtomicInteger committedChunks = new AtomicInteger();
+    private final AtomicInteger committedBatches = new AtomicInteger();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final Object idle = new Object();
+
+    /**
+     * @param fetch messageId -> content (Gmail call; may complete on another thread)
+     * @param process content -> documents to embed and reconcile work (may be empty)
+     * @param embed texts -> embeddings in the same order (one provider call or cache lookup per batch)
+     * @param write stores one batch (reconcile work included); expected to commit before returning
+     */
+    IngestionPipeline(Settings settings,
+                      Function<String, CompletableFuture<GmailMessageContent>> fetch,
+                      Function<GmailMessageContent, MessageChunks> process,
+                      Function<List<String>, List<float[]>> embed,
+                      BiConsumer<Batch, List<float[]>> write,
+                      Tokenizer tokenizer,
+                      int maxBatchInputs,
+                      int maxBatchTokens) {
+        this.fetch = fetch;
+        this.fetchPermits = new Semaphore(Math.max(1, settings.maxFetchesInFlight()));
+        this.process = process;
+
+        int capacity = Math.max(1, settings.queueCapacity());
+        this.fetchStage = new Stage("ingest-fetch-", settings.fetchConcurrency(), capacity);
+        this.processStage = new Stage("ingest-process-", settings.processConcurrency(), capacity);
+        this.batchStage = new Stage("ingest-batch-", 1, capacity);
+        this.embedStage = new Stage("ingest-embed-", settings.embedConcurrency(), capacity);
+        this.writeStage = new Stage("ingest-write-", settings.writeConcurrency(), capacity);
+
+        this.batcher = new EmbeddingBatcher(batch -> embedStage.submit(() -> {
+            // Usually one request; none for reconcile-only batches, several for a message larger than one request.
+            List<float[]> embeddings = new ArrayList<>();
+            for (List<Document> request : batch.requests()) {
+                embeddings.addAll(embed.apply(request.stream().map(Document::getText).toList()));
+            }
+            writeStage.submit(() -> {
+                write.accept(batch, embeddings);
+                int chunks = committedChunks.addAndGet(batch.docs().size());
+                log.info("[Ingestion] Committed batch #{}: chunks={}, committedChunks={}",
+                        committedBatches.incrementAndGet(), batch.docs().size(), chunks);
+            });
+        }), tokenizer, maxBatchInputs, maxBatchTokens);
+    }
+
+    /**
+     * Queues one message. Blocks while the fetch stage is full.
+     */
+    void submit(String messageId) {
+        throwIfFailed();
+        fetchStage.submit(() -> {
+            // Blocks this fetch thread (and, once its queue is full, the listing loop) while too many are open.
+            fetchPermits.acquireUninterruptibly();
+            // Counted until the fetch completes, which may be after this task returns.
+            inFlight.incrementAndGet();
+            CompletableFuture<GmailMessageContent> pending;
+            try {
+                pending = fetch.apply(messageId);
+            } catch (RuntimeException e) {
+                pending = CompletableFuture.failedFuture(e);
+            }
+            pending.whenComplete((content, error) -> {
+                fetchPermits.release();
+                try {
+                    if (error != null) {
+                        failure.compareAndSet(null, error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause()
+                                : error);
+                    } else if (failure.get() == null) {
+                        processStage.submit(() -> process(content));
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    done();
+                }
+            });
+        });
+    }
+
+    private void process(GmailMessageContent content) {
+        MessageChunks chunks = process.apply(content);
+        if (!chunks.isEmpty()) {
+            batchStage.submit(() -> batcher.addMessage(chunks));
+        }
+    }
+
+    /**
+     * Waits until every queued message is embedded and written, including the last partial batch.
+     */
+    void drain() {
+        awaitIdle();
+        batchStage.submit(batcher::flush);
+        awaitIdle();
+        throwIfFailed();
+    }
+
+    /**
+     * Chunks written by completed batches so far.
+     */
+    int committedChunks() {
+        return committedChunks.get();
+    }
+
+    @Override
+    public void close() {
+        for (Stage stage : List.of(fetchStage, processStage, batchStage, embedStage, writeStage)) {
+            stage.executor.shutdownNow();
+        }
+    }
+
+    private void awaitIdle() {
+        synchronized (idle) {
+            while (inFlight.get() > 0) {
+                try {
+                    idle.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the ingestion pipeline", e);
+                }
+            }
+        }
+    }
+
+    private void throwIfFailed() {
+        Throwable t = failure.get();
+        if (t == null) {
+            return;
+        }
+        if (t instanceof RuntimeException re) {
+            throw re;
+        }
+        throw new IllegalStateException("Ingestion pipeline failed", t);
+    }
+
+    private final class Stage {
+        private final ThreadPoolExecutor executor;
+
+        Stage(String name, int threads, int capacity) {
+            int n = Math.max(1, threads);
+            this.executor = new ThreadPoolExecutor(n, n, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(capacity), daemonThreads(name), (task, executor) -> {
+                // Backpressure: wait for room instead of rejecting.
+                try {
+                    executor.getQueue().put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while queueing ingestion work", e);
+                }
+            });
+        }
+
+        /**
+         * Runs the task on this stage. Tasks submitted from inside a task are counted before the parent
+         * finishes, so the pipeline is only idle once the whole chain is done.
+         */
+        void submit(Runnable task) {
+            inFlight.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    try {
+                        if (failure.get() == null) {
+                            task.run();
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        done();
+                    }
+                });
+            } catch (RuntimeException e) {
+                done();
+                throw e;
+            }
+        }
+    }
+
+    private void done() {
+        if (inFlight.decrementAndGet() == 0) {
+            synchronized (idle) {
+                idle.notifyAll();
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
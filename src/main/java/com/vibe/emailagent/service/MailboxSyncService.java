@@ -0,0 +1,136 @@
+package com.vibe.emailagent.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vibe.emailagent.domain.GmailSyncCheckpoint;
+import com.vibe.emailagent.gmail.GmailClient;
+import com.vibe.emailagent.gmail.GmailHistoryExpiredException;
+import com.vibe.emailagent.gmail.GmailHistoryMessage;
+import com.vibe.emailagent.gmail.GmailHistoryPage;
+import com.vibe.emailagent.gmail.GmailProfile;
+import com.vibe.emailagent.repository.GmailSyncCheckpointRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Incremental mailbox sync based on the Gmail History API.
+ *
+ * How it works
+ * - Each consumer (ingest, automation) keeps its own historyId watermark in gmail_sync_checkpoint.
+ * - With a watermark, only messageAdded/labelAdded changes after it are listed (history.list).
+ * - Without a watermark, or when Gmail reports it as expired, the caller runs its regular full query scan
+ *   and stores the mailbox historyId captured before that scan.
+ *
+ * Contract
+ * - Callers must only save a watermark covering changes they processed: {@link MailboxDelta#historyId()} after all
+ *   of them, {@link MailboxDelta#watermarkBefore(int)} after a prefix. Otherwise unprocessed messages would be skipped
+ *   on the next run.
+ */
+@Service
+@Profile({"ingest", "automation"})
+public class MailboxSyncService {
+
+    private static final Logger log = LoggerFactory.getLogger(MailboxSyncService.class);
+
+    private final GmailClient gmailClient;
+    private final GmailSyncCheckpointRepository checkpointRepository;
+
+    public MailboxSyncService(GmailClient gmailClient, GmailSyncCheckpointRepository checkpointRepository) {
+        this.gmailClient = gmailClient;
+        this.checkpointRepository = checkpointRepository;
+    }
+
+    /**
+     * Loads mailbox changes since the consumer's watermark.
+     *
+     * @param consumer watermark owner (e.g., "ingest")
+     * @return incremental changes, or a full-scan marker if there is no usable watermark
+     */
+    @Transactional(readOnly = true)
+    public MailboxDelta loadDelta(String consumer) {
+        GmailProfile profile = gmailClient.fetchProfile();
+        String mailbox = profile.emailAddress();
+
+        var checkpoint = checkpointRepository.findByMailboxAndConsumer(mailbox, consumer);
+        if (checkpoint.isEmpty()) {
+            log.info("[Sync] No checkpoint for mailbox={}, consumer={}. Full scan required.", mailbox, consumer);
+            return MailboxDelta.fullScan(mailbox, profile.historyId());
+        }
+
+        long startHistoryId = checkpoint.get().getHistoryId();
+        long latestHistoryId = startHistoryId;
+
+        // Keyed by message id: the same message can appear in several history records.
+        // The latest record wins so labelIds reflect the most recent state; the position and historyId stay those
+        // of the first record, so the list remains ordered by history id (see MailboxDelta#watermarkBefore).
+        Map<String, GmailHistoryMessage> changed = new LinkedHashMap<>();
+
+        String pageToken = null;
+        try {
+            do {
+                GmailHistoryPage page = gmailClient.listHistory(startHistoryId, pageToken);
+                for (GmailHistoryMessage m : page.messages()) {
+                    changed.merge(m.messageId(), m, (first, latest) ->
+                            new GmailHistoryMessage(latest.messageId(), latest.threadId(), latest.labelIds(), first.historyId()));
+                }
+                latestHistoryId = Math.max(latestHistoryId, page.historyId());
+                pageToken = page.nextPageToken();
+            } while (pageToken != null && !pageToken.isBlank());
+        } catch (GmailHistoryExpiredException e) {
+            log.warn("[Sync] History expired for mailbox={}, consumer={}, historyId={}. Falling back to full scan.",
+                    mailbox, consumer, startHistoryId);
+            return MailboxDelta.fullScan(mailbox, profile.historyId());
+        }
+
+        log.info("[Sync] mailbox={}, consumer={}, historyId {} -> {}, changedMessages={}",
+                mailbox, consumer, startHistoryId, latestHistoryId, changed.size());
+
+        return new MailboxDelta(mailbox, latestHistoryId, false, new ArrayList<>(changed.values()));
+    }
+
+    /**
+     * Stores (or advances) the consumer's watermark.
+     */
+    @Transactional
+    public void saveCheckpoint(String mailbox, String consumer, long historyId) {
+        GmailSyncCheckpoint checkpoint = checkpointRepository.findByMailboxAndConsumer(mailbox, consumer)
+                .orElseGet(() -> new GmailSyncCheckpoint(mailbox, consumer, historyId));
+        checkpoint.setHistoryId(historyId);
+        checkpointRepository.save(checkpoint);
+
+        log.info("[Sync] Checkpoint saved. mailbox={}, consumer={}, historyId={}", mailbox, consumer, historyId);
+    }
+
+    /**
+     * @param mailbox mailbox address (checkpoint key)
+     * @param historyId watermark to store once the caller has processed this delta (or completed its full scan)
+     * @param fullScan true if there is no usable watermark and the caller must run a full query scan
+     * @param messages changed messages in history order (empty for full scans)
+     */
+    public record MailboxDelta(String mailbox, long historyId, boolean fullScan, List<GmailHistoryMessage> messages) {
+
+        /**
+         * Watermark to store once messages[0, handled) were processed and the rest was left for a later run.
+         * - The next history.list then starts at the first unhandled message; handled messages with later records
+         *   may be listed again, so callers must tolerate seeing them twice.
+         *
+         * @param handled number of leading messages processed (>= messages.size() means all of them)
+         */
+        public long watermarkBefore(int handled) {
+            if (handled >= messages.size()) {
+                return historyId;
+            }
+            return messages.get(handled).historyId() - 1;
+        }
+
+        static MailboxDelta fullScan(String mailbox, long historyId) {
+            return new MailboxDelta(mailbox, historyId, true, List.of());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.vibe.emailagent.service;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+/**
+ * Encodes rows in PostgreSQL's binary COPY format (COPY ... FROM STDIN (FORMAT binary)).
+ *
+ * Format
+ * - Header: "PGCOPY\n\377\r\n\0", int32 flags (0), int32 header extension length (0).
+ * - Per row: int16 field count, then per field int32 byte length (-1 = NULL) and the type's binary "send" form.
+ * - Trailer: int16 -1.
+ *
+ * Types used by email_embeddings
+ * - uuid: 16 bytes. text: UTF-8. jsonb: version byte 1 + JSON text.
+ * - timestamptz: int64 microseconds since 2000-01-01 00:00 UTC.
+ * - vector (pgvector): int16 dimensions, int16 unused (0), float4 values (big-endian).
+ */
+final class PgBinaryCopyEncoder {
+
+    private static final Instant POSTGRES_EPOCH = Instant.parse("2000-01-01T00:00:00Z");
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    private final DataOutputStream out;
+
+    PgBinaryCopyEncoder(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    void writeHeader() throws IOException {
+        out.write(SIGNATURE);
+        out.writeInt(0);
+        out.writeInt(0);
+    }
+
+    void startRow(int fieldCount) throws IOException {
+        out.writeShort(fieldCount);
+    }
+
+    void writeUuid(UUID value) throws IOException {
+        out.writeInt(16);
+        out.writeLong(value.getMostSignificantBits());
+        out.writeLong(value.getLeastSignificantBits());
+    }
+
+    void writeText(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    void writeJsonb(String json) throws IOException {
+        if (json == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length + 1);
+        out.writeByte(1);
+        out.write(bytes);
+    }
+
+    void writeTimestamptz(OffsetDateTime value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(8);
+        out.writeLong(ChronoUnit.MICROS.between(POSTGRES_EPOCH, value.toInstant()));
+    }
+
+    void writeVector(float[] values) throws IOException {
+        if (values.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("vector has too many dimensions: " + values.length);
+        }
+        out.writeInt(4 + values.length * 4);
+        out.writeShort(values.length);
+        out.writeShort(0);
+        for (float v : values) {
+            out.writeFloat(v);
+        }
+    }
+
+    void writeTrailer() throws IOException {
+        out.writeShort(-1);
+        out.flush();
+    }
+}
@@ -1,7 +1,10 @@
 package com.vibe.emailagent.service;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * Very small, dependency-free text chunker.
@@ -13,10 +16,24 @@ import java.util.List;
  *
  * Notes
  * - This is intentionally character-based to keep it provider-agnostic.
- * - If needed later, we can replace this with a token-based chunker using a tokenizer.
+ *   {@link TokenChunker} is the token-based variant.
+ * - Chunks end at the best boundary inside a tolerance window before the size limit:
+ *   paragraph break, then sentence end, then whitespace. Only if none exists is the text cut mid-word.
+ * - {@link #iterate} is lazy and returns CharSequence views (no substring copies), so a very long thread
+ *   never holds all of its chunks at once.
  */
 public final class TextChunker {
 
+    /**
+     * Fraction of the chunk size searched backwards for a good boundary.
+     */
+    static final double TOLERANCE_RATIO = 0.2;
+
+    static final int BOUNDARY_NONE = 0;
+    static final int BOUNDARY_WORD = 1;
+    static final int BOUNDARY_SENTENCE = 2;
+    static final int BOUNDARY_PARAGRAPH = 3;
+
     private TextChunker() {
     }
 
@@ -28,8 +45,22 @@ public final class TextChunker {
      * @param overlap number of characters to overlap between chunks
      */
     public static List<String> chunk(String text, int chunkSize, int overlap) {
-        if (text == null || text.isBlank()) {
-            return List.of();
+        List<String> out = new ArrayList<>();
+        iterate(text, chunkSize, overlap).forEachRemaining(c -> out.add(c.toString()));
+        return out;
+    }
+
+    /**
+     * Lazily splits text into overlapping, boundary-aligned chunks.
+     *
+     * @param text input text (not copied; must not change while iterating)
+     * @param chunkSize maximum length of each chunk (characters)
+     * @param overlap number of characters to overlap between chunks (the next chunk starts at a word)
+     * @return trimmed, non-blank chunk views
+     */
+    public static Iterator<CharSequence> iterate(CharSequence text, int chunkSize, int overlap) {
+        if (text == null) {
+            return new CharChunkIterator("", 1, 0);
         }
 
         int size = Math.max(1, chunkSize);
@@ -37,25 +68,142 @@ public final class TextChunker {
         if (ov >= size) {
             ov = Math.max(0, size / 4);
         }
+        return new CharChunkIterator(text, size, ov);
+    }
 
-        String normalized = text.strip();
-        int n = normalized.length();
+    // -------------------------
+    // Boundaries (shared with TokenChunker)
+    // -------------------------
 
-        List<String> out = new ArrayList<>();
-        int start = 0;
-        while (start < n) {
-            int end = Math.min(n, start + size);
-            String part = normalized.substring(start, end).strip();
-            if (!part.isBlank()) {
-                out.add(part);
+    /**
+     * How good a cut at this offset is (text[offset - 1] | text[offset]).
+     */
+    static int boundaryRank(CharSequence text, int offset) {
+        if (offset <= 0 || offset >= text.length()) {
+            return BOUNDARY_PARAGRAPH;
+        }
+
+        char before = text.charAt(offset - 1);
+        char after = text.charAt(offset);
+
+        if (before == '\n') {
+            // Blank line (optionally with spaces) right before the cut.
+            for (int i = offset - 2; i >= 0; i--) {
+                char c = text.charAt(i);
+                if (c == '\n') {
+                    return BOUNDARY_PARAGRAPH;
+                }
+                if (c != ' ' && c != '\t' && c != '\r') {
+                    break;
+                }
             }
-            if (end == n) {
-                break;
+        }
+        if (isSentenceEnd(before) && Character.isWhitespace(after)) {
+            return BOUNDARY_SENTENCE;
+        }
+        if (Character.isWhitespace(before) || Character.isWhitespace(after)) {
+            return BOUNDARY_WORD;
+        }
+        return BOUNDARY_NONE;
+    }
+
+    /**
+     * Best cut offset in [from, to]: highest boundary rank, latest offset on ties.
+     * Returns {@code to} if there is no boundary at all.
+     */
+    static int findCut(CharSequence text, int from, int to) {
+        int best = to;
+        int bestRank = boundaryRank(text, to);
+        for (int i = to - 1; i >= from && bestRank < BOUNDARY_PARAGRAPH; i--) {
+            int rank = boundaryRank(text, i);
+            if (rank > bestRank) {
+                best = i;
+                bestRank = rank;
             }
-            start = Math.max(0, end - ov);
         }
+        return best;
+    }
 
-        return out;
+    static int tolerance(int size) {
+        return Math.max(1, (int) (size * TOLERANCE_RATIO));
+    }
+
+    /**
+     * Trimmed view of text[start, end), or null if that range is blank.
+     */
+    static CharSequence trimmedView(CharSequence text, int start, int end) {
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return start < end ? CharBuffer.wrap(text, start, end) : null;
     }
-}
 
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?' || c == '。' || c == '！' || c == '？';
+    }
+
+    private static final class CharChunkIterator implements Iterator<CharSequence> {
+        private final CharSequence text;
+        private final int size;
+        private final int overlap;
+        private final int tolerance;
+
+        private int pos;
+        private CharSequence next;
+
+        CharChunkIterator(CharSequence text, int size, int overlap) {
+            this.text = text;
+            this.size = size;
+            this.overlap = overlap;
+            this.tolerance = tolerance(size);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && pos < text.length()) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public CharSequence next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            CharSequence out = next;
+            next = null;
+            return out;
+        }
+
+        private CharSequence advance() {
+            int n = text.length();
+            int start = pos;
+            while (start < n && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+            if (start >= n) {
+                pos = n;
+                return null;
+            }
+
+            int hardEnd = Math.min(n, start + size);
+            int cut = hardEnd == n ? n : findCut(text, Math.max(start + 1, hardEnd - tolerance), hardEnd);
+
+            if (cut >= n) {
+                pos = n;
+            } else {
+                int nextStart = Math.max(start + 1, cut - overlap);
+                // Do not start the overlap in the middle of a word.
+                while (nextStart < cut && boundaryRank(text, nextStart) == BOUNDARY_NONE) {
+                    nextStart++;
+                }
+                pos = nextStart;
+            }
+            return trimmedView(text, start, cut);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.vibe.emailagent.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Token-based counterpart of {@link TextChunker}.
+ *
+ * Why
+ * - Embedding limits are in tokens. Packing chunks up to a token limit means fewer embedding calls for
+ *   English mail and no provider-side truncation for CJK/emoji-heavy mail.
+ *
+ * Notes
+ * - Chunks are cut at token boundaries of the full text, preferring (within a tolerance window) a token
+ *   boundary that is also a paragraph, sentence or word boundary.
+ * - Re-tokenizing a chunk on its own can differ by a token or two at the edges, so keep maxTokens a little
+ *   below the provider limit.
+ */
+public final class TokenChunker {
+
+    private TokenChunker() {
+    }
+
+    /**
+     * Splits text into chunks of at most maxTokens tokens, overlapping by overlapTokens tokens.
+     */
+    public static List<String> chunk(String text, Tokenizer tokenizer, int maxTokens, int overlapTokens) {
+        List<String> out = new ArrayList<>();
+        iterate(text, tokenizer, maxTokens, overlapTokens).forEachRemaining(c -> out.add(c.toString()));
+        return out;
+    }
+
+    /**
+     * Lazily splits text into token-limited chunk views.
+     * The text is tokenized once up front (offsets only); chunks are produced on demand.
+     */
+    public static Iterator<CharSequence> iterate(String text, Tokenizer tokenizer, int maxTokens, int overlapTokens) {
+        if (text == null || text.isBlank()) {
+            return new TokenChunkIterator("", new int[0], 1, 0);
+        }
+
+        int size = Math.max(1, maxTokens);
+        int ov = Math.max(0, overlapTokens);
+        if (ov >= size) {
+            ov = Math.max(0, size / 4);
+        }
+
+        String normalized = text.strip();
+        return new TokenChunkIterator(normalized, tokenizer.tokenEnds(normalized), size, ov);
+    }
+
+    private static final class TokenChunkIterator implements Iterator<CharSequence> {
+        private final String text;
+        private final int[] ends;
+        private final int size;
+        private final int overlap;
+        private final int tolerance;
+
+        private int start;
+        private CharSequence next;
+
+        TokenChunkIterator(String text, int[] ends, int size, int overlap) {
+            this.text = text;
+            this.ends = ends;
+            this.size = size;
+            this.overlap = overlap;
+            this.tolerance = TextChunker.tolerance(size);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && start < ends.length) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public CharSequence next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            CharSequence out = next;
+            next = null;
+            return out;
+        }
+
+        private CharSequence advance() {
+            int total = ends.length;
+            int end = Math.min(total, start + size);
+
+            if (end < total) {
+                // Latest token boundary with the best text boundary rank inside the tolerance window.
+                int bestRank = TextChunker.boundaryRank(text, ends[end - 1]);
+                int best = end;
+                for (int k = end - 1; k > start && k >= end - tolerance && bestRank < TextChunker.BOUNDARY_PARAGRAPH; k--) {
+                    int rank = TextChunker.boundaryRank(text, ends[k - 1]);
+                    if (rank > bestRank) {
+                        bestRank = rank;
+                        best = k;
+                    }
+                }
+                end = best;
+            }
+
+            int charStart = start == 0 ? 0 : ends[start - 1];
+            int charEnd = ends[end - 1];
+
+            start = end == total ? total : Math.max(start + 1, end - overlap);
+            return TextChunker.trimmedView(text, charStart, charEnd);
+        }
+    }
+}
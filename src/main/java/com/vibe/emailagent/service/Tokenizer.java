@@ -0,0 +1,28 @@
+package com.vibe.emailagent.service;
+
+/**
+ * Tokenizer used for token-based chunking (see {@link TokenChunker}).
+ *
+ * Implementations
+ * - {@link BpeTokenizer}: exact counts for tiktoken vocabularies (cl100k_base / o200k_base)
+ * - {@link EstimatingTokenizer}: estimate that errs high, when no vocabulary file is available
+ */
+public interface Tokenizer {
+
+    /**
+     * Char offset (exclusive) where each token of the text ends, in order.
+     *
+     * Tokens that end inside a multi-byte character are rounded up to the end of that character,
+     * so every offset is a safe substring boundary. The array length is the token count.
+     */
+    int[] tokenEnds(String text);
+
+    default int count(String text) {
+        return text == null || text.isEmpty() ? 0 : tokenEnds(text).length;
+    }
+
+    /**
+     * Short name for logs (e.g. "bpe:cl100k_base", "estimate").
+     */
+    String name();
+}
@@ -0,0 +1,18 @@
+-- Incremental mailbox sync watermark (Gmail History API)
+--
+-- One row per (mailbox, consumer).
+-- - mailbox: Gmail address of the authenticated user (users.getProfile emailAddress)
+-- - consumer: which job owns the watermark (e.g., ingest, automation)
+-- - history_id: last Gmail historyId fully processed by that consumer
+--
+-- Notes
+-- - Gmail only keeps history for a limited time; an expired history_id triggers a full query scan.
+
+CREATE TABLE IF NOT EXISTS gmail_sync_checkpoint (
+    id BIGSERIAL PRIMARY KEY,
+    mailbox TEXT NOT NULL,
+    consumer TEXT NOT NULL,
+    history_id BIGINT NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    CONSTRAINT gmail_sync_checkpoint_mailbox_consumer_uk UNIQUE (mailbox, consumer)
+);
@@ -0,0 +1,15 @@
+-- Mailbox-wide frequency index of normalized line / paragraph shingles (boilerplate detection)
+--
+-- One row per shingle hash.
+-- - hash: 64-bit FNV-1a of the normalized line (or of the line hashes of a paragraph)
+-- - message_count: number of ingested messages containing the shingle (counted once per message)
+--
+-- Notes
+-- - Updated incrementally by ingestion (one upsert per message).
+-- - Only hashes are stored, never message text.
+
+CREATE TABLE IF NOT EXISTS boilerplate_shingle (
+    hash BIGINT PRIMARY KEY,
+    message_count INTEGER NOT NULL DEFAULT 0,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
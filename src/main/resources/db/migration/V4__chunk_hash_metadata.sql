@@ -0,0 +1,8 @@
+-- Content hash per chunk (metadata.chunk_hash, see ContentDefinedChunker)
+--
+-- Why
+-- - Re-processing a message compares the new chunk hashes with the stored ones and only embeds the new chunks.
+-- - Stored hashes are only read per message (email_embeddings_message_id_idx), so chunk_hash has no index of its
+--   own: an expression index would cost a write on every insert without serving any query.
+--
+-- No schema change; kept so the migration history stays contiguous.
@@ -0,0 +1,17 @@
+-- Embedding cache keyed by (model, hash of normalized chunk text)
+--
+-- Why
+-- - Newsletters, auto-replies, CC'd copies and inbox/sent duplicates produce identical chunks.
+--   A cached vector is reused instead of paying for another embedding call.
+--
+-- Notes
+-- - No fixed dimension: the cache is keyed by model, and models differ in dimensions.
+-- - Rows are never updated; the same (model, text) always maps to the same vector.
+
+CREATE TABLE IF NOT EXISTS embedding_cache (
+    model TEXT NOT NULL,
+    content_hash TEXT NOT NULL,
+    embedding vector NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (model, content_hash)
+);
@@ -0,0 +1,19 @@
+-- HNSW index on email_embeddings.embedding (approximate nearest neighbor search)
+--
+-- Why
+-- - Without a vector index every similarity search is a sequential scan over all stored vectors.
+--
+-- Placeholders (spring.flyway.placeholders.*)
+-- - hnsw_ops: operator class; must match spring.ai.vectorstore.pgvector.distance-type
+--   (COSINE_DISTANCE -> vector_cosine_ops, EUCLIDEAN_DISTANCE -> vector_l2_ops, NEGATIVE_INNER_PRODUCT -> vector_ip_ops)
+-- - hnsw_m / hnsw_ef_construction: build-time graph parameters (more = better recall, slower build, bigger index)
+--
+-- Notes
+-- - Placeholders are read when this migration runs. To rebuild with other values later, drop and re-create
+--   the index manually.
+-- - Search-time recall is tuned per query with hnsw.ef_search (emailagent.retrieval.hnsw-ef-search).
+-- - Building on a large existing table is much faster with a higher maintenance_work_mem.
+
+CREATE INDEX IF NOT EXISTS email_embeddings_embedding_hnsw_idx
+    ON email_embeddings USING hnsw (embedding ${hnsw_ops})
+    WITH (m = ${hnsw_m}, ef_construction = ${hnsw_ef_construction});
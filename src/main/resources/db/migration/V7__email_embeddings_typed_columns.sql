@@ -0,0 +1,35 @@
+-- Typed columns for the metadata fields that queries filter and sort on
+--
+-- Why
+-- - Thread reconstruction, de-dup and quote stripping filtered on metadata ->> '...' and received_at was
+--   a string inside the JSONB, so ordering a thread by it meant parsing JSON per row.
+-- - Plain columns get ordinary b-tree indexes, proper types and cheaper row access.
+--
+-- Notes
+-- - Populated by EmailEmbeddingWriter on insert (not generated columns: received_at comes from a text value
+--   whose cast to timestamptz is not immutable, and generated columns cannot become a partition key later).
+-- - metadata keeps the same fields, so VectorStore reads and filter expressions are unchanged.
+-- - sender is metadata.from (the raw From header).
+
+ALTER TABLE email_embeddings
+    ADD COLUMN IF NOT EXISTS message_id TEXT,
+    ADD COLUMN IF NOT EXISTS thread_id TEXT,
+    ADD COLUMN IF NOT EXISTS received_at TIMESTAMPTZ,
+    ADD COLUMN IF NOT EXISTS sender TEXT;
+
+-- Backfill rows written before this migration.
+UPDATE email_embeddings
+SET message_id = metadata ->> 'message_id',
+    thread_id = metadata ->> 'thread_id',
+    received_at = NULLIF(metadata ->> 'received_at', '')::timestamptz,
+    sender = metadata ->> 'from'
+WHERE message_id IS NULL;
+
+-- Replace the JSONB expression indexes from V1.
+DROP INDEX IF EXISTS email_embeddings_message_id_idx;
+DROP INDEX IF EXISTS email_embeddings_thread_id_idx;
+
+CREATE INDEX IF NOT EXISTS email_embeddings_message_id_idx ON email_embeddings (message_id);
+
+-- Thread reconstruction in received order (also serves thread_id-only lookups).
+CREATE INDEX IF NOT EXISTS email_embeddings_thread_id_received_at_idx ON email_embeddings (thread_id, received_at);
@@ -0,0 +1,76 @@
+-- Range-partition email_embeddings by received month
+--
+-- Why
+-- - One heap for a multi-year mailbox makes index builds, vacuum and every similarity scan pay for all of it.
+-- - Monthly partitions keep those operations per month, and searches that filter on received_at only touch
+--   the partitions in range (partition pruning).
+--
+-- How it works
+-- - Partition key: received_at (UTC months, email_embeddings_pYYYYMM). It is part of the primary key,
+--   so it is NOT NULL; rows without a received date fall back to the ingestion time.
+-- - Indexes are created on the parent and cascade to every partition (including the HNSW index from V6).
+-- - email_embeddings_ensure_partition(date) creates the month's partition if missing. Ingestion calls it
+--   before writing (see EmailEmbeddingPartitions); there is no default partition, so a missing month fails
+--   loudly instead of collecting rows that would block creating that month later.
+--
+-- Notes
+-- - The existing table is copied into the new layout once; on a large mailbox this migration takes a while.
+
+ALTER TABLE email_embeddings RENAME TO email_embeddings_unpartitioned;
+ALTER INDEX email_embeddings_pkey RENAME TO email_embeddings_unpartitioned_pkey;
+
+CREATE TABLE email_embeddings (
+    id UUID NOT NULL,
+    content TEXT,
+    metadata JSONB,
+    embedding vector(1536),
+    created_at TIMESTAMPTZ DEFAULT now(),
+    message_id TEXT,
+    thread_id TEXT,
+    received_at TIMESTAMPTZ NOT NULL,
+    sender TEXT,
+    PRIMARY KEY (id, received_at)
+) PARTITION BY RANGE (received_at);
+
+CREATE OR REPLACE FUNCTION email_embeddings_ensure_partition(target_month DATE) RETURNS TEXT
+LANGUAGE plpgsql AS $$
+DECLARE
+    start_month DATE := date_trunc('month', target_month)::date;
+    partition_name TEXT := format('email_embeddings_p%s', to_char(start_month, 'YYYYMM'));
+BEGIN
+    IF to_regclass(partition_name) IS NULL THEN
+        -- Serializes concurrent creators (several writers, or several ingest processes).
+        PERFORM pg_advisory_xact_lock(hashtext('email_embeddings_partitions'));
+        -- Bounds are UTC instants, independent of the session time zone.
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF email_embeddings FOR VALUES FROM (%L) TO (%L)',
+                       partition_name,
+                       start_month::timestamp AT TIME ZONE 'UTC',
+                       (start_month + INTERVAL '1 month')::timestamp AT TIME ZONE 'UTC');
+    END IF;
+    RETURN partition_name;
+END;
+$$;
+
+SELECT email_embeddings_ensure_partition(m::date)
+FROM (
+    SELECT DISTINCT date_trunc('month', COALESCE(received_at, created_at, now()) AT TIME ZONE 'UTC') AS m
+    FROM email_embeddings_unpartitioned
+    UNION
+    SELECT date_trunc('month', now() AT TIME ZONE 'UTC')
+    UNION
+    SELECT date_trunc('month', now() AT TIME ZONE 'UTC') + INTERVAL '1 month'
+) months;
+
+INSERT INTO email_embeddings (id, content, metadata, embedding, created_at, message_id, thread_id, received_at, sender)
+SELECT id, content, metadata, embedding, created_at, message_id, thread_id, COALESCE(received_at, created_at, now()), sender
+FROM email_embeddings_unpartitioned;
+
+DROP TABLE email_embeddings_unpartitioned;
+
+-- Same indexes as before (V1, V6, V7), now partitioned.
+CREATE INDEX IF NOT EXISTS email_embeddings_created_at_idx ON email_embeddings (created_at DESC);
+CREATE INDEX IF NOT EXISTS email_embeddings_message_id_idx ON email_embeddings (message_id);
+CREATE INDEX IF NOT EXISTS email_embeddings_thread_id_received_at_idx ON email_embeddings (thread_id, received_at);
+CREATE INDEX IF NOT EXISTS email_embeddings_embedding_hnsw_idx
+    ON email_embeddings USING hnsw (embedding ${hnsw_ops})
+    WITH (m = ${hnsw_m}, ef_construction = ${hnsw_ef_construction});
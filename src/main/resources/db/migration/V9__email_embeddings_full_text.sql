@@ -0,0 +1,16 @@
+-- Full-text search column for hybrid (lexical + vector) retrieval
+--
+-- Why
+-- - Embeddings blur exact identifiers (order numbers, SKUs, invoice ids); a lexical match finds them.
+--
+-- Notes
+-- - 'simple' configuration: no stemming or stop words, so identifiers and non-English mail are indexed as
+--   written (lowercased). The explicit configuration keeps the expression immutable, as generated columns need.
+-- - Generated column: every write path (INSERT, COPY) fills it without code changes.
+-- - Adding a stored generated column rewrites every partition once.
+
+ALTER TABLE email_embeddings
+    ADD COLUMN IF NOT EXISTS content_tsv tsvector
+        GENERATED ALWAYS AS (to_tsvector('simple', coalesce(content, ''))) STORED;
+
+CREATE INDEX IF NOT EXISTS email_embeddings_content_tsv_idx ON email_embeddings USING gin (content_tsv);
@@ -0,0 +1,30 @@
+package com.vibe.emailagent.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import com.vibe.emailagent.service.EstimatingTokenizer;
+
+class TokenizerConfigTest {
+
+    @Test
+    void tokenChunkMode_withoutVocabulary_failsAtStartup() {
+        assertThatThrownBy(() -> new TokenizerConfig().embeddingTokenizer(properties("tokens", "tokenizer/missing.tiktoken")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("tokenizer/missing.tiktoken");
+    }
+
+    @Test
+    void otherChunkModes_withoutVocabulary_fallBackToEstimate() {
+        assertThat(new TokenizerConfig().embeddingTokenizer(properties("chars", "tokenizer/missing.tiktoken")))
+                .isInstanceOf(EstimatingTokenizer.class);
+    }
+
+    private static IngestionProperties properties(String chunkMode, String vocabulary) {
+        return new IngestionProperties(0, 1000, 20, 10000, 300, false, "query",
+                false, false, 3, chunkMode, 8000, 100, vocabulary, 1000, 4000, 10000, false,
+                256, 250000, 8, 2, 2, 1, 32, false, 0, false, null, "insert");
+    }
+}
@@ -0,0 +1,148 @@
+package com.vibe.emailagent.gmail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.google.api.client.http.HttpRequestInitializer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.vibe.emailagent.config.GmailProperties;
+
+class GmailHttpAsyncClientTest {
+
+    private final List<HttpExchange> requests = new CopyOnWriteArrayList<>();
+    private final Map<String, String> queries = new ConcurrentHashMap<>();
+    private final Queue<Integer> statusBeforeBody = new ConcurrentLinkedQueue<>();
+
+    private HttpServer server;
+    private int status;
+    private String body;
+    private GmailHttpAsyncClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.add(exchange);
+            queries.put(exchange.getRequestURI().getRawPath(), exchange.getRequestURI().getRawQuery());
+            Integer scripted = statusBeforeBody.poll();
+            byte[] bytes = (scripted != null ? "{\"error\": {\"code\": " + scripted + "}}" : body).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(scripted != null ? scripted : status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+
+        GmailAuthProvider auth = new GmailAuthProvider() {
+            @Override
+            public HttpRequestInitializer requestInitializer() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<String> accessTokenAsync() {
+                return CompletableFuture.completedFuture("token-1");
+            }
+        };
+        GmailProperties properties = new GmailProperties(true, null, new GmailProperties.Quota(false, 0, 0, 0), "async",
+                new GmailProperties.Async(2, 2, 5_000), new GmailProperties.Fetch(0, "full", 0, false),
+                new GmailProperties.Retry(3, 0));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        client = new GmailHttpAsyncClient(auth, new GmailQuotaLimiter(properties, registry), new GmailTextCleaner(registry), properties,
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/gmail/v1/users/me");
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    void fetchMessageContent_encodesIdAndSendsFieldMask() {
+        respond(200, """
+                {"id": "a/b", "threadId": "t1", "snippet": "hello", "internalDate": "1700000000000",
+                 "payload": {"mimeType": "text/plain", "headers": [{"name": "Subject", "value": "Hi"}],
+                             "body": {"size": 5, "data": "aGVsbG8"}}}
+                """);
+
+        GmailMessageContent content = client.fetchMessageContent("a/b");
+
+        assertThat(content.subject()).isEqualTo("Hi");
+        assertThat(content.plainTextBody()).isEqualTo("hello");
+        String query = queries.get("/gmail/v1/users/me/messages/a%2Fb");
+        assertThat(query).startsWith("format=full&fields=");
+        assertThat(URLDecoder.decode(query.substring(query.indexOf("fields=") + 7), StandardCharsets.UTF_8))
+                .isEqualTo(GmailMessageMapper.CONTENT_FIELDS);
+        assertThat(requests.get(0).getRequestHeaders().getFirst("Authorization")).isEqualTo("Bearer token-1");
+    }
+
+    @Test
+    void listHistory_404_isHistoryExpired() {
+        respond(404, "{\"error\": {\"code\": 404, \"message\": \"Requested entity was not found.\"}}");
+
+        assertThatThrownBy(() -> client.listHistory(42, null))
+                .isInstanceOf(GmailHistoryExpiredException.class);
+        assertThat(queries.get("/gmail/v1/users/me/history")).contains("startHistoryId=42");
+    }
+
+    @Test
+    void errorStatus_keepsStatusAndBodyInTheCause() {
+        respond(403, "{\"error\": {\"code\": 403, \"message\": \"insufficientPermissions\"}}");
+
+        assertThatThrownBy(() -> client.fetchProfile())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Failed to fetch Gmail profile")
+                .cause()
+                .isInstanceOf(GmailHttpAsyncClient.GmailHttpStatusException.class)
+                .hasMessageContaining("HTTP 403")
+                .hasMessageContaining("insufficientPermissions");
+    }
+
+    @Test
+    void rateLimitedResponse_isRetried() {
+        statusBeforeBody.add(429);
+        respond(200, "{\"emailAddress\": \"me@example.com\", \"historyId\": \"42\"}");
+
+        GmailProfile profile = client.fetchProfile();
+
+        assertThat(profile.historyId()).isEqualTo(42);
+        assertThat(requests).hasSize(2);
+    }
+
+    @Test
+    void rateLimitedResponse_givesUpAfterMaxAttempts() {
+        respond(429, "{\"error\": {\"code\": 429, \"message\": \"rateLimitExceeded\"}}");
+
+        assertThatThrownBy(() -> client.fetchProfile())
+                .isInstanceOf(IllegalStateException.class)
+                .cause()
+                .hasMessageContaining("HTTP 429");
+        assertThat(requests).hasSize(3);
+    }
+
+    private void respond(int status, String body) {
+        this.status = status;
+        this.body = body;
+    }
+}
@@ -0,0 +1,49 @@
+package com.vibe.emailagent.gmail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import com.vibe.emailagent.config.GmailProperties;
+
+class GmailQuotaLimiterTest {
+
+    @Test
+    void reserve_isFreeWithinBurst_thenChargesWaitByQuotaCost() {
+        GmailQuotaLimiter limiter = limiter(100, 10_000);
+
+        // 20 x messages.get = 100 units: exactly the burst.
+        assertThat(limiter.reserve(GmailApiMethod.MESSAGES_GET, 20)).isZero();
+
+        // drafts.create costs 10 units -> ~0.1s at 100 units/s.
+        long waitNanos = limiter.reserve(GmailApiMethod.DRAFTS_CREATE, 1);
+        assertThat(waitNanos).isBetween(50_000_000L, 110_000_000L);
+    }
+
+    @Test
+    void reserve_rejectsWhenWaitExceedsMaxWait() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GmailQuotaLimiter limiter = new GmailQuotaLimiter(properties(100, 50), registry);
+
+        limiter.reserve(GmailApiMethod.MESSAGES_GET, 20);
+
+        assertThatThrownBy(() -> limiter.reserve(GmailApiMethod.THREADS_GET, 10))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Client-side Gmail quota limit")
+                .hasMessageNotContaining("rateLimitExceeded");
+        assertThat(registry.counter("gmail.quota.rejected", "method", "THREADS_GET").count()).isEqualTo(1.0);
+
+        // Rejected permits do not consume units.
+        assertThat(limiter.reserve(GmailApiMethod.GET_PROFILE, 1)).isLessThan(50_000_000L);
+    }
+
+    private static GmailQuotaLimiter limiter(double unitsPerSecond, long maxWaitMillis) {
+        return new GmailQuotaLimiter(properties(unitsPerSecond, maxWaitMillis), new SimpleMeterRegistry());
+    }
+
+    private static GmailProperties properties(double unitsPerSecond, long maxWaitMillis) {
+        return new GmailProperties(false, null, new GmailProperties.Quota(true, unitsPerSecond, unitsPerSecond, maxWaitMillis), null, null, null, null);
+    }
+}
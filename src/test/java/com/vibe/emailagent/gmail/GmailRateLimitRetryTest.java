@@ -0,0 +1,91 @@
+package com.vibe.emailagent.gmail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import org.junit.jupiter.api.Test;
+
+import com.vibe.emailagent.config.GmailProperties;
+
+class GmailRateLimitRetryTest {
+
+    private final GmailRateLimitRetry retry = new GmailRateLimitRetry(new GmailProperties.Retry(3, 0));
+
+    @Test
+    void isRateLimited_429AndRateLimitReasonsOnly() {
+        assertThat(GmailRateLimitRetry.isRateLimited(new GmailHttpAsyncClient.GmailHttpStatusException(429, "{}"))).isTrue();
+        assertThat(GmailRateLimitRetry.isRateLimited(new IllegalStateException("wrapped",
+                new GmailHttpAsyncClient.GmailHttpStatusException(403, "{\"reason\": \"userRateLimitExceeded\"}")))).isTrue();
+        assertThat(GmailRateLimitRetry.isRateLimited(
+                new GmailHttpAsyncClient.GmailHttpStatusException(403, "{\"reason\": \"insufficientPermissions\"}"))).isFalse();
+        assertThat(GmailRateLimitRetry.isRateLimited(new GmailHttpAsyncClient.GmailHttpStatusException(500, "{}"))).isFalse();
+
+        GoogleJsonError error = new GoogleJsonError();
+        error.setCode(429);
+        assertThat(GmailRateLimitRetry.isRateLimited(error)).isTrue();
+    }
+
+    @Test
+    void isRateLimited_localQuotaRejection_isNotRetried() {
+        assertThat(GmailRateLimitRetry.isRateLimited(
+                new IllegalStateException("Client-side Gmail quota limit: waiting 40000ms for MESSAGES_GET x1"))).isFalse();
+    }
+
+    @Test
+    void execute_retriesRateLimitedCallsUntilSuccess() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+
+        String result = retry.execute("TEST", () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new GmailHttpAsyncClient.GmailHttpStatusException(429, "{}");
+            }
+            return "ok";
+        });
+
+        assertThat(result).isEqualTo("ok");
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    void execute_givesUpAfterMaxAttempts_andDoesNotRetryOtherErrors() {
+        AtomicInteger calls = new AtomicInteger();
+        assertThatThrownBy(() -> retry.execute("TEST", () -> {
+            calls.incrementAndGet();
+            throw new GmailHttpAsyncClient.GmailHttpStatusException(429, "{}");
+        })).isInstanceOf(GmailHttpAsyncClient.GmailHttpStatusException.class);
+        assertThat(calls).hasValue(3);
+
+        calls.set(0);
+        assertThatThrownBy(() -> retry.execute("TEST", () -> {
+            calls.incrementAndGet();
+            throw new GmailHttpAsyncClient.GmailHttpStatusException(400, "{}");
+        })).isInstanceOf(GmailHttpAsyncClient.GmailHttpStatusException.class);
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void executeAsync_retriesRateLimitedFutures() {
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> result = retry.executeAsync("TEST", () -> calls.incrementAndGet() < 2
+                ? CompletableFuture.failedFuture(new CompletionException(new GmailHttpAsyncClient.GmailHttpStatusException(429, "{}")))
+                : CompletableFuture.completedFuture("ok"), Runnable::run);
+
+        assertThat(result.join()).isEqualTo("ok");
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void backoff_growsExponentiallyWithJitterAndIsCapped() {
+        GmailRateLimitRetry slow = new GmailRateLimitRetry(new GmailProperties.Retry(10, 1000));
+
+        assertThat(slow.backoffMillis(1)).isBetween(1000L, 2000L);
+        assertThat(slow.backoffMillis(3)).isBetween(4000L, 5000L);
+        assertThat(slow.backoffMillis(10)).isEqualTo(GmailRateLimitRetry.MAX_BACKOFF_MILLIS);
+    }
+}
@@ -0,0 +1,102 @@
+package com.vibe.emailagent.gmail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+class GmailTextCleanerTest {
+
+    private final GmailTextCleaner cleaner = new GmailTextCleaner(new SimpleMeterRegistry());
+
+    /**
+     * Golden corpus: *.in bodies with the *.out produced by the previous regex-chain cleaner.
+     *
+     * Compared per line with edge whitespace trimmed and blank-line runs collapsed;
+     * the old chain left stray spaces around removed tags, the content must be identical.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("goldenCases")
+    void clean_matchesGoldenCorpus(String name) throws IOException, URISyntaxException {
+        Path dir = Path.of(getClass().getResource("/cleaner-golden").toURI());
+        String input = Files.readString(dir.resolve(name + ".in"));
+        String expected = Files.readString(dir.resolve(name + ".out"));
+
+        assertThat(normalizeLines(cleaner.clean(input))).isEqualTo(normalizeLines(expected));
+    }
+
+    @Test
+    void clean_decodesNamedAndNumericEntities_andDropsInvisibleOnes() {
+        String html = "<div>Caf&eacute; &ndash; &#54620;&#xAE00; &copy;&zwnj;&nbsp;2026 &unknown; a &lt; b</div>";
+
+        assertThat(cleaner.clean(html)).isEqualTo("Café – 한글 © 2026 &unknown; a < b");
+    }
+
+    /**
+     * Worst-case inputs for the remaining regexes. Each took 10s+ before the step budget.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("pathologicalCases")
+    void clean_isBoundedOnPathologicalInput(String name, String input) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GmailTextCleaner budgeted = new GmailTextCleaner(registry);
+
+        String cleaned = assertTimeoutPreemptively(Duration.ofSeconds(3), () -> budgeted.clean(input, name));
+
+        assertThat(cleaned).isNotBlank();
+        assertThat(registry.counter(GmailTextCleaner.BUDGET_EXCEEDED_METRIC).count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void clean_capsInputSize() {
+        String huge = "word ".repeat(GmailTextCleaner.MAX_INPUT_CHARS);
+
+        assertThat(cleaner.clean(huge)).hasSizeLessThanOrEqualTo(GmailTextCleaner.MAX_INPUT_CHARS);
+    }
+
+    static Stream<Arguments> pathologicalCases() {
+        return Stream.of(
+                // CSS_GENERIC_RULE: every '-' is a word boundary to backtrack over.
+                Arguments.of("css-word-boundaries",
+                        "<div>{ " + "a-".repeat(100_000) + "</div>"),
+                // ON_WROTE_ANYWHERE: each "\nOn " scans to the end looking for "wrote:".
+                Arguments.of("on-without-wrote",
+                        "<div>x</div>" + "\nOn x".repeat(100_000)),
+                // Same, plain text.
+                Arguments.of("on-without-wrote-plain",
+                        "Hello" + "\n On y".repeat(100_000))
+        );
+    }
+
+    static List<String> goldenCases() throws IOException, URISyntaxException {
+        Path dir = Path.of(GmailTextCleanerTest.class.getResource("/cleaner-golden").toURI());
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(f -> f.endsWith(".in"))
+                    .map(f -> f.substring(0, f.length() - ".in".length()))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static String normalizeLines(String text) {
+        return text.lines()
+                .map(String::strip)
+                .reduce("", (acc, line) -> line.isEmpty() && (acc.isEmpty() || acc.endsWith("\n\n"))
+                        ? acc
+                        : acc + line + "\n")
+                .strip();
+    }
+}
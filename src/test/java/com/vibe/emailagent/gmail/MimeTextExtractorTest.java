@@ -0,0 +1,82 @@
+package com.vibe.emailagent.gmail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+class MimeTextExtractorTest {
+
+    @Test
+    void extract_prefersPlainPart_decodesQuotedPrintableInDeclaredCharset() {
+        String mime = """
+                Subject: =?UTF-8?B?7JWI64WV?= =?UTF-8?Q?_world?=
+                From: "Kim" <kim@example.com>
+                Content-Type: multipart/mixed; boundary="outer"
+
+                preamble
+                --outer
+                Content-Type: application/pdf
+                Content-Disposition: attachment; filename="a.txt"
+
+                not a body
+                --outer
+                Content-Type: multipart/alternative; boundary=inner
+
+                --inner
+                Content-Type: text/plain; charset=ISO-8859-1
+                Content-Transfer-Encoding: quoted-printable
+
+                Caf=E9 au lait, soft=
+                 break
+                --inner
+                Content-Type: text/html; charset=UTF-8
+
+                <p>ignored</p>
+                --inner--
+                --outer--
+                """;
+
+        MimeTextExtractor.Result result = extract(mime, StandardCharsets.ISO_8859_1, 0);
+
+        assertThat(result.subject()).isEqualTo("안녕 world");
+        assertThat(result.from()).isEqualTo("\"Kim\" <kim@example.com>");
+        assertThat(result.html()).isFalse();
+        assertThat(result.text()).isEqualTo("Café au lait, soft break");
+        assertThat(result.truncated()).isFalse();
+    }
+
+    @Test
+    void extract_fallsBackToHtml_decodesBase64Utf8AcrossLines() {
+        String html = "<p>안녕하세요, 회의 일정 공유드립니다.</p>";
+        String encoded = Base64.getMimeEncoder(16, "\r\n".getBytes(StandardCharsets.US_ASCII))
+                .encodeToString(html.getBytes(StandardCharsets.UTF_8));
+
+        String mime = "Content-Type: multipart/alternative; boundary=b\r\n\r\n"
+                + "--b\r\nContent-Type: text/html; charset=\"utf-8\"\r\nContent-Transfer-Encoding: base64\r\n\r\n"
+                + encoded + "\r\n--b--\r\n";
+
+        MimeTextExtractor.Result result = extract(mime, StandardCharsets.US_ASCII, 0);
+
+        assertThat(result.html()).isTrue();
+        assertThat(result.text()).isEqualTo(html);
+    }
+
+    @Test
+    void extract_stopsAtMaxChars() {
+        String mime = "Content-Type: text/plain\n\n" + "x".repeat(50_000) + "\n" + "y".repeat(50_000) + "\n";
+
+        MimeTextExtractor.Result result = extract(mime, StandardCharsets.US_ASCII, 1_000);
+
+        assertThat(result.text()).hasSize(1_000);
+        assertThat(result.truncated()).isTrue();
+    }
+
+    private static MimeTextExtractor.Result extract(String mime, Charset charset, int maxChars) {
+        return MimeTextExtractor.extract(new ByteArrayInputStream(mime.getBytes(charset)), maxChars);
+    }
+}
@@ -0,0 +1,72 @@
+package com.vibe.emailagent.gmail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class QuotedContentIndexTest {
+
+    private static final String FIRST = """
+            Hi Seok,
+
+            Could we move the quarterly review to Thursday afternoon? The finance team
+            needs one more day to close the numbers for the Q4 report.
+
+            Thanks,
+            Lauren""";
+
+    @Test
+    void strip_removesRewrappedQuoteAndItsAttributionLine() {
+        QuotedContentIndex index = new QuotedContentIndex();
+        index.add(FIRST);
+
+        // Unknown client format: no "On ... wrote:" and the quote is rewrapped with markers.
+        String reply = """
+                Thursday at 3pm works. I'll update the invite.
+
+                Le mar. 30 déc. 2025, Lauren K a écrit :
+                > Could we move the quarterly review to Thursday afternoon? The
+                > finance team needs one more day to close the numbers for the Q4
+                > report.""";
+
+        assertThat(index.strip(reply)).isEqualTo("Thursday at 3pm works. I'll update the invite.");
+    }
+
+    @Test
+    void strip_removesMarkerOnlyLinesBetweenQuotedParagraphs() {
+        QuotedContentIndex index = new QuotedContentIndex();
+        index.add(FIRST);
+
+        // Gmail-style quote: paragraphs are separated by bare ">" lines.
+        String reply = """
+                Sounds good, Thursday it is.
+
+                On Tue, Dec 30, 2025 at 9:12 AM Lauren K <lauren@example.com> wrote:
+                > Hi Seok,
+                >
+                > Could we move the quarterly review to Thursday afternoon? The finance team
+                > needs one more day to close the numbers for the Q4 report.
+                >
+                > Thanks,
+                > Lauren
+                >
+
+                PS: please bring the printed slides.""";
+
+        assertThat(index.strip(reply)).isEqualTo("Sounds good, Thursday it is.\n\nPS: please bring the printed slides.");
+    }
+
+    @Test
+    void strip_keepsNewTextAndShortRepeatedPhrases() {
+        QuotedContentIndex index = new QuotedContentIndex();
+        index.add(FIRST);
+
+        String reply = """
+                Thanks,
+                Lauren
+
+                One more thing: please bring the printed slides.""";
+
+        assertThat(index.strip(reply)).isEqualTo(reply);
+    }
+}
@@ -0,0 +1,64 @@
+package com.vibe.emailagent.gmail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+class RawMessageReaderTest {
+
+    private static final String MIME = """
+            Subject: Invoice
+            From: billing@example.com
+            Content-Type: multipart/mixed; boundary="b"
+
+            --b
+            Content-Type: text/plain; charset=UTF-8
+
+            Please find the invoice attached.
+            --b
+            Content-Type: application/pdf
+            Content-Disposition: attachment; filename="invoice.pdf"
+            Content-Transfer-Encoding: base64
+
+            %s
+            --b--
+            """.formatted(Base64.getEncoder().encodeToString(new byte[64 * 1024]));
+
+    @Test
+    void read_streamsRawValue_andReadsFieldsOnBothSides() {
+        // JSON escapes in the value (here: the '=' padding) are decoded.
+        String raw = Base64.getUrlEncoder().encodeToString(MIME.getBytes(StandardCharsets.UTF_8)).replace("=", "\\u003d");
+        String json = """
+                {"id": "m1", "threadId": "t1", "snippet": "Please find", "raw": "%s", "internalDate": "1700000000000"}
+                """.formatted(raw);
+
+        GmailMessageContent content = read(json, 0);
+
+        assertThat(content.messageId()).isEqualTo("m1");
+        assertThat(content.threadId()).isEqualTo("t1");
+        assertThat(content.snippet()).isEqualTo("Please find");
+        assertThat(content.subject()).isEqualTo("Invoice");
+        assertThat(content.from()).isEqualTo("billing@example.com");
+        assertThat(content.plainTextBody()).contains("Please find the invoice attached.");
+        assertThat(content.receivedAt().toInstant()).isEqualTo(Instant.ofEpochMilli(1_700_000_000_000L));
+    }
+
+    @Test
+    void read_withoutRawField_keepsIdsAndSnippet() {
+        GmailMessageContent content = read("{\"id\":\"m2\",\"threadId\":\"t2\",\"snippet\":\"hi\"}", 0);
+
+        assertThat(content.messageId()).isEqualTo("m2");
+        assertThat(content.snippet()).isEqualTo("hi");
+        assertThat(content.plainTextBody()).isEmpty();
+    }
+
+    private static GmailMessageContent read(String json, int maxBodyChars) {
+        return RawMessageReader.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), maxBodyChars, new GmailTextCleaner(new SimpleMeterRegistry()));
+    }
+}
@@ -0,0 +1,28 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+    @Test
+    void noFalseNegatives_andFalsePositiveRateNearTarget() {
+        BloomFilter filter = new BloomFilter(50_000, 0.01);
+        for (int i = 0; i < 50_000; i++) {
+            filter.add("18c" + Integer.toHexString(i * 7919));
+        }
+
+        for (int i = 0; i < 50_000; i++) {
+            assertThat(filter.mightContain("18c" + Integer.toHexString(i * 7919))).isTrue();
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("19d" + Integer.toHexString(i))) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+}
@@ -0,0 +1,71 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class BoilerplateIndexTest {
+
+    private static final String FOOTER = """
+            CONFIDENTIALITY NOTICE: This e-mail and any attachments are intended solely for the addressee
+            and may contain confidential information. If you received it in error, please delete it.""";
+
+    @Test
+    void strip_removesFrequentFooterAndSignatureTail_keepsBodyGreetings() {
+        // Same counting as boilerplate_shingle: each message counts a shingle once.
+        Map<Long, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 30; i++) {
+            String message = "Thanks,\n\nOrder #" + (1000 + i) + " shipped on day " + i + " of the month via courier " + (char) ('a' + i % 26)
+                    + ".\n\n" + FOOTER + "\n\nSent from my iPhone";
+            BoilerplateIndex.analyze(message).hashes.forEach(h -> counts.merge(h, 1, Integer::sum));
+        }
+
+        String incoming = """
+                Thanks,
+
+                Could you confirm whether the replacement part is covered by the extended warranty?
+
+                %s
+
+                Sent from my iPhone""".formatted(FOOTER);
+
+        String stripped = BoilerplateIndex.strip(BoilerplateIndex.analyze(incoming), h -> counts.getOrDefault(h, 0) >= 25);
+
+        assertThat(stripped).isEqualTo("""
+                Thanks,
+
+                Could you confirm whether the replacement part is covered by the extended warranty?""");
+    }
+
+    @Test
+    void strip_keepsOriginal_whenEverythingIsFrequent() {
+        String onlyBoilerplate = "Sent from my iPhone";
+
+        String stripped = BoilerplateIndex.strip(BoilerplateIndex.analyze(onlyBoilerplate), h -> true);
+
+        assertThat(stripped).isEqualTo(onlyBoilerplate);
+    }
+
+    @Test
+    void strip_keepsLinesBeyondMaxLinesUntouched() {
+        Map<Long, Integer> counts = new HashMap<>();
+        BoilerplateIndex.analyze(FOOTER).hashes.forEach(h -> counts.put(h, 30));
+
+        // Lines 1-3: footer and a blank line; "log line N" is line N.
+        StringBuilder body = new StringBuilder(FOOTER).append("\n\n");
+        for (int i = 4; i <= BoilerplateIndex.MAX_LINES; i++) {
+            body.append("log line ").append(i).append('\n');
+        }
+        String tail = "line 1001 is past the analyzed part\n\n" + FOOTER;
+        body.append(tail);
+
+        BoilerplateIndex.Analysis analysis = BoilerplateIndex.analyze(body.toString());
+        String stripped = BoilerplateIndex.strip(analysis, h -> counts.getOrDefault(h, 0) >= 25);
+
+        assertThat(analysis.lines).hasSize(BoilerplateIndex.MAX_LINES);
+        assertThat(stripped).startsWith("log line 4\n").endsWith("log line 1000\n" + tail);
+    }
+}
@@ -0,0 +1,51 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * BpeTokenizer against real cl100k_base token counts (as reported by tiktoken).
+ *
+ * The vocabulary is not bundled: the test reads tokenizer/cl100k_base.tiktoken from the test classpath, or the
+ * file named by the CL100K_BASE_TIKTOKEN environment variable, and is skipped when neither is available.
+ */
+class BpeTokenizerTest {
+
+    private static final String CLASSPATH_VOCABULARY = "tokenizer/cl100k_base.tiktoken";
+
+    private static BpeTokenizer cl100k;
+
+    @BeforeAll
+    static void loadVocabulary() throws IOException {
+        InputStream in = BpeTokenizerTest.class.getClassLoader().getResourceAsStream(CLASSPATH_VOCABULARY);
+        String path = System.getenv("CL100K_BASE_TIKTOKEN");
+        if (in == null && path != null && Files.exists(Path.of(path))) {
+            in = Files.newInputStream(Path.of(path));
+        }
+        if (in != null) {
+            try (InputStream ranks = in) {
+                cl100k = BpeTokenizer.load("cl100k_base", ranks);
+            }
+        }
+    }
+
+    @Test
+    void count_matchesTiktokenCl100k() {
+        assumeTrue(cl100k != null, "cl100k_base.tiktoken not available");
+
+        assertThat(cl100k.count("hello world")).isEqualTo(2);
+        assertThat(cl100k.count("tiktoken is great!")).isEqualTo(6);
+        assertThat(cl100k.count("antidisestablishmentarianism")).isEqualTo(6);
+        // Digits are split into runs of at most 3 and never merged with the space before them.
+        assertThat(cl100k.count("2 + 2 = 4")).isEqualTo(7);
+        assertThat(cl100k.count("お誕生日おめでとう")).isEqualTo(9);
+    }
+}
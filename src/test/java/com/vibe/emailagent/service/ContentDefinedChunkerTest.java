@@ -0,0 +1,51 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+class ContentDefinedChunkerTest {
+
+    private static final String[] WORDS = {
+            "invoice", "shipment", "meeting", "please", "confirm", "the", "order", "delivery", "thanks", "schedule",
+            "contract", "review", "attached", "update", "tomorrow", "customer", "warranty", "replacement", "and", "we"};
+
+    @Test
+    void insertionNearTop_onlyChangesChunksAroundTheEdit() {
+        String original = randomText(20_000, 42);
+        String edited = original.substring(0, 300) + "A whole new sentence was inserted here by a later reply. "
+                + original.substring(300);
+
+        List<String> before = ContentDefinedChunker.chunk(original, 200, 800, 2000);
+        List<String> after = ContentDefinedChunker.chunk(edited, 200, 800, 2000);
+
+        assertThat(before).hasSizeGreaterThan(10);
+        long changed = after.stream().filter(c -> !before.contains(c)).count();
+        assertThat(changed).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void chunk_respectsSizeLimits_andEndsOnWords() {
+        String text = randomText(50_000, 7);
+
+        List<String> chunks = ContentDefinedChunker.chunk(text, 200, 800, 2000);
+
+        assertThat(chunks).allSatisfy(c -> assertThat(c.length()).isLessThanOrEqualTo(2000));
+        assertThat(chunks.subList(0, chunks.size() - 1)).allSatisfy(c -> assertThat(c.length()).isGreaterThanOrEqualTo(199));
+        assertThat(String.join(" ", chunks)).isEqualTo(text.strip());
+        assertThat(ContentDefinedChunker.hash(chunks.get(0))).hasSize(64).isEqualTo(ContentDefinedChunker.hash(chunks.get(0)));
+    }
+
+    private static String randomText(int length, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        StringBuilder sb = new StringBuilder(length + 16);
+        while (sb.length() < length) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+            sb.append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,145 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Rows/second of the email_embeddings write paths. Opt-in (needs Docker):
+ *
+ * mvn test -Dtest=EmailEmbeddingWriterBenchmarkTest -Dbenchmark=true [-Dbenchmark.rows=20000]
+ *
+ * Paths
+ * - row-wise batch: JdbcTemplate.batchUpdate with one parameter set per row, as PgVectorStore.add does
+ *   (plus the received_at partition key).
+ * - insert: EmailEmbeddingWriter multi-row INSERT.
+ * - copy: EmailEmbeddingWriter binary COPY.
+ */
+@Testcontainers
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class EmailEmbeddingWriterBenchmarkTest {
+
+    private static final int DIMENSIONS = 1536;
+    private static final int BATCH = 500;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private static DataSource dataSource;
+    private static List<Document> docs;
+    private static List<float[]> embeddings;
+
+    @BeforeAll
+    static void setUp() {
+        dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        Flyway.configure()
+                .dataSource(dataSource)
+                .placeholders(Map.of("hnsw_ops", "vector_cosine_ops", "hnsw_m", "16", "hnsw_ef_construction", "64"))
+                .load()
+                .migrate();
+
+        int rows = Integer.getInteger("benchmark.rows", 20_000);
+        SplittableRandom random = new SplittableRandom(1);
+        docs = new ArrayList<>(rows);
+        embeddings = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            docs.add(new Document(UUID.randomUUID().toString(), "Chunk " + i + " " + "lorem ipsum dolor sit amet ".repeat(40),
+                    Map.of("message_id", "m" + i / 3, "thread_id", "t" + i / 10, "chunk_index", i % 3)));
+            float[] v = new float[DIMENSIONS];
+            for (int d = 0; d < DIMENSIONS; d++) {
+                v[d] = (float) random.nextDouble(-1, 1);
+            }
+            embeddings.add(v);
+        }
+    }
+
+    @BeforeEach
+    void truncate() {
+        new JdbcTemplate(dataSource).execute("TRUNCATE email_embeddings");
+    }
+
+    @Test
+    void rowWiseBatch() {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        ObjectMapper mapper = new ObjectMapper();
+        run("row-wise batch", (batchDocs, batchEmbeddings) -> jdbc.batchUpdate("""
+                        INSERT INTO email_embeddings (id, content, metadata, embedding, received_at) VALUES (?, ?, ?::jsonb, ?, now())
+                        ON CONFLICT (id, received_at) DO UPDATE SET content = EXCLUDED.content, metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding
+                        """, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Document doc = batchDocs.get(i);
+                        ps.setObject(1, UUID.fromString(doc.getId()));
+                        ps.setString(2, doc.getText());
+                        try {
+                            ps.setString(3, mapper.writeValueAsString(doc.getMetadata()));
+                        } catch (JsonProcessingException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        ps.setObject(4, new PGvector(batchEmbeddings.get(i)));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return batchDocs.size();
+                    }
+                }));
+    }
+
+    @Test
+    void multiRowInsert() {
+        EmailEmbeddingWriter writer = new EmailEmbeddingWriter(JdbcClient.create(dataSource), dataSource, new ObjectMapper(), false);
+        run("insert", writer::write);
+    }
+
+    @Test
+    void binaryCopy() {
+        EmailEmbeddingWriter writer = new EmailEmbeddingWriter(JdbcClient.create(dataSource), dataSource, new ObjectMapper(), true);
+        run("copy", writer::write);
+    }
+
+    private static void run(String name, BatchWrite write) {
+        long started = System.nanoTime();
+        for (int from = 0; from < docs.size(); from += BATCH) {
+            int to = Math.min(docs.size(), from + BATCH);
+            write.write(docs.subList(from, to), embeddings.subList(from, to));
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        Integer count = new JdbcTemplate(dataSource).queryForObject("SELECT count(*) FROM email_embeddings", Integer.class);
+        assertThat(count).isEqualTo(docs.size());
+        System.out.printf("[Benchmark] %-15s rows=%d seconds=%.2f rows/s=%.0f%n", name, docs.size(), seconds, docs.size() / seconds);
+    }
+
+    @FunctionalInterface
+    private interface BatchWrite {
+        void write(List<Document> docs, List<float[]> embeddings);
+    }
+}
@@ -0,0 +1,125 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Set;
+
+import com.vibe.emailagent.config.IngestionProperties;
+import com.vibe.emailagent.gmail.GmailClient;
+import com.vibe.emailagent.gmail.GmailMessageContent;
+import com.vibe.emailagent.gmail.GmailMessageIdPage;
+import com.vibe.emailagent.gmail.GmailMessageRef;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.PlatformTransactionManager;
+
+class EmailIngestionServiceTest {
+
+    private static final Tokenizer ONE_TOKEN_PER_DOC = new Tokenizer() {
+        @Override
+        public int[] tokenEnds(String text) {
+            return new int[]{text.length()};
+        }
+
+        @Override
+        public String name() {
+            return "one";
+        }
+    };
+
+    private final GmailClient gmailClient = mock(GmailClient.class);
+    private final MailboxSyncService mailboxSyncService = mock(MailboxSyncService.class);
+    private final IngestedMessageIndex ingestedMessages = mock(IngestedMessageIndex.class);
+    private final JdbcClient jdbcClient = mock(JdbcClient.class, RETURNS_DEEP_STUBS);
+
+    @Test
+    void historyFullScan_alreadyIngestedMessagesDoNotCountTowardMaxMessages() {
+        // Mailbox of 4 with maxMessages=2: the newest page was ingested by an earlier (truncated) run.
+        when(gmailClient.listMessageIds(anyString(), anyLong(), isNull())).thenReturn(page("p2", "m1", "m2"));
+        when(gmailClient.listMessageIds(anyString(), anyLong(), eq("p2"))).thenReturn(page(null, "m3", "m4"));
+        when(ingestedMessages.findIngested(anyCollection())).thenReturn(Set.of("m1", "m2"));
+        stubFetch("m3", "m4");
+        when(mailboxSyncService.loadDelta("ingest")).thenReturn(MailboxSyncService.MailboxDelta.fullScan("me@example.com", 42));
+
+        EmailIngestionService.IngestionResult result = service("history", 2, false).ingest();
+
+        verify(gmailClient).fetchMessageContent("m3");
+        verify(gmailClient).fetchMessageContent("m4");
+        verify(gmailClient, never()).fetchMessageContent("m1");
+        verify(mailboxSyncService).saveCheckpoint("me@example.com", "ingest", 42);
+        assertThat(result.processed()).isEqualTo(4);
+    }
+
+    @Test
+    void historyFullScan_moreNewMessagesThanMaxMessages_keepsPreviousCheckpoint() {
+        when(gmailClient.listMessageIds(anyString(), anyLong(), isNull())).thenReturn(page("p2", "m1", "m2"));
+        when(gmailClient.listMessageIds(anyString(), anyLong(), eq("p2"))).thenReturn(page(null, "m3", "m4"));
+        when(ingestedMessages.findIngested(anyCollection())).thenReturn(Set.of("m1"));
+        stubFetch("m2", "m3");
+        when(mailboxSyncService.loadDelta("ingest")).thenReturn(MailboxSyncService.MailboxDelta.fullScan("me@example.com", 42));
+
+        service("history", 2, false).ingest();
+
+        verify(gmailClient).fetchMessageContent("m2");
+        verify(gmailClient).fetchMessageContent("m3");
+        verify(gmailClient, never()).fetchMessageContent("m4");
+        verify(mailboxSyncService, never()).saveCheckpoint(anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    void queryMode_alreadyIngestedMessagesStillCountTowardMaxMessages() {
+        when(gmailClient.listMessageIds(anyString(), anyLong(), isNull())).thenReturn(page("p2", "m1", "m2"));
+        when(ingestedMessages.findIngested(anyCollection())).thenReturn(Set.of("m1", "m2"));
+
+        EmailIngestionService.IngestionResult result = service("query", 2, false).ingest();
+
+        // The safety limit bounds the listing itself: the second page is never requested.
+        verify(gmailClient, never()).listMessageIds(anyString(), anyLong(), eq("p2"));
+        verify(gmailClient, never()).fetchMessageContent(anyString());
+        assertThat(result.processed()).isEqualTo(2);
+    }
+
+    @Test
+    void reprocess_messageWithNoContentLeft_deletesItsStoredChunks() {
+        when(gmailClient.listMessageIds(anyString(), anyLong(), isNull())).thenReturn(page(null, "m1"));
+        when(ingestedMessages.findIngested(anyCollection())).thenReturn(Set.of("m1"));
+        stubFetch("m1");
+        when(mailboxSyncService.loadDelta("ingest")).thenReturn(MailboxSyncService.MailboxDelta.fullScan("me@example.com", 42));
+
+        service("history", 1, true).ingest();
+
+        verify(jdbcClient).sql(contains("DELETE FROM email_embeddings WHERE message_id = ?"));
+    }
+
+    private void stubFetch(String... messageIds) {
+        for (String id : messageIds) {
+            // Blank bodies: nothing is chunked or embedded.
+            when(gmailClient.fetchMessageContent(id)).thenReturn(new GmailMessageContent(id, "t-" + id, "s", "a@example.com", null, "", ""));
+        }
+    }
+
+    private static GmailMessageIdPage page(String nextPageToken, String... messageIds) {
+        return new GmailMessageIdPage(List.of(messageIds).stream().map(id -> new GmailMessageRef(id, "t-" + id)).toList(), nextPageToken);
+    }
+
+    private EmailIngestionService service(String syncMode, int maxMessages, boolean reprocess) {
+        IngestionProperties properties = new IngestionProperties(0, maxMessages, 2, 1000, 0, false, syncMode,
+                false, false, 3, "chars", 8000, 100, null, 1000, 4000, 10000, reprocess,
+                16, 10000, 2, 1, 1, 1, 4, false, 0, false, null, "insert");
+        return new EmailIngestionService(gmailClient, properties, jdbcClient, mailboxSyncService, null, ONE_TOKEN_PER_DOC,
+                mock(EmbeddingCache.class), mock(EmailEmbeddingWriter.class), ingestedMessages,
+                mock(EmailEmbeddingPartitions.class), mock(PlatformTransactionManager.class));
+    }
+}
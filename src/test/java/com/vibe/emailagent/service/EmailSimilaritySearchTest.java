@@ -0,0 +1,61 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class EmailSimilaritySearchTest {
+
+    @Test
+    void distanceOperator_matchesVectorStoreDistanceTypes() {
+        assertThat(EmailSimilaritySearch.distanceOperator("COSINE_DISTANCE")).isEqualTo("<=>");
+        assertThat(EmailSimilaritySearch.distanceOperator("euclidean_distance")).isEqualTo("<->");
+        assertThat(EmailSimilaritySearch.distanceOperator("NEGATIVE_INNER_PRODUCT")).isEqualTo("<#>");
+        assertThat(EmailSimilaritySearch.distanceOperator(null)).isEqualTo("<=>");
+        assertThatThrownBy(() -> EmailSimilaritySearch.distanceOperator("manhattan")).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void windowStart_coversCurrentMonthAndThePreviousOnes() {
+        YearMonth march = YearMonth.of(2024, 3);
+
+        assertThat(EmailSimilaritySearch.windowStart(march, 1)).isEqualTo(OffsetDateTime.parse("2024-03-01T00:00Z"));
+        assertThat(EmailSimilaritySearch.windowStart(march, 3)).isEqualTo(OffsetDateTime.parse("2024-01-01T00:00Z"));
+        assertThat(EmailSimilaritySearch.windowStart(march, 4)).isEqualTo(OffsetDateTime.parse("2023-12-01T00:00Z"));
+    }
+
+    @Test
+    void maxDistance_convertsSimilarityThresholdPerOperator() {
+        assertThat(EmailSimilaritySearch.maxDistance("<=>", 0.75)).isEqualTo(0.25);
+        assertThat(EmailSimilaritySearch.maxDistance("<#>", 0.75)).isEqualTo(-0.75);
+    }
+
+    @Test
+    void normalizeDomains_lowercasesTrimsAndDropsAtSign() {
+        String[] domains = EmailSimilaritySearch.normalizeDomains(Arrays.asList(" Example.COM", "@shop.example.com", "", null, "example.com"));
+
+        assertThat(domains).containsExactly("example.com", "shop.example.com");
+        assertThat(EmailSimilaritySearch.normalizeDomains(List.of())).isEmpty();
+    }
+
+    @Test
+    void lexicalTerms_prefersIdentifiers() {
+        String question = "Hi, where is my order INV-2024-0042? The SKU AB12 is still missing.";
+
+        assertThat(EmailSimilaritySearch.lexicalTerms(question, 32)).containsExactly("inv-2024-0042", "ab12");
+    }
+
+    @Test
+    void lexicalTerms_ignoresPlainWordsAndCapsTheCount() {
+        assertThat(EmailSimilaritySearch.lexicalTerms("Thanks for the quick reply, thanks!", 32)).isEmpty();
+        assertThat(EmailSimilaritySearch.hasLexicalTerms("Thanks for the quick reply, thanks!")).isFalse();
+        assertThat(EmailSimilaritySearch.lexicalTerms("a1 b2 c3 d4", 2)).containsExactly("a1", "b2");
+        assertThat(EmailSimilaritySearch.lexicalTerms("  ", 32)).isEmpty();
+    }
+}
@@ -0,0 +1,106 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+class EmbeddingBatcherTest {
+
+    /**
+     * One token per character.
+     */
+    private static final Tokenizer CHARS = new Tokenizer() {
+        @Override
+        public int[] tokenEnds(String text) {
+            int[] ends = new int[text.length()];
+            for (int i = 0; i < ends.length; i++) {
+                ends[i] = i + 1;
+            }
+            return ends;
+        }
+
+        @Override
+        public String name() {
+            return "chars";
+        }
+    };
+
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    @Test
+    void add_flushesOnInputCountAndTokenLimits_acrossMessages() {
+        EmbeddingBatcher batcher = new EmbeddingBatcher(batch -> batchSizes.add(batch.docs().size()), CHARS, 3, 25);
+
+        for (int m = 0; m < 3; m++) {
+            for (int c = 0; c < 2; c++) {
+                batcher.add(doc("m" + m, "ten chars!"));
+            }
+        }
+        // 10 + 10 fit; the third would exceed 25 tokens -> batches of 2.
+        assertThat(batcher.flush()).isEqualTo(2);
+
+        assertThat(batchSizes).containsExactly(2, 2, 2);
+        assertThat(batcher.flush()).isZero();
+    }
+
+    @Test
+    void add_respectsMaxInputs() {
+        EmbeddingBatcher batcher = new EmbeddingBatcher(batch -> batchSizes.add(batch.docs().size()), CHARS, 3, 1_000);
+
+        for (int i = 0; i < 7; i++) {
+            batcher.add(doc("m" + i, "x"));
+        }
+        batcher.flush();
+
+        assertThat(batchSizes).containsExactly(3, 3, 1);
+    }
+
+    @Test
+    void addMessage_keepsReconcileWorkWithTheBatchHoldingItsChunks() {
+        List<EmbeddingBatcher.Batch> batches = new ArrayList<>();
+        EmbeddingBatcher batcher = new EmbeddingBatcher(batches::add, CHARS, 3, 1_000);
+        Runnable reconcileM1 = () -> { };
+
+        batcher.addMessage(new EmbeddingBatcher.MessageChunks(List.of(doc("m0", "a"), doc("m0", "b")), null));
+        batcher.addMessage(new EmbeddingBatcher.MessageChunks(List.of(doc("m1", "c"), doc("m1", "d")), reconcileM1));
+        batcher.flush();
+
+        assertThat(batches).hasSize(2);
+        assertThat(batches.get(0).reconciles()).isEmpty();
+        assertThat(batches.get(1).docs()).hasSize(2);
+        assertThat(batches.get(1).reconciles()).containsExactly(reconcileM1);
+    }
+
+    @Test
+    void addMessage_largerThanOneRequest_staysOneBatchWithSeveralRequests() {
+        List<EmbeddingBatcher.Batch> batches = new ArrayList<>();
+        EmbeddingBatcher batcher = new EmbeddingBatcher(batches::add, CHARS, 3, 1_000);
+        Runnable reconcile = () -> { };
+
+        batcher.addMessage(new EmbeddingBatcher.MessageChunks(List.of(doc("m0", "a")), null));
+        List<Document> large = new ArrayList<>();
+        for (int c = 0; c < 7; c++) {
+            large.add(doc("m1", "chunk " + c));
+        }
+        batcher.addMessage(new EmbeddingBatcher.MessageChunks(large, reconcile));
+        batcher.addMessage(new EmbeddingBatcher.MessageChunks(List.of(doc("m2", "b")), null));
+        batcher.flush();
+
+        assertThat(batches).hasSize(3);
+        EmbeddingBatcher.Batch m1 = batches.get(1);
+        assertThat(m1.requests()).extracting(List::size).containsExactly(3, 3, 1);
+        assertThat(m1.docs()).containsExactlyElementsOf(large);
+        assertThat(m1.reconciles()).containsExactly(reconcile);
+        assertThat(batches.get(2).docs()).extracting(d -> d.getMetadata().get("message_id")).containsExactly("m2");
+    }
+
+    private static Document doc(String messageId, String text) {
+        return new Document(UUID.randomUUID().toString(), text, Map.of("message_id", messageId, "thread_id", "t-" + messageId));
+    }
+}
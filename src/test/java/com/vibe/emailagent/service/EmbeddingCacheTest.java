@@ -0,0 +1,22 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class EmbeddingCacheTest {
+
+    @Test
+    void contentHash_ignoresWhitespaceDifferences() {
+        assertThat(EmbeddingCache.contentHash("  Thanks for your order!\n\nIt ships  today. "))
+                .isEqualTo(EmbeddingCache.contentHash("Thanks for your order! It ships today."))
+                .isNotEqualTo(EmbeddingCache.contentHash("Thanks for your order! It ships tomorrow."));
+    }
+
+    @Test
+    void vectorLiteral_roundTrips() {
+        float[] vector = {0.25f, -1.5e-3f, 3f};
+
+        assertThat(EmbeddingCache.parseVector(EmailEmbeddingWriter.toVectorLiteral(vector))).containsExactly(vector);
+    }
+}
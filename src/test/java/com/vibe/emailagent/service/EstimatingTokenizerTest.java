@@ -0,0 +1,57 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class EstimatingTokenizerTest {
+
+    private final EstimatingTokenizer tokenizer = new EstimatingTokenizer();
+
+    @Test
+    void tokenEnds_areIncreasingAndEndAtTheTextLength() {
+        String text = "Order INV-2024-0042 shipped: https://example.com/track?id=9f86d081";
+
+        int[] ends = tokenizer.tokenEnds(text);
+
+        for (int i = 1; i < ends.length; i++) {
+            assertThat(ends[i]).isGreaterThan(ends[i - 1]);
+        }
+        assertThat(ends[ends.length - 1]).isEqualTo(text.length());
+        assertThat(tokenizer.tokenEnds("")).isEmpty();
+    }
+
+    @Test
+    void englishText_staysCloseToTheRealCount() {
+        // cl100k: 10 tokens.
+        int estimate = tokenizer.tokenEnds("The quick brown fox jumps over the lazy dog.").length;
+
+        assertThat(estimate).isBetween(10, 20);
+    }
+
+    @Test
+    void numbers_countAtLeastOneTokenPerThreeDigits() {
+        assertThat(tokenizer.tokenEnds("1234567890")).hasSizeGreaterThanOrEqualTo(4);
+        assertThat(tokenizer.tokenEnds("Call 0049 30 1234567")).hasSizeGreaterThanOrEqualTo(6);
+    }
+
+    @Test
+    void denseText_countsMoreThanHalfATokenPerChar() {
+        // Hex digests, base64 and UUIDs have few BPE merges; the old flat 0.3 per char undercounted them.
+        String hex = "d41d8cd98f00b204e9800998ecf8427e";
+        String base64 = "aGVsbG8gd29ybGQhIFRoaXMgaXMgYmFzZTY0Lg==";
+        String uuid = "550e8400-e29b-41d4-a716-446655440000";
+
+        assertThat(tokenizer.tokenEnds(hex).length).isGreaterThan(hex.length() / 2);
+        assertThat(tokenizer.tokenEnds(base64).length).isGreaterThan(base64.length() / 2);
+        assertThat(tokenizer.tokenEnds(uuid).length).isGreaterThan(uuid.length() / 2);
+    }
+
+    @Test
+    void urls_countEverySeparator() {
+        String url = "https://example.com/orders/INV-2024-0042?ref=mail&utm_source=newsletter";
+
+        // 12 separators (: / / . / / - - ? = & =) plus the words between them.
+        assertThat(tokenizer.tokenEnds(url).length).isGreaterThanOrEqualTo(20);
+    }
+}
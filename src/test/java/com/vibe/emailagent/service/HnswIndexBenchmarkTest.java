@@ -0,0 +1,179 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.ai.document.Document;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+/**
+ * Latency and recall of similarity search with the HNSW index (V6). Opt-in (needs Docker):
+ *
+ * mvn test -Dtest=HnswIndexBenchmarkTest -Dbenchmark=true
+ *     [-Dbenchmark.sizes=10000,100000,1000000] [-Dbenchmark.efSearch=40,100,200]
+ *     [-Dbenchmark.m=16] [-Dbenchmark.efConstruction=64] [-Dbenchmark.dimensions=1536]
+ *
+ * How it works
+ * - Vectors are drawn around random centroids (embeddings of similar mail cluster), queries near stored vectors.
+ * - Ground truth is the exact top-k with index scans disabled; recall@k = |approx ∩ exact| / k.
+ * - Queries use the same operator as PgVectorStore with COSINE_DISTANCE (<=>).
+ */
+@Testcontainers
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class HnswIndexBenchmarkTest {
+
+    private static final int K = 10;
+    private static final int QUERIES = 200;
+    private static final int CLUSTERS = 500;
+    private static final int BATCH = 1000;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private static DataSource dataSource;
+    private static JdbcTemplate jdbc;
+    private static TransactionTemplate tx;
+
+    @BeforeAll
+    static void setUp() {
+        dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        Flyway.configure()
+                .dataSource(dataSource)
+                .placeholders(Map.of("hnsw_ops", "vector_cosine_ops", "hnsw_m", "16", "hnsw_ef_construction", "64"))
+                .load()
+                .migrate();
+        jdbc = new JdbcTemplate(dataSource);
+        tx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Test
+    void latencyAndRecall() throws IOException {
+        int dimensions = Integer.getInteger("benchmark.dimensions", 1536);
+        if (dimensions != 1536) {
+            jdbc.execute("ALTER TABLE email_embeddings ALTER COLUMN embedding TYPE vector(" + dimensions + ")");
+        }
+        int[] efSearch = ints(System.getProperty("benchmark.efSearch", "40,100,200"));
+        SplittableRandom random = new SplittableRandom(7);
+        float[][] centroids = new float[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            centroids[c] = gaussian(random, dimensions, 1.0);
+        }
+
+        EmailEmbeddingWriter writer = new EmailEmbeddingWriter(JdbcClient.create(dataSource), dataSource, new ObjectMapper(), true);
+        int loaded = 0;
+        for (int size : ints(System.getProperty("benchmark.sizes", "10000"))) {
+            // Sizes grow; the index is dropped so rows are loaded without index maintenance.
+            jdbc.execute("DROP INDEX IF EXISTS email_embeddings_embedding_hnsw_idx");
+            for (; loaded < size; loaded += BATCH) {
+                int n = Math.min(BATCH, size - loaded);
+                List<Document> docs = new ArrayList<>(n);
+                List<float[]> embeddings = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    docs.add(new Document(UUID.randomUUID().toString(), "chunk " + (loaded + i), Map.of("message_id", "m" + (loaded + i))));
+                    embeddings.add(near(random, centroids[random.nextInt(CLUSTERS)], 0.3));
+                }
+                writer.write(docs, embeddings);
+            }
+            jdbc.execute("VACUUM ANALYZE email_embeddings");
+
+            List<String> queries = new ArrayList<>(QUERIES);
+            for (int q = 0; q < QUERIES; q++) {
+                queries.add(EmailEmbeddingWriter.toVectorLiteral(near(random, centroids[random.nextInt(CLUSTERS)], 0.35)));
+            }
+            List<Set<String>> exact = queries.stream().map(q -> search(q, "SET LOCAL enable_indexscan = off")).toList();
+
+            long buildStarted = System.nanoTime();
+            new ResourceDatabasePopulator(new ClassPathResource("db/migration/V6__email_embeddings_hnsw_index.sql") {
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    // Same session as the CREATE INDEX (the populator runs the script on one connection).
+                    String migration = new String(super.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+                    String sql = "SET maintenance_work_mem = '1GB';\n" + migration
+                            .replace("${hnsw_ops}", "vector_cosine_ops")
+                            .replace("${hnsw_m}", System.getProperty("benchmark.m", "16"))
+                            .replace("${hnsw_ef_construction}", System.getProperty("benchmark.efConstruction", "64"));
+                    return new ByteArrayInputStream(sql.getBytes(StandardCharsets.UTF_8));
+                }
+            }).execute(dataSource);
+            System.out.printf("[Benchmark] rows=%d hnsw build seconds=%.1f%n", size, (System.nanoTime() - buildStarted) / 1e9);
+
+            for (int ef : efSearch) {
+                long[] nanos = new long[QUERIES];
+                double recall = 0;
+                for (int q = 0; q < QUERIES; q++) {
+                    long started = System.nanoTime();
+                    Set<String> approx = search(queries.get(q), "SET LOCAL hnsw.ef_search = " + ef);
+                    nanos[q] = System.nanoTime() - started;
+
+                    Set<String> hit = new HashSet<>(approx);
+                    hit.retainAll(exact.get(q));
+                    recall += (double) hit.size() / K;
+                }
+                Arrays.sort(nanos);
+                recall /= QUERIES;
+                System.out.printf("[Benchmark] rows=%d ef_search=%d p50=%.2fms p99=%.2fms recall@%d=%.3f%n",
+                        size, ef, nanos[QUERIES / 2] / 1e6, nanos[(int) (QUERIES * 0.99)] / 1e6, K, recall);
+                assertThat(recall).isGreaterThan(0);
+            }
+        }
+    }
+
+    private static Set<String> search(String vector, String setting) {
+        return tx.execute(status -> {
+            jdbc.execute(setting);
+            return new HashSet<>(jdbc.queryForList(
+                    "SELECT id::text FROM email_embeddings ORDER BY embedding <=> ?::vector LIMIT ?", String.class, vector, K));
+        });
+    }
+
+    private static float[] near(SplittableRandom random, float[] centroid, double spread) {
+        float[] noise = gaussian(random, centroid.length, spread);
+        for (int d = 0; d < noise.length; d++) {
+            noise[d] += centroid[d];
+        }
+        return noise;
+    }
+
+    private static float[] gaussian(SplittableRandom random, int dimensions, double sigma) {
+        float[] v = new float[dimensions];
+        for (int d = 0; d < dimensions; d++) {
+            // Box-Muller
+            v[d] = (float) (sigma * Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble()));
+        }
+        return v;
+    }
+
+    private static int[] ints(String csv) {
+        return Arrays.stream(csv.split(",")).map(String::trim).filter(s -> !s.isEmpty()).mapToInt(Integer::parseInt).toArray();
+    }
+}
@@ -0,0 +1,69 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+class HybridEmailSearchTest {
+
+    @Test
+    void fuse_ranksDocumentsFoundByBothLegsFirst() {
+        List<Document> vector = List.of(doc("a", "distance", 0.1), doc("b", "distance", 0.2), doc("c", "distance", 0.3));
+        List<Document> lexical = List.of(doc("c", "lexical_rank", 0.9), doc("d", "lexical_rank", 0.5));
+
+        List<Document> fused = HybridEmailSearch.fuse(List.of(vector, lexical), 60, 3);
+
+        // c: 1/63 + 1/61 beats a: 1/61; b (1/62) and d (1/62) tie and keep first-seen order.
+        assertThat(fused).extracting(Document::getId).containsExactly("c", "a", "b");
+        assertThat(fused.get(0).getMetadata()).containsKeys("distance", "lexical_rank", "rrf_score");
+        assertThat((double) fused.get(0).getMetadata().get("rrf_score")).isEqualTo(1.0 / 63 + 1.0 / 61);
+    }
+
+    @Test
+    void fuse_withOneEmptyLegKeepsTheOtherLegsOrder() {
+        List<Document> lexical = List.of(doc("x", "lexical_rank", 0.4), doc("y", "lexical_rank", 0.2));
+
+        assertThat(HybridEmailSearch.fuse(List.of(List.of(), lexical), 60, 5))
+                .extracting(Document::getId).containsExactly("x", "y");
+    }
+
+    @Test
+    void await_legThatMissesItsBudgetContributesNothingAndIsCancelled() {
+        CompletableFuture<List<Document>> never = new CompletableFuture<>();
+        long started = System.nanoTime();
+
+        assertThat(HybridEmailSearch.await("lexical", never, started, 50)).isEmpty();
+        assertThat(System.nanoTime() - started).isGreaterThanOrEqualTo(50_000_000L);
+        assertThat(never).isCancelled();
+    }
+
+    @Test
+    void await_budgetIsMeasuredFromTheStartOfTheSearch() {
+        CompletableFuture<List<Document>> never = new CompletableFuture<>();
+        long startedLongAgo = System.nanoTime() - 1_000_000_000L;
+
+        // The 500ms budget is already used up: no further waiting.
+        long before = System.nanoTime();
+        assertThat(HybridEmailSearch.await("lexical", never, startedLongAgo, 500)).isEmpty();
+        assertThat(System.nanoTime() - before).isLessThan(400_000_000L);
+    }
+
+    @Test
+    void await_failedOrCompletedLegs() {
+        List<Document> hits = List.of(doc("a", "distance", 0.1));
+
+        assertThat(HybridEmailSearch.await("vector", CompletableFuture.completedFuture(hits), System.nanoTime(), 50))
+                .isEqualTo(hits);
+        assertThat(HybridEmailSearch.await("vector", CompletableFuture.failedFuture(new IllegalStateException("db down")),
+                System.nanoTime(), 0)).isEmpty();
+    }
+
+    private static Document doc(String id, String key, double value) {
+        return new Document(id, "text " + id, Map.of(key, value));
+    }
+}
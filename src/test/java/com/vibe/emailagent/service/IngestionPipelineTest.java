@@ -0,0 +1,174 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.vibe.emailagent.gmail.GmailMessageContent;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+class IngestionPipelineTest {
+
+    private static final Tokenizer ONE_TOKEN_PER_DOC = new Tokenizer() {
+        @Override
+        public int[] tokenEnds(String text) {
+            return new int[]{text.length()};
+        }
+
+        @Override
+        public String name() {
+            return "one";
+        }
+    };
+
+    private final Map<String, Boolean> written = new ConcurrentHashMap<>();
+    private final AtomicInteger embedCalls = new AtomicInteger();
+
+    private final EmbeddingCaller caller = new EmbeddingCaller(null) {
+        @Override
+        public List<float[]> embed(List<String> texts) {
+            embedCalls.incrementAndGet();
+            return texts.stream().map(t -> new float[]{1f}).toList();
+        }
+    };
+
+    private final EmailEmbeddingWriter writer = new EmailEmbeddingWriter(null, null, null, false) {
+        @Override
+        public void write(List<Document> docs, List<float[]> embeddings) {
+            docs.forEach(d -> written.put(d.getText(), true));
+        }
+    };
+
+    private final AtomicInteger reconciled = new AtomicInteger();
+
+    @Test
+    void drain_writesEveryChunkOfEveryMessage_inBatches() {
+        try (IngestionPipeline pipeline = pipeline(content -> chunks(doc(content.messageId() + "-a"), doc(content.messageId() + "-b")))) {
+            for (int i = 0; i < 100; i++) {
+                pipeline.submit("m" + i);
+            }
+            pipeline.drain();
+            assertThat(pipeline.committedChunks()).isEqualTo(200);
+        }
+
+        assertThat(written).hasSize(200);
+        // 200 chunks with at most 16 per request.
+        assertThat(embedCalls.get()).isBetween(13, 200);
+    }
+
+    @Test
+    void failureInAStage_isRethrownByDrain() {
+        try (IngestionPipeline pipeline = pipeline(content -> {
+            if (content.messageId().equals("m3")) {
+                throw new IllegalStateException("boom");
+            }
+            return chunks(doc(content.messageId()));
+        })) {
+            for (int i = 0; i < 5; i++) {
+                pipeline.submit("m" + i);
+            }
+            assertThatThrownBy(pipeline::drain).isInstanceOf(IllegalStateException.class).hasMessage("boom");
+        }
+    }
+
+    @Test
+    void reconcileWork_runsInTheWriteOfItsBatch_evenWithoutNewChunks() {
+        try (IngestionPipeline pipeline = pipeline(content -> new EmbeddingBatcher.MessageChunks(
+                content.messageId().equals("m0") ? List.of() : List.of(doc(content.messageId())),
+                reconciled::incrementAndGet))) {
+            for (int i = 0; i < 3; i++) {
+                pipeline.submit("m" + i);
+            }
+            pipeline.drain();
+            assertThat(pipeline.committedChunks()).isEqualTo(2);
+        }
+
+        assertThat(reconciled.get()).isEqualTo(3);
+        assertThat(written).containsOnlyKeys("m1", "m2");
+    }
+
+    @Test
+    void asyncFetch_oneFetchThreadKeepsUpToMaxFetchesInFlight() {
+        ExecutorService gmail = Executors.newFixedThreadPool(16);
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger maxOpen = new AtomicInteger();
+        Function<String, CompletableFuture<GmailMessageContent>> fetch = id -> {
+            maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                sleep(5);
+                open.decrementAndGet();
+                return content(id);
+            }, gmail);
+        };
+
+        try (IngestionPipeline pipeline = new IngestionPipeline(new IngestionPipeline.Settings(1, 8, 2, 2, 1, 2), fetch,
+                content -> chunks(doc(content.messageId())), caller::embed, (batch, embeddings) -> writer.write(batch.docs(), embeddings),
+                ONE_TOKEN_PER_DOC, 16, 1_000)) {
+            for (int i = 0; i < 100; i++) {
+                pipeline.submit("m" + i);
+            }
+            pipeline.drain();
+            assertThat(pipeline.committedChunks()).isEqualTo(100);
+        } finally {
+            gmail.shutdownNow();
+        }
+
+        // A single fetch thread, yet several requests were open at once (and never more than the bound).
+        assertThat(maxOpen.get()).isBetween(2, 8);
+    }
+
+    @Test
+    void failedAsyncFetch_isRethrownByDrain() {
+        Function<String, CompletableFuture<GmailMessageContent>> fetch = id -> id.equals("m2")
+                ? CompletableFuture.failedFuture(new IllegalStateException("fetch failed"))
+                : CompletableFuture.completedFuture(content(id));
+
+        try (IngestionPipeline pipeline = new IngestionPipeline(new IngestionPipeline.Settings(1, 4, 2, 2, 1, 2), fetch,
+                content -> chunks(doc(content.messageId())), caller::embed, (batch, embeddings) -> writer.write(batch.docs(), embeddings),
+                ONE_TOKEN_PER_DOC, 16, 1_000)) {
+            for (int i = 0; i < 5; i++) {
+                pipeline.submit("m" + i);
+            }
+            assertThatThrownBy(pipeline::drain).isInstanceOf(IllegalStateException.class).hasMessage("fetch failed");
+        }
+    }
+
+    private IngestionPipeline pipeline(Function<GmailMessageContent, EmbeddingBatcher.MessageChunks> process) {
+        return new IngestionPipeline(new IngestionPipeline.Settings(4, 4, 2, 2, 1, 2),
+                id -> CompletableFuture.completedFuture(content(id)),
+                process, caller::embed, (batch, embeddings) -> {
+                    batch.reconciles().forEach(Runnable::run);
+                    writer.write(batch.docs(), embeddings);
+                }, ONE_TOKEN_PER_DOC, 16, 1_000);
+    }
+
+    private static GmailMessageContent content(String id) {
+        return new GmailMessageContent(id, "t-" + id, "subject", "from@example.com", null, "snippet", "body");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static EmbeddingBatcher.MessageChunks chunks(Document... docs) {
+        return new EmbeddingBatcher.MessageChunks(List.of(docs), null);
+    }
+
+    private static Document doc(String text) {
+        return new Document(UUID.randomUUID().toString(), text, Map.of());
+    }
+}
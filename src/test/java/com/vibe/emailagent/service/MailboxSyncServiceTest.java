@@ -0,0 +1,29 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.vibe.emailagent.gmail.GmailHistoryMessage;
+
+class MailboxSyncServiceTest {
+
+    private static final MailboxSyncService.MailboxDelta DELTA = new MailboxSyncService.MailboxDelta("me@example.com", 500, false, List.of(
+            new GmailHistoryMessage("m1", "t1", List.of("INBOX"), 101),
+            new GmailHistoryMessage("m2", "t2", List.of("SENT"), 140),
+            new GmailHistoryMessage("m3", "t3", List.of("INBOX"), 230)));
+
+    @Test
+    void watermarkBefore_stopsJustBeforeFirstUnhandledMessage() {
+        assertThat(DELTA.watermarkBefore(0)).isEqualTo(100);
+        assertThat(DELTA.watermarkBefore(2)).isEqualTo(229);
+    }
+
+    @Test
+    void watermarkBefore_allHandled_usesDeltaHistoryId() {
+        assertThat(DELTA.watermarkBefore(3)).isEqualTo(500);
+        assertThat(MailboxSyncService.MailboxDelta.fullScan("me@example.com", 42).watermarkBefore(0)).isEqualTo(42);
+    }
+}
@@ -0,0 +1,69 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class PgBinaryCopyEncoderTest {
+
+    @Test
+    void encodesHeaderRowAndTrailer() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PgBinaryCopyEncoder encoder = new PgBinaryCopyEncoder(bytes);
+        UUID id = UUID.fromString("00112233-4455-6677-8899-aabbccddeeff");
+
+        encoder.writeHeader();
+        encoder.startRow(4);
+        encoder.writeUuid(id);
+        encoder.writeText("hé");
+        encoder.writeJsonb("{}");
+        encoder.writeVector(new float[]{1f, -2f});
+        encoder.writeTrailer();
+
+        ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+        byte[] signature = new byte[11];
+        buf.get(signature);
+        assertThat(signature).containsExactly('P', 'G', 'C', 'O', 'P', 'Y', '\n', 0xFF, '\r', '\n', 0);
+        assertThat(buf.getInt()).isZero();
+        assertThat(buf.getInt()).isZero();
+
+        assertThat(buf.getShort()).isEqualTo((short) 4);
+        assertThat(buf.getInt()).isEqualTo(16);
+        assertThat(new UUID(buf.getLong(), buf.getLong())).isEqualTo(id);
+        assertThat(buf.getInt()).isEqualTo(3);
+        buf.position(buf.position() + 3);
+        // jsonb: version byte + text
+        assertThat(buf.getInt()).isEqualTo(3);
+        assertThat(buf.get()).isEqualTo((byte) 1);
+        buf.position(buf.position() + 2);
+        // vector: dim, unused, floats
+        assertThat(buf.getInt()).isEqualTo(12);
+        assertThat(buf.getShort()).isEqualTo((short) 2);
+        assertThat(buf.getShort()).isZero();
+        assertThat(buf.getFloat()).isEqualTo(1f);
+        assertThat(buf.getFloat()).isEqualTo(-2f);
+
+        assertThat(buf.getShort()).isEqualTo((short) -1);
+        assertThat(buf.hasRemaining()).isFalse();
+    }
+
+    @Test
+    void encodesTimestamptzAsMicrosSince2000() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PgBinaryCopyEncoder encoder = new PgBinaryCopyEncoder(bytes);
+
+        encoder.writeTimestamptz(OffsetDateTime.parse("2000-01-02T09:00:00.000001+09:00"));
+        encoder.writeTimestamptz(null);
+
+        ByteBuffer buf = ByteBuffer.wrap(bytes.toByteArray());
+        assertThat(buf.getInt()).isEqualTo(8);
+        assertThat(buf.getLong()).isEqualTo(86_400_000_000L + 1);
+        assertThat(buf.getInt()).isEqualTo(-1);
+    }
+}
@@ -0,0 +1,54 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TextChunkerTest {
+
+    @Test
+    void chunk_prefersParagraphThenSentenceThenWordBoundaries() {
+        String text = "First paragraph ends here.\n\nSecond one. It keeps going without a break for a while";
+
+        // Hard limit (30) falls inside "Second one."; the paragraph break at 28 is within the tolerance window.
+        assertThat(TextChunker.chunk(text, 30, 0).get(0)).isEqualTo("First paragraph ends here.");
+
+        // No paragraph break in the window: end at the sentence.
+        assertThat(TextChunker.chunk("Alpha beta gamma. Delta epsilon zeta", 20, 0).get(0)).isEqualTo("Alpha beta gamma.");
+
+        // No sentence end in the window: end at a word.
+        assertThat(TextChunker.chunk("alpha beta gamma delta epsilon", 20, 0).get(0)).isEqualTo("alpha beta gamma");
+    }
+
+    @Test
+    void chunk_overlapStartsAtWordBoundary_andCoversWholeText() {
+        String text = "one two three four five six seven eight nine ten eleven twelve";
+
+        List<String> chunks = TextChunker.chunk(text, 20, 8);
+
+        assertThat(chunks).allSatisfy(c -> {
+            assertThat(c.length()).isLessThanOrEqualTo(20);
+            assertThat(text).contains(c);
+            assertThat(text.indexOf(c) == 0 || text.charAt(text.indexOf(c) - 1) == ' ').isTrue();
+        });
+        assertThat(chunks.get(0)).startsWith("one ");
+        assertThat(chunks.get(chunks.size() - 1)).endsWith("twelve");
+    }
+
+    @Test
+    void iterate_isLazyAndReturnsViews() {
+        StringBuilder text = new StringBuilder("word ".repeat(1_000));
+
+        Iterator<CharSequence> chunks = TextChunker.iterate(text, 100, 10);
+        CharSequence first = chunks.next();
+
+        // A view over the source, not a copy.
+        text.setCharAt(0, 'W');
+        assertThat(first.toString()).startsWith("Word");
+        assertThat(first.length()).isLessThanOrEqualTo(100);
+        assertThat(chunks.hasNext()).isTrue();
+    }
+}
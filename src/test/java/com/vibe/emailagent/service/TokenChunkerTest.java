@@ -0,0 +1,60 @@
+package com.vibe.emailagent.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class TokenChunkerTest {
+
+    private static BpeTokenizer tokenizer;
+
+    /**
+     * Tiny tiktoken-format vocabulary: all 256 single bytes plus a few merges.
+     */
+    @BeforeAll
+    static void loadVocabulary() throws IOException {
+        StringBuilder ranks = new StringBuilder();
+        for (int b = 0; b < 256; b++) {
+            ranks.append(Base64.getEncoder().encodeToString(new byte[]{(byte) b})).append(' ').append(b).append('\n');
+        }
+        String[] merges = {"he", "ll", " he", " hell", "the"};
+        for (int i = 0; i < merges.length; i++) {
+            ranks.append(Base64.getEncoder().encodeToString(merges[i].getBytes(StandardCharsets.UTF_8)))
+                    .append(' ').append(256 + i).append('\n');
+        }
+        tokenizer = BpeTokenizer.load("test", new ByteArrayInputStream(ranks.toString().getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void tokenEnds_appliesLowestRankMergesFirst() {
+        // "the" -> t|he -> the ; " hello" -> ' '|he|ll|o -> ' he'|ll|o -> ' hell'|o
+        assertThat(tokenizer.tokenEnds("the hello")).containsExactly(3, 8, 9);
+    }
+
+    @Test
+    void tokenEnds_roundsByteTokensUpToCharBoundaries() {
+        // No merges for Hangul: 3 byte tokens per syllable, all ending after that syllable.
+        assertThat(tokenizer.tokenEnds("한글")).containsExactly(1, 1, 1, 2, 2, 2);
+    }
+
+    @Test
+    void chunk_packsUpToTokenLimitWithTokenOverlap() {
+        String text = "the hello ".repeat(20).strip();
+
+        List<String> chunks = TokenChunker.chunk(text, tokenizer, 10, 2);
+
+        assertThat(chunks).hasSizeGreaterThan(1);
+        assertThat(chunks).allSatisfy(c -> assertThat(tokenizer.count(c)).isLessThanOrEqualTo(10));
+        // the| hell|o| |the| hell|o| |the| hell would split "hello"; the cut backs off to the word boundary.
+        assertThat(chunks.get(0)).isEqualTo("the hello the hello the");
+        // Overlap of 2 tokens: the next chunk restarts at " |the".
+        assertThat(chunks.get(1)).startsWith("the hello");
+    }
+}